@@ -0,0 +1,55 @@
+package com.disney.aesandbox.token;
+
+import com.disney.aesandbox.objmapping.TokenClaims;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The claims templates shipped with the sandbox, used as a benchmark parameter.  Templates are read from the
+ * classpath rather than through TokenClaims.getDefault*Json(), which resolves paths against the working directory
+ * and would break inside a forked benchmark JVM.
+ */
+public enum ClaimsShape {
+
+    ACTIVATION("token/json/activation/default_values.json"),
+    GET_ENTITLEMENT("token/json/entitlement/get/default_values.json"),
+    SET_ENTITLEMENT("token/json/entitlement/set/default_values.json"),
+    BOTH_ENTITLEMENT("token/json/entitlement/default_values.json");
+
+    private String resource;
+
+    ClaimsShape(String resource) {
+        this.resource = resource;
+    }
+
+    /**
+     * @return A new claims object built from this template, with iat/exp set relative to the current time the
+     * same way the sample token tasks do.
+     */
+    public TokenClaims newClaims() throws Exception {
+        TokenClaims claims = TokenClaims.newFromJson(readTemplate());
+        long nowInSeconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        claims.setIat(nowInSeconds);
+        claims.setExp(nowInSeconds + TimeUnit.HOURS.toSeconds(1));
+        return claims;
+    }
+
+    private String readTemplate() throws Exception {
+        try (InputStream in = ClaimsShape.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Claims template not found on classpath: " + resource);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[1024];
+            int read;
+            while ((read = in.read(buf)) > 0) {
+                out.write(buf, 0, read);
+            }
+            return new String(out.toByteArray(), UTF_8);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.disney.aesandbox.token;
+
+import com.disney.aesandbox.keymgmt.DemoOnlyTransientKeyManager;
+import com.disney.aesandbox.keymgmt.SigningAlgorithm;
+
+/**
+ * Signing algorithm and key size combinations, used as a benchmark parameter to compare sign/verify cost and
+ * token size across algorithms.
+ */
+public enum KeySpec {
+
+    RS256_2048(SigningAlgorithm.RS256, 2048),
+    RS256_3072(SigningAlgorithm.RS256, 3072),
+    RS256_4096(SigningAlgorithm.RS256, 4096),
+    PS256_2048(SigningAlgorithm.PS256, 2048),
+    PS256_4096(SigningAlgorithm.PS256, 4096),
+    ES256(SigningAlgorithm.ES256, 0);
+
+    private SigningAlgorithm algorithm;
+    private int rsaKeySize;
+
+    KeySpec(SigningAlgorithm algorithm, int rsaKeySize) {
+        this.algorithm = algorithm;
+        this.rsaKeySize = rsaKeySize;
+    }
+
+    /**
+     * Set the key manager's system properties for this spec.  Must be called before DemoOnlyTransientKeyManager
+     * is initialized, which is why each parameter combination runs in its own forked JVM.
+     */
+    public void apply() {
+        System.setProperty(DemoOnlyTransientKeyManager.SIGNING_ALGORITHM_PROPERTY, algorithm.getJwsName());
+        if (rsaKeySize > 0) {
+            System.setProperty(DemoOnlyTransientKeyManager.KEY_SIZE_PROPERTY, Integer.toString(rsaKeySize));
+        }
+    }
+}
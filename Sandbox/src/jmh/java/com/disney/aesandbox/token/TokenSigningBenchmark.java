@@ -0,0 +1,55 @@
+package com.disney.aesandbox.token;
+
+import com.disney.aesandbox.keymgmt.DemoOnlyTransientKeyManager;
+import com.disney.aesandbox.keymgmt.KeyDataHolder;
+import com.disney.aesandbox.objmapping.TokenClaims;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of token creation: the full TokenUtils.newToken path (header/claims serialization, encoding and
+ * signing with the manager's primary key) and the bare TokenUtils.sign call on a pre-built signing input.
+ *
+ * Each parameter combination runs in its own forked JVM, so the algorithm and key size system properties are
+ * applied before DemoOnlyTransientKeyManager is initialized.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenSigningBenchmark {
+
+    @Param({"RS256_2048", "RS256_3072", "RS256_4096", "PS256_2048", "PS256_4096", "ES256"})
+    public KeySpec keySpec;
+
+    @Param({"ACTIVATION", "GET_ENTITLEMENT", "SET_ENTITLEMENT", "BOTH_ENTITLEMENT"})
+    public ClaimsShape claimsShape;
+
+    private TokenClaims claims;
+    private KeyDataHolder signingKey;
+    private String signingInput;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        keySpec.apply();
+        signingKey = DemoOnlyTransientKeyManager.INSTANCE.getPrivateKeyForSigning();
+        claims = claimsShape.newClaims();
+
+        // The first two segments of a real token are the signing input
+        String token = TokenUtils.newToken(claims);
+        signingInput = token.substring(0, token.lastIndexOf('.'));
+    }
+
+    @Benchmark
+    public String newToken() {
+        return TokenUtils.newToken(claims);
+    }
+
+    @Benchmark
+    public String sign() throws Exception {
+        return TokenUtils.sign(signingInput, signingKey.getPrivateKey(), signingKey.getAlgorithm());
+    }
+}
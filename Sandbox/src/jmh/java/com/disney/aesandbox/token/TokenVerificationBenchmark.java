@@ -0,0 +1,101 @@
+package com.disney.aesandbox.token;
+
+import com.disney.aesandbox.keymgmt.DemoOnlyTransientKeyManager;
+import com.disney.aesandbox.keymgmt.KeyDataHolder;
+import com.disney.aesandbox.keymgmt.SigningAlgorithm;
+import com.disney.aesandbox.keymgmt.VerificationKeys;
+import com.disney.aesandbox.objmapping.TokenClaims;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.PublicKey;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of token verification: the bare TokenUtils.validateSig call, the full decode path (split, decode,
+ * JSON binding, key lookup and signature check) through TokenVerifier, the staged verify path for a valid token
+ * and for an expired one, which is rejected before its signature is checked, and TokenUtils.decodeToClaims,
+ * which serves repeat validations of the same token from the verified-token cache.  readExpAndAud and bindClaims
+ * compare reading two claims through a ClaimsView with binding all of them to TokenClaims.
+ *
+ * As with TokenSigningBenchmark, each parameter combination runs in its own forked JVM.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenVerificationBenchmark {
+
+    @Param({"RS256_2048", "RS256_3072", "RS256_4096", "PS256_2048", "PS256_4096", "ES256"})
+    public KeySpec keySpec;
+
+    @Param({"ACTIVATION", "GET_ENTITLEMENT", "SET_ENTITLEMENT", "BOTH_ENTITLEMENT"})
+    public ClaimsShape claimsShape;
+
+    private String token;
+    private String expiredToken;
+    private byte[] claimsJson;
+    private String signingInput;
+    private String signature;
+    private PublicKey publicKey;
+    private SigningAlgorithm algorithm;
+    private VerificationKeys vKeys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        keySpec.apply();
+        KeyDataHolder signingKey = DemoOnlyTransientKeyManager.INSTANCE.getPrivateKeyForSigning();
+        publicKey = signingKey.getPublicKey();
+        algorithm = signingKey.getAlgorithm();
+        vKeys = new VerificationKeys(DemoOnlyTransientKeyManager.INSTANCE.getJsonPublicKeySet());
+
+        token = TokenUtils.newToken(claimsShape.newClaims());
+        int lastDot = token.lastIndexOf('.');
+        signingInput = token.substring(0, lastDot);
+        signature = token.substring(lastDot + 1);
+        claimsJson = Base64.getUrlDecoder().decode(token.substring(token.indexOf('.') + 1, lastDot));
+
+        TokenClaims expired = claimsShape.newClaims();
+        expired.setIat(expired.getIat() - TimeUnit.DAYS.toSeconds(2));
+        expired.setExp(expired.getIat() + TimeUnit.DAYS.toSeconds(1));
+        expiredToken = TokenUtils.newToken(expired);
+    }
+
+    @Benchmark
+    public boolean validateSig() {
+        return TokenUtils.validateSig(signingInput, signature, publicKey, algorithm);
+    }
+
+    @Benchmark
+    public DecodedToken decodeUncached() throws Exception {
+        return TokenVerifier.INSTANCE.decode(token, vKeys);
+    }
+
+    @Benchmark
+    public VerificationOutcome verifyUncached() {
+        return TokenVerifier.INSTANCE.verify(token, vKeys);
+    }
+
+    @Benchmark
+    public VerificationOutcome rejectExpired() {
+        return TokenVerifier.INSTANCE.verify(expiredToken, vKeys);
+    }
+
+    @Benchmark
+    public String[] readExpAndAud() {
+        ClaimsView view = ClaimsView.of(claimsJson);
+        return (view.getExp() > 0) ? view.getAud() : null;
+    }
+
+    @Benchmark
+    public TokenClaims bindClaims() throws Exception {
+        return TokenMapping.CLAIMS_READER.readValue(claimsJson);
+    }
+
+    @Benchmark
+    public TokenClaims decodeToClaims() {
+        return TokenUtils.decodeToClaims(token, vKeys);
+    }
+}
@@ -2,7 +2,9 @@ package com.disney.aesandbox;
 
 import com.disney.aesandbox.commandline.CommandLine;
 import com.disney.aesandbox.commandline.CommandLineTask;
+import com.disney.aesandbox.commandline.HeadlessCommandLine;
 import com.disney.aesandbox.commandline.tasks.*;
+import com.disney.aesandbox.jwks.IssuerRegistry;
 import io.micronaut.context.ApplicationContext;
 import io.micronaut.runtime.Micronaut;
 
@@ -11,23 +13,46 @@ import java.util.List;
 
 public class Application {
 
+    // Starts the HTTP server and reads headless commands from stdin instead of showing the menu
+    private static final String SERVE = "serve";
+
     public static void main(String[] args) {
+        if (args.length > 0 && !args[0].equals(SERVE)) {
+            // A single headless command.  The HTTP server is not started, so this can run next to a sandbox that
+            // is serving; the two only share keys if both were started with the same aesandbox.keyStore.
+            ApplicationContext ctx = ApplicationContext.run();
+            int status = new HeadlessCommandLine(makeTaskList(ctx, false)).execute(args);
+            System.exit(status);
+        }
+
         ApplicationContext ctx = Micronaut.run(Application.class);
-        List<CommandLineTask> tasks = makeTaskList(ctx);
-        CommandLine cl = new CommandLine(tasks);
-        cl.start();
+        List<CommandLineTask> tasks = makeTaskList(ctx, true);
+        if (args.length == 0 && System.console() != null) {
+            CommandLine cl = new CommandLine(tasks);
+            cl.start();
+        } else {
+            // No terminal (e.g. a container run without -it), or asked to serve: keep serving HTTP unattended,
+            // taking commands from stdin for as long as it stays open
+            new HeadlessCommandLine(tasks).start();
+        }
     }
 
-    private static List<CommandLineTask> makeTaskList(ApplicationContext ctx) {
+    /**
+     * @param serving Whether this process runs the HTTP server, for the tasks that send requests to it
+     */
+    private static List<CommandLineTask> makeTaskList(ApplicationContext ctx, boolean serving) {
 
         List<CommandLineTask> tasks = new ArrayList<>();
 
         tasks.add(new ActivationTokenTaskOneHourExp());
         tasks.add(new ActivationTokenTaskThirtyDayExp());
         tasks.add(new SampleEntitlementTokenTask());
-        tasks.add(new ValidateActivationLinkTask());
-        tasks.add(new ValidateGetEntitlementTokenTask());
-        tasks.add(new ValidateSetEntitlementTokenTask());
+        IssuerRegistry issuers = ctx.getBean(IssuerRegistry.class);
+        tasks.add(new ValidateActivationLinkTask(issuers));
+        tasks.add(new ValidateGetEntitlementTokenTask(issuers));
+        tasks.add(new ValidateSetEntitlementTokenTask(issuers));
+        tasks.add(new BulkValidateTask(issuers));
+        tasks.add(new LoadTestTask(serving));
         tasks.add(new SampleJWKSTask());
         tasks.add(new ForcedKeyRotationTask());
         tasks.add(new KeyRotationDemoTask());
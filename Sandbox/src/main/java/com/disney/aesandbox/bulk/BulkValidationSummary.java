@@ -0,0 +1,133 @@
+package com.disney.aesandbox.bulk;
+
+import java.util.Map;
+
+/**
+ * Totals for one bulk validation run, written as JSON next to the results file.
+ *
+ * outcomes counts lines by outcome: VALID, CLAIMS_INVALID (signature fine, claims not), or the signature status
+ * of the line (INVALID, UNKNOWN_KID, MALFORMED, UNKNOWN_ISSUER, KEYS_UNAVAILABLE), or MALFORMED_LINK and
+ * LINE_TOO_LONG for lines that aren't a usable activation link or token.  claimErrors counts each failed claim
+ * check by code; a line can fail several.  latencyMicros has the percentiles of the time spent validating each
+ * line, excluding reading and writing.
+ */
+public class BulkValidationSummary {
+
+    private String input;
+    private String output;
+    private long lines;
+    private long valid;
+    private long invalid;
+    private long bytes;
+    private int threads;
+    private long elapsedMillis;
+    private double linesPerSecond;
+    private double megabytesPerSecond;
+    private Map<String, Long> outcomes;
+    private Map<String, Long> claimErrors;
+    private Map<String, Double> latencyMicros;
+
+    public String getInput() {
+        return input;
+    }
+
+    public void setInput(String input) {
+        this.input = input;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public void setOutput(String output) {
+        this.output = output;
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    public void setLines(long lines) {
+        this.lines = lines;
+    }
+
+    public long getValid() {
+        return valid;
+    }
+
+    public void setValid(long valid) {
+        this.valid = valid;
+    }
+
+    public long getInvalid() {
+        return invalid;
+    }
+
+    public void setInvalid(long invalid) {
+        this.invalid = invalid;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public double getLinesPerSecond() {
+        return linesPerSecond;
+    }
+
+    public void setLinesPerSecond(double linesPerSecond) {
+        this.linesPerSecond = linesPerSecond;
+    }
+
+    public double getMegabytesPerSecond() {
+        return megabytesPerSecond;
+    }
+
+    public void setMegabytesPerSecond(double megabytesPerSecond) {
+        this.megabytesPerSecond = megabytesPerSecond;
+    }
+
+    public Map<String, Long> getOutcomes() {
+        return outcomes;
+    }
+
+    public void setOutcomes(Map<String, Long> outcomes) {
+        this.outcomes = outcomes;
+    }
+
+    public Map<String, Long> getClaimErrors() {
+        return claimErrors;
+    }
+
+    public void setClaimErrors(Map<String, Long> claimErrors) {
+        this.claimErrors = claimErrors;
+    }
+
+    public Map<String, Double> getLatencyMicros() {
+        return latencyMicros;
+    }
+
+    public void setLatencyMicros(Map<String, Double> latencyMicros) {
+        this.latencyMicros = latencyMicros;
+    }
+}
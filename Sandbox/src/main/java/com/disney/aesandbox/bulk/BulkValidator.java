@@ -0,0 +1,399 @@
+package com.disney.aesandbox.bulk;
+
+import com.disney.aesandbox.commandline.util.ActivationLinkParser;
+import com.disney.aesandbox.jwks.IssuerRegistry;
+import com.disney.aesandbox.jwks.KeySetSource;
+import com.disney.aesandbox.metrics.LatencyHistogram;
+import com.disney.aesandbox.objmapping.TokenType;
+import com.disney.aesandbox.objmapping.TokenValidationResult;
+import com.disney.aesandbox.objmapping.ValidationResult;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Validates a file of tokens and activation links, one per line, in parallel, with the same checks as the
+ * validate tasks.  Lines containing "://" are parsed as activation links and validated as ACTIVATION tokens;
+ * other lines are validated as tokens of the type given.  Blank lines and lines starting with # are skipped.
+ *
+ * The input is split into SEGMENT_SIZE byte ranges which worker threads memory-map and scan for lines, so files
+ * of any size are read without loading them and without a single reader thread becoming the bottleneck.  A line
+ * belongs to the segment it starts in; a worker reads past the end of its segment, by up to MAX_LINE_LENGTH, to
+ * finish its last line.  Lines longer than MAX_LINE_LENGTH are not validated, wherever they are, and have outcome
+ * LINE_TOO_LONG.
+ *
+ * Each segment's results go to a part file as NDJSON, one object per input line with its byte offset and its
+ * LineOutcome, and the parts are concatenated into the output in input order.  Tokens are validated without the
+ * verified-token cache, since each is seen once.
+ */
+public class BulkValidator {
+
+    // Defaults; tests use smaller values to put many segment boundaries in a small file
+    static final int SEGMENT_SIZE = 32 * 1024 * 1024;
+    static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final ObjectMapper SUMMARY_MAPPER = new ObjectMapper();
+
+    private final IssuerRegistry issuers;
+    private final String jwksUrl;
+    private final TokenType tokenType;
+    private final int threads;
+    private final int segmentSize;
+    private final int maxLineLength;
+
+    /**
+     * @param issuers Routes tokens to their issuer's keys when no JWKS URL is given
+     * @param jwksUrl Key set to validate every token against, or null to route by issuer
+     * @param tokenType Type of the lines that are tokens rather than activation links
+     * @param threads Number of worker threads
+     */
+    public BulkValidator(IssuerRegistry issuers, String jwksUrl, TokenType tokenType, int threads) {
+        this(issuers, jwksUrl, tokenType, threads, SEGMENT_SIZE, MAX_LINE_LENGTH);
+    }
+
+    BulkValidator(IssuerRegistry issuers, String jwksUrl, TokenType tokenType, int threads, int segmentSize,
+                  int maxLineLength) {
+        this.issuers = issuers;
+        this.jwksUrl = (jwksUrl == null || jwksUrl.trim().isEmpty()) ? null : jwksUrl.trim();
+        this.tokenType = tokenType;
+        this.threads = Math.max(1, threads);
+        this.segmentSize = segmentSize;
+        this.maxLineLength = maxLineLength;
+    }
+
+    /**
+     * Validate every line of the input, writing the results to output and the summary to
+     * output + ".summary.json".
+     *
+     * @return The summary
+     * @throws IOException If the input can't be read, the output can't be written, or the key set given by
+     * JWKS URL can't be loaded
+     * @throws IllegalArgumentException If the JWKS URL is not allowed; see IssuerRegistry.sourceForUrl
+     */
+    public BulkValidationSummary run(Path input, Path output) throws IOException {
+        KeySetSource fixedSource = null;
+        if (jwksUrl != null) {
+            fixedSource = issuers.sourceForUrl(jwksUrl);
+            // Fail now rather than once per line
+            fixedSource.getKeys();
+        } else if (issuers.isEmpty()) {
+            fixedSource = IssuerRegistry.IN_PROCESS;
+        }
+
+        long start = System.nanoTime();
+        List<SegmentResult> results = new ArrayList<>();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "bulk-validate-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        long size;
+        List<Path> parts = new ArrayList<>();
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+            size = in.size();
+            List<Future<SegmentResult>> futures = new ArrayList<>();
+            for (long segStart = 0; segStart < size; segStart += segmentSize) {
+                Path part = output.resolveSibling(output.getFileName() + ".part" + parts.size());
+                parts.add(part);
+                Segment segment = new Segment(in, size, segStart, Math.min(size, segStart + segmentSize), part,
+                        fixedSource);
+                futures.add(workers.submit(segment::run));
+            }
+            for (Future<SegmentResult> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException | InterruptedException e) {
+            stop(workers);
+            deleteParts(parts);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted", e);
+            }
+            Throwable cause = e.getCause();
+            throw (cause instanceof IOException) ? (IOException) cause : new IOException(cause);
+        } finally {
+            workers.shutdown();
+        }
+
+        try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (SegmentResult result : results) {
+                try (FileChannel part = FileChannel.open(result.part, StandardOpenOption.READ)) {
+                    long pos = 0;
+                    long len = part.size();
+                    while (pos < len) {
+                        pos += part.transferTo(pos, len - pos, out);
+                    }
+                }
+            }
+        } finally {
+            deleteParts(parts);
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        BulkValidationSummary summary = summarize(results, input, output, size, elapsedNanos);
+        SUMMARY_MAPPER.writerWithDefaultPrettyPrinter().writeValue(
+                output.resolveSibling(output.getFileName() + ".summary.json").toFile(), summary);
+        return summary;
+    }
+
+    private BulkValidationSummary summarize(List<SegmentResult> results, Path input, Path output, long bytes,
+                                            long elapsedNanos) {
+        Map<String, Long> outcomes = new TreeMap<>();
+        Map<String, Long> claimErrors = new TreeMap<>();
+        LatencyHistogram latency = new LatencyHistogram();
+        long lines = 0;
+        for (SegmentResult result : results) {
+            lines += result.lines;
+            result.outcomes.forEach((k, v) -> outcomes.merge(k.name(), v[0], Long::sum));
+            result.claimErrors.forEach((k, v) -> claimErrors.merge(k, v[0], Long::sum));
+            latency.add(result.latency);
+        }
+
+        BulkValidationSummary summary = new BulkValidationSummary();
+        summary.setInput(input.toString());
+        summary.setOutput(output.toString());
+        summary.setLines(lines);
+        summary.setValid(outcomes.getOrDefault(LineOutcome.VALID.name(), 0L));
+        summary.setInvalid(lines - summary.getValid());
+        summary.setBytes(bytes);
+        summary.setThreads(threads);
+        summary.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        double seconds = Math.max(elapsedNanos, 1) / 1e9;
+        summary.setLinesPerSecond(lines / seconds);
+        summary.setMegabytesPerSecond(bytes / (1024.0 * 1024.0) / seconds);
+        summary.setOutcomes(outcomes);
+        summary.setClaimErrors(claimErrors);
+        summary.setLatencyMicros(latency.getSummaryMicros());
+        return summary;
+    }
+
+    /**
+     * Stop the remaining segments after one failed, waiting briefly so that they don't leave part files behind.
+     */
+    private static void stop(ExecutorService workers) {
+        workers.shutdownNow();
+        try {
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void deleteParts(List<Path> parts) {
+        for (Path part : parts) {
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Counts and latencies for one segment, and the part file holding its results.
+     */
+    private static final class SegmentResult {
+
+        final Path part;
+        long lines;
+        // Counters in single-element arrays, so they can be bumped in place
+        final Map<LineOutcome, long[]> outcomes = new EnumMap<>(LineOutcome.class);
+        final Map<String, long[]> claimErrors = new HashMap<>();
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        SegmentResult(Path part) {
+            this.part = part;
+        }
+
+        <K> void count(Map<K, long[]> counts, K key) {
+            counts.computeIfAbsent(key, k -> new long[1])[0]++;
+        }
+    }
+
+    /**
+     * One byte range of the input, scanned and validated by a single worker.
+     */
+    private final class Segment {
+
+        private final FileChannel in;
+        private final long fileSize;
+        private final long start;
+        private final long end;
+        private final KeySetSource fixedSource;
+        private final SegmentResult result;
+        private byte[] line = new byte[4096];
+
+        Segment(FileChannel in, long fileSize, long start, long end, Path part, KeySetSource fixedSource) {
+            this.in = in;
+            this.fileSize = fileSize;
+            this.start = start;
+            this.end = end;
+            this.fixedSource = fixedSource;
+            this.result = new SegmentResult(part);
+        }
+
+        SegmentResult run() throws IOException {
+            // Map one byte before the segment, to see whether it starts mid-line, and enough after it to finish
+            // the last line
+            long mapStart = (start == 0) ? 0 : start - 1;
+            long mapEnd = Math.min(fileSize, end + maxLineLength);
+            MappedByteBuffer buf = in.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+            int limit = buf.limit();
+            int segEnd = (int) (end - mapStart);
+
+            int pos = 0;
+            if (start > 0) {
+                // A line continuing from the previous segment belongs to that segment
+                if (buf.get(0) != '\n') {
+                    pos = indexOfNewline(buf, 1, limit);
+                    if (pos < 0) {
+                        pos = limit;
+                    }
+                }
+                pos++;
+            }
+
+            try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(result.part), 1 << 16);
+                 JsonGenerator gen = JSON.createGenerator(os, JsonEncoding.UTF8)) {
+                // One object per line, separated by the newlines written after each
+                gen.setRootValueSeparator(null);
+                while (pos < segEnd) {
+                    int nl = indexOfNewline(buf, pos, limit);
+                    long offset = mapStart + pos;
+                    int lineEnd = (nl < 0) ? limit : nl;
+                    if (lineEnd - pos > maxLineLength) {
+                        // Also the case when the line runs past the end of the mapping
+                        writeFailure(gen, offset, LineOutcome.LINE_TOO_LONG,
+                                "Line is longer than " + maxLineLength + " bytes");
+                    } else {
+                        processLine(gen, offset, buf, pos, lineEnd - pos);
+                    }
+                    pos = lineEnd + 1;
+                }
+            }
+            return result;
+        }
+
+        private void processLine(JsonGenerator gen, long offset, MappedByteBuffer buf, int from, int len)
+                throws IOException {
+            if (line.length < len) {
+                line = new byte[Math.max(len, line.length * 2)];
+            }
+            buf.position(from);
+            buf.get(line, 0, len);
+            String text = new String(line, 0, len, UTF_8).trim();
+            if (text.isEmpty() || text.startsWith("#")) {
+                return;
+            }
+
+            long t0 = System.nanoTime();
+            String token = text;
+            TokenType type = tokenType;
+            if (text.contains("://")) {
+                try {
+                    token = new ActivationLinkParser(text).getToken();
+                    type = TokenType.ACTIVATION;
+                } catch (RuntimeException e) {
+                    result.latency.record(System.nanoTime() - t0);
+                    writeFailure(gen, offset, LineOutcome.MALFORMED_LINK, e.getMessage());
+                    return;
+                }
+            }
+
+            KeySetSource source = (fixedSource != null) ? fixedSource : issuers.route(token);
+            if (source == null) {
+                result.latency.record(System.nanoTime() - t0);
+                writeFailure(gen, offset, LineOutcome.UNKNOWN_ISSUER, null);
+                return;
+            }
+            TokenValidationResult validation = issuers.validate(token, type, source, false);
+            result.latency.record(System.nanoTime() - t0);
+            LineOutcome outcome = LineOutcome.of(validation);
+            if (outcome == LineOutcome.KEYS_UNAVAILABLE) {
+                writeFailure(gen, offset, outcome, null);
+                return;
+            }
+
+            result.lines++;
+            result.count(result.outcomes, outcome);
+            gen.writeStartObject();
+            gen.writeNumberField("offset", offset);
+            gen.writeStringField("type", type.name());
+            gen.writeBooleanField("valid", validation.isValid());
+            gen.writeStringField("outcome", outcome.name());
+            gen.writeStringField("signature", validation.getSignature());
+            if (validation.getKid() != null) {
+                gen.writeStringField("kid", validation.getKid());
+            }
+            if (validation.getClaims() != null && validation.getClaims().getIss() != null) {
+                gen.writeStringField("iss", validation.getClaims().getIss());
+            }
+            if (validation.getClaims() != null && validation.getClaims().getSub() != null) {
+                gen.writeStringField("sub", validation.getClaims().getSub());
+            }
+            gen.writeArrayFieldStart("errors");
+            for (ValidationResult.ClaimError error : validation.getErrors()) {
+                gen.writeString(error.getCode().name());
+                result.count(result.claimErrors, error.getCode().name());
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+            gen.writeRaw('\n');
+        }
+
+        private void writeFailure(JsonGenerator gen, long offset, LineOutcome outcome, String message)
+                throws IOException {
+            result.lines++;
+            result.count(result.outcomes, outcome);
+            gen.writeStartObject();
+            gen.writeNumberField("offset", offset);
+            gen.writeBooleanField("valid", false);
+            gen.writeStringField("outcome", outcome.name());
+            if (message != null) {
+                gen.writeStringField("message", message);
+            }
+            gen.writeEndObject();
+            gen.writeRaw('\n');
+        }
+    }
+
+    /**
+     * @return The index of the first newline in [from, limit), or -1.
+     */
+    private static int indexOfNewline(MappedByteBuffer buf, int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if (buf.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,53 @@
+package com.disney.aesandbox.bulk;
+
+import com.disney.aesandbox.objmapping.TokenValidationResult;
+import com.disney.aesandbox.token.SignatureStatus;
+
+/**
+ * Outcome of one input line, as written to the output and counted in the summary.  A token that was checked is
+ * VALID, CLAIMS_INVALID if its signature is valid but its claims are not, or otherwise the SignatureStatus it
+ * failed with; the last two are for lines that aren't checked at all.
+ */
+enum LineOutcome {
+
+    VALID,
+    CLAIMS_INVALID,
+
+    // SignatureStatus failures
+    INVALID,
+    UNKNOWN_KID,
+    MALFORMED,
+    UNKNOWN_ISSUER,
+    KEYS_UNAVAILABLE,
+
+    // The line contains "://" but is not an activation link with a token
+    MALFORMED_LINK,
+
+    // The line is longer than BulkValidator.MAX_LINE_LENGTH
+    LINE_TOO_LONG;
+
+    static LineOutcome of(TokenValidationResult validation) {
+        if (validation.isValid()) {
+            return VALID;
+        }
+        SignatureStatus signature = SignatureStatus.valueOf(validation.getSignature());
+        return (signature == SignatureStatus.VALID) ? CLAIMS_INVALID : of(signature);
+    }
+
+    static LineOutcome of(SignatureStatus signature) {
+        switch (signature) {
+            case INVALID:
+                return INVALID;
+            case UNKNOWN_KID:
+                return UNKNOWN_KID;
+            case MALFORMED:
+                return MALFORMED;
+            case UNKNOWN_ISSUER:
+                return UNKNOWN_ISSUER;
+            case KEYS_UNAVAILABLE:
+                return KEYS_UNAVAILABLE;
+            default:
+                throw new IllegalArgumentException("Not a failure: " + signature);
+        }
+    }
+}
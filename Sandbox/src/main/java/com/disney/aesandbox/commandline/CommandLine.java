@@ -18,6 +18,10 @@ public class CommandLine extends Thread {
 
         boolean exit = false;
         Console cons = System.console();
+        if (cons == null) {
+            System.err.println("No console is available for the interactive shell; see HeadlessCommandLine to run tasks without one.");
+            return;
+        }
 
         while (!exit) {
             cons.writer().print(prompt);
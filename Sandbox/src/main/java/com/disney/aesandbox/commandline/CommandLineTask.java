@@ -1,8 +1,11 @@
 package com.disney.aesandbox.commandline;
 
+import java.util.Map;
+
 public abstract class CommandLineTask implements Runnable {
 
     private String prompt;
+    private String name;
 
     public static final CommandLineTask EXIT_TASK = new CommandLineTask() {
         @Override
@@ -19,12 +22,69 @@ public abstract class CommandLineTask implements Runnable {
         this.prompt = prompt;
     }
 
+    /**
+     * @param name The name the task is run by in headless mode, e.g. "validate-get"
+     * @param prompt The menu text of the task in the interactive shell
+     */
+    protected CommandLineTask(String name, String prompt) {
+        this.name = name;
+        this.prompt = prompt;
+    }
+
     public abstract void run();
 
+    /**
+     * Run the task without a console, for scripts.  Input comes from the --name=value arguments of the command
+     * instead of prompts, and nothing is printed: the returned object is written to stdout as one line of JSON.
+     *
+     * @param args The command's arguments, by name without the leading "--"
+     * @return The task's output; must be serializable by Jackson
+     * @throws IllegalArgumentException If a required argument is missing or invalid
+     * @throws Exception If the task fails
+     */
+    public Object runHeadless(Map<String, String> args) throws Exception {
+        throw new UnsupportedOperationException("Task " + name + " can only be run in the interactive shell");
+    }
+
+    /**
+     * @return The value of a headless argument that has no default.
+     * @throws IllegalArgumentException If the argument was not given
+     */
+    protected static String requireArg(Map<String, String> args, String name) {
+        String value = args.get(name);
+        if (value == null || value.trim().length() == 0) {
+            throw new IllegalArgumentException("Missing argument --" + name + "=<value>");
+        }
+        return value.trim();
+    }
+
+    /**
+     * @return The value of a numeric headless argument, or defaultValue if it was not given.
+     * @throws IllegalArgumentException If the argument is not a number
+     */
+    protected static long longArg(Map<String, String> args, String name, long defaultValue) {
+        String value = args.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " must be a number: " + value);
+        }
+    }
+
     public String getPrompt() {
         return prompt;
     }
 
+    /**
+     * @return The task's headless name, or null if the task can only be run from the interactive menu.
+     */
+    public String getName() {
+        return name;
+    }
+
     public void printDescription() {}
 
     public void innerREPL() {}
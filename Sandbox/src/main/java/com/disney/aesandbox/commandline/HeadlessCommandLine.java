@@ -0,0 +1,148 @@
+package com.disney.aesandbox.commandline;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs tasks by name, without a console, for scripts and load tests.  A command is the task name followed by its
+ * arguments as --name=value (a bare --name means "true"), e.g.
+ *
+ *     validate-get --token=eyJ... --jwks-url=http://localhost:8484/jwks
+ *
+ * Commands come either from the program arguments (execute(), one command) or from stdin (run(), one command per
+ * line until end of input; blank lines and lines starting with # are skipped).  Each command writes exactly one
+ * line of JSON to stdout: the task's output, or {"task": ..., "error": ...} if it failed.  Anything else the
+ * sandbox prints goes to stderr.  "help" lists the tasks that can be run this way.
+ */
+public class HeadlessCommandLine extends Thread {
+
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_FAILED = 1;
+    public static final int EXIT_USAGE = 2;
+
+    private static final String HELP = "help";
+
+    private final Map<String, CommandLineTask> tasks = new LinkedHashMap<>();
+    private final ObjectWriter writer = new ObjectMapper().writer();
+    private final PrintStream out = System.out;
+
+    public HeadlessCommandLine(List<CommandLineTask> tasks) {
+        super("headless-command-line");
+        for (CommandLineTask task : tasks) {
+            // Tasks without a name are interactive only
+            if (task.getName() != null) {
+                this.tasks.put(task.getName(), task);
+            }
+        }
+    }
+
+    /**
+     * Read and run commands from stdin until it is closed.  Returning does not stop the process, so a sandbox
+     * started with no input keeps serving HTTP.
+     */
+    public void run() {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.length() > 0 && !line.startsWith("#")) {
+                    execute(line.split("\\s+"));
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Run one command.
+     *
+     * @param command The task name followed by its arguments
+     * @return EXIT_OK, EXIT_FAILED if the task threw, or EXIT_USAGE if the task or its arguments are invalid
+     */
+    public int execute(String[] command) {
+        String name = command[0];
+        CommandLineTask task = tasks.get(name);
+        if (HELP.equals(name)) {
+            return write(name, describeTasks());
+        } else if (task == null) {
+            return error(name, "Unknown task; run \"help\" for the list of tasks", EXIT_USAGE);
+        }
+
+        Map<String, String> args = new HashMap<>();
+        for (int i = 1; i < command.length; i++) {
+            String arg = command[i];
+            if (!arg.startsWith("--") || arg.length() == 2) {
+                return error(name, "Arguments must be in the form --name=value: " + arg, EXIT_USAGE);
+            }
+            int equals = arg.indexOf('=');
+            if (equals < 0) {
+                args.put(arg.substring(2), "true");
+            } else {
+                args.put(arg.substring(2, equals), arg.substring(equals + 1));
+            }
+        }
+
+        try {
+            return write(name, task.runHeadless(args));
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            return error(name, e.getMessage(), EXIT_USAGE);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return error(name, String.valueOf(e.getMessage()), EXIT_FAILED);
+        }
+    }
+
+    private List<Map<String, String>> describeTasks() {
+        List<Map<String, String>> descriptions = new ArrayList<>();
+        for (CommandLineTask task : tasks.values()) {
+            Map<String, String> description = new LinkedHashMap<>();
+            description.put("task", task.getName());
+            description.put("description", task.getPrompt());
+            descriptions.add(description);
+        }
+        return descriptions;
+    }
+
+    private int error(String name, String message, int status) {
+        Map<String, String> error = new LinkedHashMap<>();
+        error.put("task", name);
+        error.put("error", message);
+        try {
+            print(writer.writeValueAsString(error));
+        } catch (Exception e) {
+            // Not possible for a map of strings
+            e.printStackTrace();
+        }
+        return status;
+    }
+
+    private int write(String name, Object result) {
+        String json;
+        try {
+            json = writer.writeValueAsString(result);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return error(name, "The task output could not be written as JSON", EXIT_FAILED);
+        }
+        print(json);
+        return EXIT_OK;
+    }
+
+    private void print(String json) {
+        synchronized (out) {
+            out.println(json);
+            out.flush();
+        }
+    }
+}
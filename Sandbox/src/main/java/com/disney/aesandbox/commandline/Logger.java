@@ -1,7 +1,10 @@
 package com.disney.aesandbox.commandline;
 
+import java.io.Console;
+
 /**
- * Simple logger
+ * Simple logger.  Writes to the console, or to stderr when there is none (headless mode), so that stdout only
+ * carries task output.
  */
 
 public class Logger {
@@ -23,7 +26,12 @@ public class Logger {
     }
 
     public void log(String message) {
-        System.console().writer().println(message);
+        Console cons = System.console();
+        if (cons != null) {
+            cons.writer().println(message);
+        } else {
+            System.err.println(message);
+        }
     }
 
     public void logVerbose(String message) {
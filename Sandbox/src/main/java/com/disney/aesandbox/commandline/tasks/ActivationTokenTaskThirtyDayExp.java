@@ -5,6 +5,6 @@ import java.util.concurrent.TimeUnit;
 public class ActivationTokenTaskThirtyDayExp extends SampleActivationTokenTask {
 
     public ActivationTokenTaskThirtyDayExp() {
-        super(TimeUnit.DAYS.toSeconds(30), "Create Sample Activation Token with 30-day Expiration using an internally-generated private key for signing.");
+        super(TimeUnit.DAYS.toSeconds(30), "mint-activation-30d", "Create Sample Activation Token with 30-day Expiration using an internally-generated private key for signing.");
     }
 }
@@ -0,0 +1,93 @@
+package com.disney.aesandbox.commandline.tasks;
+
+import com.disney.aesandbox.bulk.BulkValidationSummary;
+import com.disney.aesandbox.bulk.BulkValidator;
+import com.disney.aesandbox.commandline.CommandLineTask;
+import com.disney.aesandbox.jwks.IssuerRegistry;
+import com.disney.aesandbox.objmapping.TokenType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Console;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+public class BulkValidateTask extends CommandLineTask {
+
+    private final IssuerRegistry issuers;
+
+    public BulkValidateTask(IssuerRegistry issuers) {
+        super("bulk-validate", "Validate a file of tokens and/or activation links, one per line, writing the results to a file.");
+        this.issuers = issuers;
+    }
+
+    @Override
+    public void run() {
+
+        try {
+
+            Console cons = System.console();
+            cons.writer().println("\nThis task will validate every token and activation link in a file, one per line.");
+            cons.writer().print("Path of the input file: ");
+            cons.writer().flush();
+            String inputName = cons.readLine();
+            if (inputName == null || inputName.trim().length() == 0) {
+                return;
+            }
+            Path input = Paths.get(inputName.trim());
+
+            Path defaultOutput = defaultOutput(input);
+            cons.writer().print("Path of the results file, or <RETURN> for " + defaultOutput + ": ");
+            cons.writer().flush();
+            String outputName = cons.readLine();
+            Path output = (outputName == null || outputName.trim().length() == 0) ? defaultOutput : Paths.get(outputName.trim());
+
+            cons.writer().println("Activation links are validated as activation tokens.  What type are the other tokens?");
+            cons.writer().print("ACTIVATION, GET_ENTITLEMENT or SET_ENTITLEMENT, or <RETURN> for GET_ENTITLEMENT: ");
+            cons.writer().flush();
+            String typeName = cons.readLine();
+            TokenType type = toType(typeName);
+
+            cons.writer().println("Input the full URL to a JWKS endpoint to validate every token against.");
+            cons.writer().print("To use the JWKS configured for each token's issuer, simply press <RETURN> without inputting any URL: ");
+            cons.writer().flush();
+            String uri = cons.readLine();
+
+            int threads = Runtime.getRuntime().availableProcessors();
+            cons.writer().println("\nValidating " + input + " on " + threads + " threads...");
+            cons.writer().flush();
+            BulkValidationSummary summary = new BulkValidator(issuers, uri, type, threads).run(input, output);
+
+            cons.writer().println(new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(summary));
+            cons.writer().println("\nResults written to " + output + ", summary to " + output + ".summary.json\n");
+
+        } catch (Exception e) {
+
+            e.printStackTrace();
+
+        }
+    }
+
+    /**
+     * Headless arguments: --input, and optionally --output, --type (default GET_ENTITLEMENT), --jwks-url and
+     * --threads (default one per processor), with the same meanings as the interactive prompts.
+     *
+     * @return The run's summary, which is also written next to the results file
+     */
+    @Override
+    public Object runHeadless(Map<String, String> args) throws Exception {
+        Path input = Paths.get(requireArg(args, "input"));
+        Path output = args.containsKey("output") ? Paths.get(requireArg(args, "output")) : defaultOutput(input);
+        int threads = (int) longArg(args, "threads", Runtime.getRuntime().availableProcessors());
+        return new BulkValidator(issuers, args.get("jwks-url"), toType(args.get("type")), threads).run(input, output);
+    }
+
+    private static Path defaultOutput(Path input) {
+        return input.resolveSibling(input.getFileName() + ".results.ndjson");
+    }
+
+    private static TokenType toType(String typeName) {
+        return (typeName == null || typeName.trim().length() == 0) ?
+                TokenType.GET_ENTITLEMENT : TokenType.valueOf(typeName.trim().toUpperCase());
+    }
+}
@@ -2,15 +2,32 @@ package com.disney.aesandbox.commandline.tasks;
 
 import com.disney.aesandbox.commandline.CommandLineTask;
 import com.disney.aesandbox.keymgmt.DemoOnlyTransientKeyManager;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class ForcedKeyRotationTask extends CommandLineTask {
 
     public ForcedKeyRotationTask() {
-        super("Force a key rotation, which will cause a different key to be used for signing.");
+        super("rotate", "Force a key rotation, which will cause a different key to be used for signing.");
     }
 
     @Override
     public void run() {
         DemoOnlyTransientKeyManager.INSTANCE.rotateKeys();
     }
+
+    /**
+     * @return The kid now used for signing, and the key set after rotation (as /jwks/rotate returns)
+     */
+    @Override
+    public Object runHeadless(Map<String, String> args) throws Exception {
+        DemoOnlyTransientKeyManager.INSTANCE.rotateKeys();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("kid", DemoOnlyTransientKeyManager.INSTANCE.getPrivateKeyForSigning().getRsaKey().getKid());
+        result.put("jwks", new ObjectMapper().readTree(DemoOnlyTransientKeyManager.INSTANCE.getJwksSnapshot().getCompact()));
+        return result;
+    }
 }
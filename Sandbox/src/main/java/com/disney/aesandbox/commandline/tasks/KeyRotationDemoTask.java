@@ -3,7 +3,6 @@ package com.disney.aesandbox.commandline.tasks;
 import com.disney.aesandbox.commandline.CommandLineTask;
 import com.disney.aesandbox.objmapping.TokenClaims;
 import com.disney.aesandbox.keymgmt.DemoOnlyTransientKeyManager;
-import com.disney.aesandbox.keymgmt.VerificationKeys;
 import com.disney.aesandbox.token.TokenUtils;
 
 import java.io.Console;
@@ -26,13 +25,13 @@ public class KeyRotationDemoTask extends CommandLineTask {
             cons.writer().println(DemoOnlyTransientKeyManager.INSTANCE.getPrettyPrintedJsonPublicKeySet());
             String tok = createTokenString();
             cons.writer().println("\nUsing the current JWKS, a sample token is\n" + tok);
-            TokenUtils.decodeToClaims(tok, new VerificationKeys(DemoOnlyTransientKeyManager.INSTANCE.getJsonPublicKeySet()));
+            TokenUtils.printVerification(cons, tok, DemoOnlyTransientKeyManager.INSTANCE.getVerificationKeys());
             DemoOnlyTransientKeyManager.INSTANCE.rotateKeys();
             cons.writer().println("\nAfter rotating keys, the new keyset is\n");
             cons.writer().println(DemoOnlyTransientKeyManager.INSTANCE.getPrettyPrintedJsonPublicKeySet());
             String newTok = createTokenString();
             cons.writer().println("\nA new sample token is\n" + newTok);
-            TokenUtils.decodeToClaims(newTok, new VerificationKeys(DemoOnlyTransientKeyManager.INSTANCE.getJsonPublicKeySet()));
+            TokenUtils.printVerification(cons, newTok, DemoOnlyTransientKeyManager.INSTANCE.getVerificationKeys());
             cons.writer().println("");
         } catch (Exception e) {
             e.printStackTrace();
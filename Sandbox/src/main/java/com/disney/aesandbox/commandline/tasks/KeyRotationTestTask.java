@@ -54,7 +54,7 @@ public class KeyRotationTestTask extends CommandLineTask {
                         if (token != null) {
 
                             cons.writer().println("");
-                            TokenUtils.decodeToClaims(token, new VerificationKeys(preRotateKeySet));
+                            TokenUtils.printVerification(cons, token, new VerificationKeys(preRotateKeySet));
                             cons.writer().print("\nNow rotate the keys.  Press <RETURN> when done...");
                             cons.writer().flush();
                             cons.readLine();
@@ -69,7 +69,7 @@ public class KeyRotationTestTask extends CommandLineTask {
                             }
 
                             cons.writer().println("\nAfter rotation, re-validating the token....");
-                            TokenUtils.decodeToClaims(token, new VerificationKeys(postRotateKeySet));
+                            TokenUtils.printVerification(cons, token, new VerificationKeys(postRotateKeySet));
                             cons.writer().println("");
 
                         } else {
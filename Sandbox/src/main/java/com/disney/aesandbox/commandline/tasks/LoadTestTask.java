@@ -0,0 +1,95 @@
+package com.disney.aesandbox.commandline.tasks;
+
+import com.disney.aesandbox.commandline.CommandLineTask;
+import com.disney.aesandbox.loadtest.LoadGenerator;
+import com.disney.aesandbox.loadtest.LoadTestReport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Console;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class LoadTestTask extends CommandLineTask {
+
+    private static final long DEFAULT_DURATION_SECONDS = 30;
+
+    private final boolean serving;
+
+    /**
+     * @param serving Whether this process runs the HTTP server that JWKS requests go to by default
+     */
+    public LoadTestTask(boolean serving) {
+        super("load-test", "Generate load on the JWKS endpoint and on token signing and verification, and report latencies.");
+        this.serving = serving;
+    }
+
+    @Override
+    public void run() {
+
+        try {
+
+            Console cons = System.console();
+            cons.writer().println("\nThis task will run JWKS requests, token signing and token verification from many threads at once");
+            cons.writer().println("\tand report the latency percentiles, throughput and errors of each.");
+            cons.writer().println("Operations are jwks, rotate, sign, verify and verify-uncached, each optionally with a :weight.");
+            String mix = prompt(cons, "Operations to run", LoadGenerator.DEFAULT_MIX);
+            String concurrency = prompt(cons, "Number of concurrent workers", String.valueOf(Runtime.getRuntime().availableProcessors()));
+            String duration = prompt(cons, "Duration in seconds", String.valueOf(DEFAULT_DURATION_SECONDS));
+            String rotateEvery = prompt(cons, "Seconds between forced key rotations, 0 for none", "0");
+            String url = prompt(cons, "URL of the sandbox for JWKS requests", LoadGenerator.DEFAULT_BASE_URL);
+
+            cons.writer().println("\nRunning...");
+            cons.writer().flush();
+            LoadTestReport report = new LoadGenerator(url, LoadGenerator.parseMix(mix), Integer.parseInt(concurrency),
+                    TimeUnit.SECONDS.toMillis(Long.parseLong(rotateEvery)))
+                    .run(TimeUnit.SECONDS.toMillis(Long.parseLong(duration)), 0);
+            cons.writer().println(new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(report));
+            cons.writer().println("");
+
+        } catch (Exception e) {
+
+            e.printStackTrace();
+
+        }
+    }
+
+    /**
+     * Headless arguments, all optional: --mix (e.g. "jwks:1,verify:8"), --concurrency, --duration-seconds,
+     * --requests, --rotate-every-seconds and --url, with the same meanings as the interactive prompts.  Without
+     * --duration-seconds or --requests the test runs for 30 seconds; with both it stops at whichever limit is
+     * reached first.
+     *
+     * Run as a single command, this process has no HTTP server, so jwks and rotate (and forced rotations) need
+     * --url to name a sandbox that is serving.
+     *
+     * @return The report
+     * @throws IllegalArgumentException If JWKS requests would go to this process but it isn't serving
+     */
+    @Override
+    public Object runHeadless(Map<String, String> args) throws Exception {
+        long requests = longArg(args, "requests", 0);
+        long duration = longArg(args, "duration-seconds", (requests > 0) ? 0 : DEFAULT_DURATION_SECONDS);
+        String mix = args.containsKey("mix") ? requireArg(args, "mix") : LoadGenerator.DEFAULT_MIX;
+        String url = args.containsKey("url") ? requireArg(args, "url") : LoadGenerator.DEFAULT_BASE_URL;
+        int concurrency = (int) longArg(args, "concurrency", Runtime.getRuntime().availableProcessors());
+        long rotateEvery = longArg(args, "rotate-every-seconds", 0);
+
+        Map<LoadGenerator.Operation, Integer> ops = LoadGenerator.parseMix(mix);
+        boolean usesServer = ops.containsKey(LoadGenerator.Operation.JWKS) ||
+                ops.containsKey(LoadGenerator.Operation.ROTATE) || rotateEvery > 0;
+        if (usesServer && !serving && !args.containsKey("url")) {
+            throw new IllegalArgumentException("jwks and rotate need a running sandbox, and none is started for a single " +
+                    "command: give --url, or run load-test on the stdin of \"serve\"");
+        }
+
+        return new LoadGenerator(url, ops, concurrency, TimeUnit.SECONDS.toMillis(rotateEvery))
+                .run(TimeUnit.SECONDS.toMillis(duration), requests);
+    }
+
+    private static String prompt(Console cons, String message, String defaultValue) {
+        cons.writer().print(message + ", or <RETURN> for " + defaultValue + ": ");
+        cons.writer().flush();
+        String input = cons.readLine();
+        return (input == null || input.trim().length() == 0) ? defaultValue : input.trim();
+    }
+}
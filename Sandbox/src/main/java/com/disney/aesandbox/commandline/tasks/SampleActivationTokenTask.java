@@ -7,14 +7,16 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.Console;
 import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 public abstract class SampleActivationTokenTask extends CommandLineTask {
 
     private long lifespanInSeconds;
 
-    protected SampleActivationTokenTask(long lifespanInSeconds, String title) {
-        super(title);
+    protected SampleActivationTokenTask(long lifespanInSeconds, String name, String title) {
+        super(name, title);
         this.lifespanInSeconds = lifespanInSeconds;
     }
 
@@ -25,10 +27,7 @@ public abstract class SampleActivationTokenTask extends CommandLineTask {
     @Override
     public void run() {
         try {
-            TokenClaims sampleTokenData = TokenClaims.newActivationClaimsFromJson();
-            long nowInSeconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
-            sampleTokenData.setIat(nowInSeconds);
-            sampleTokenData.setExp(nowInSeconds + getLifespan());
+            TokenClaims sampleTokenData = newClaims(getLifespan());
             Console cons = System.console();
             printJson(cons, sampleTokenData.toString());
             cons.writer().println("");
@@ -44,6 +43,34 @@ public abstract class SampleActivationTokenTask extends CommandLineTask {
         }
     }
 
+    /**
+     * Headless arguments: --lifespan-seconds to override the task's expiration.
+     *
+     * @return The token and the claims it was made from
+     */
+    @Override
+    public Object runHeadless(Map<String, String> args) {
+        long lifespan = longArg(args, "lifespan-seconds", getLifespan());
+        TokenClaims claims = newClaims(lifespan);
+        String token = TokenUtils.newToken(claims);
+        if (token.isEmpty()) {
+            throw new IllegalStateException("Token could not be signed");
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("token", token);
+        result.put("claims", claims);
+        return result;
+    }
+
+    private TokenClaims newClaims(long lifespan) {
+        TokenClaims sampleTokenData = TokenClaims.newActivationClaimsFromJson();
+        long nowInSeconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        sampleTokenData.setIat(nowInSeconds);
+        sampleTokenData.setExp(nowInSeconds + lifespan);
+        return sampleTokenData;
+    }
+
     private void printJson(Console cons, String json) {
         cons.writer().println("JSON source for token: ");
 
@@ -7,11 +7,13 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.Console;
 import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class SampleEntitlementTokenTask extends CommandLineTask {
 
     public SampleEntitlementTokenTask() {
-        super("Create Sample Entitlement Tokens (GET and PUT) using an internally-generated private key for signing.");
+        super("mint-entitlement", "Create Sample Entitlement Tokens (GET and PUT) using an internally-generated private key for signing.");
     }
 
     @Override
@@ -37,6 +39,26 @@ public class SampleEntitlementTokenTask extends CommandLineTask {
         }
     }
 
+    /**
+     * @return A GET, a SET/PUT and a GET-or-SET entitlement token, by "get", "set" and "both"
+     */
+    @Override
+    public Object runHeadless(Map<String, String> args) {
+        Map<String, String> tokens = new LinkedHashMap<>();
+        tokens.put("get", sign(TokenClaims.newGetEntitlementClaimsFromJson()));
+        tokens.put("set", sign(TokenClaims.newSetEntitlementClaimsFromJson()));
+        tokens.put("both", sign(TokenClaims.newBothEntitlementClaimsFromJson()));
+        return tokens;
+    }
+
+    private String sign(TokenClaims claims) {
+        String token = TokenUtils.newToken(claims);
+        if (token.isEmpty()) {
+            throw new IllegalStateException("Token could not be signed");
+        }
+        return token;
+    }
+
     private void printSection(Console cons, String title, String json, String tokenString, String sourcePath) {
         printJson(cons, title, json);
         cons.writer().println("");
@@ -2,13 +2,15 @@ package com.disney.aesandbox.commandline.tasks;
 
 import com.disney.aesandbox.commandline.CommandLineTask;
 import com.disney.aesandbox.keymgmt.DemoOnlyTransientKeyManager;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.Console;
+import java.util.Map;
 
 public class SampleJWKSTask extends CommandLineTask {
 
     public SampleJWKSTask() {
-        super("Show sample JWKS");
+        super("jwks", "Show sample JWKS");
     }
 
     @Override
@@ -17,4 +19,12 @@ public class SampleJWKSTask extends CommandLineTask {
         cons.writer().println(DemoOnlyTransientKeyManager.INSTANCE.getPrettyPrintedJsonPublicKeySet());
         cons.writer().println("\nThis set is also available via the HTTP endpoint.\n");
     }
+
+    /**
+     * @return The same key set as the /jwks endpoint
+     */
+    @Override
+    public Object runHeadless(Map<String, String> args) throws Exception {
+        return new ObjectMapper().readTree(DemoOnlyTransientKeyManager.INSTANCE.getJwksSnapshot().getCompact());
+    }
 }
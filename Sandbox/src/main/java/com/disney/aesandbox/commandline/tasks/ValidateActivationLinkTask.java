@@ -1,21 +1,22 @@
 package com.disney.aesandbox.commandline.tasks;
 
 import com.disney.aesandbox.commandline.CommandLineTask;
-import com.disney.aesandbox.jwks.external.JWKSEndpointReader;
+import com.disney.aesandbox.jwks.IssuerRegistry;
 import com.disney.aesandbox.commandline.util.ActivationLinkParser;
-import com.disney.aesandbox.objmapping.TokenClaims;
-import com.disney.aesandbox.keymgmt.DemoOnlyTransientKeyManager;
+import com.disney.aesandbox.objmapping.TokenType;
 import com.disney.aesandbox.keymgmt.VerificationKeys;
 import com.disney.aesandbox.token.TokenUtils;
 
 import java.io.*;
+import java.util.Map;
 
 public class ValidateActivationLinkTask extends CommandLineTask {
 
-    private static final String[] ACTIVATION_AUD = { "activation.disneyplus.com"};
+    private final IssuerRegistry issuers;
 
-    public ValidateActivationLinkTask() {
-        super("Validate an activation URL");
+    public ValidateActivationLinkTask(IssuerRegistry issuers) {
+        super("validate-link", "Validate an activation URL");
+        this.issuers = issuers;
     }
 
     @Override
@@ -27,18 +28,10 @@ public class ValidateActivationLinkTask extends CommandLineTask {
 
             cons.writer().println("\nThis task will validate an input token.");
             cons.writer().println("Input the full URL to a valid JWKS endpoint containing a JWK that will validate the token.");
-            cons.writer().print("To use the built-in default JWKS running in this process, simply press <RETURN> witnout inputting any URL: ");
+            cons.writer().println("To use the JWKS configured for the token's issuer, or the built-in default JWKS running in this");
+            cons.writer().print("process if no issuers are configured, simply press <RETURN> witnout inputting any URL: ");
             cons.writer().flush();
             String uri = cons.readLine();
-            String keyJson = null;
-            if (uri == null || uri.trim().length() == 0) {
-                keyJson = DemoOnlyTransientKeyManager.INSTANCE.getJsonPublicKeySet();
-            } else {
-                JWKSEndpointReader endpointReader = new JWKSEndpointReader(uri);
-                keyJson = endpointReader.getContent();
-            }
-
-            VerificationKeys vKeys = new VerificationKeys(keyJson);
 
             cons.writer().print("Paste an activation link to validate: ");
             cons.writer().flush();
@@ -53,8 +46,8 @@ public class ValidateActivationLinkTask extends CommandLineTask {
                 return;
             }
 
-            TokenClaims claims = TokenUtils.decodeToClaims(parser.getToken(), vKeys);
-            boolean isValid = (claims != null) && claims.validateClaims(cons, ACTIVATION_AUD, true);
+            VerificationKeys vKeys = issuers.keysFor(uri, parser.getToken());
+            boolean isValid = TokenUtils.printValidation(cons, parser.getToken(), TokenType.ACTIVATION, vKeys);
 
             if (!isValid) {
                 cons.writer().println("\nErrors found, the token will not work.\n");
@@ -69,6 +62,19 @@ public class ValidateActivationLinkTask extends CommandLineTask {
         }
     }
 
+    /**
+     * Headless arguments: --link, and optionally --jwks-url to validate against instead of the token issuer's
+     * key set.
+     *
+     * @return The validation result of the link's token, as for validate-get
+     * @throws IllegalArgumentException If the link is malformed
+     */
+    @Override
+    public Object runHeadless(Map<String, String> args) throws Exception {
+        String token = new ActivationLinkParser(requireArg(args, "link")).getToken();
+        return TokenUtils.validate(token, TokenType.ACTIVATION, issuers.keysFor(args.get("jwks-url"), token));
+    }
+
     private String getInput() {
         try {
             BufferedReader reader =
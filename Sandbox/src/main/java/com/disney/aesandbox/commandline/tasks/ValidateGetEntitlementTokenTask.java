@@ -1,22 +1,23 @@
 package com.disney.aesandbox.commandline.tasks;
 
 import com.disney.aesandbox.commandline.CommandLineTask;
-import com.disney.aesandbox.jwks.external.JWKSEndpointReader;
-import com.disney.aesandbox.objmapping.TokenClaims;
-import com.disney.aesandbox.keymgmt.DemoOnlyTransientKeyManager;
+import com.disney.aesandbox.jwks.IssuerRegistry;
+import com.disney.aesandbox.objmapping.TokenType;
 import com.disney.aesandbox.keymgmt.VerificationKeys;
 import com.disney.aesandbox.token.TokenUtils;
 
 import java.io.BufferedReader;
 import java.io.Console;
 import java.io.InputStreamReader;
+import java.util.Map;
 
 public class ValidateGetEntitlementTokenTask extends CommandLineTask {
 
-    private static final String[] GET_ENTITLEMENT_AUD = { "get.entitlement.disneyplus.com"};
+    private final IssuerRegistry issuers;
 
-    public ValidateGetEntitlementTokenTask() {
-        super("Validate a token intended for a GET entitlement call.");
+    public ValidateGetEntitlementTokenTask(IssuerRegistry issuers) {
+        super("validate-get", "Validate a token intended for a GET entitlement call.");
+        this.issuers = issuers;
     }
 
     @Override
@@ -27,18 +28,10 @@ public class ValidateGetEntitlementTokenTask extends CommandLineTask {
             Console cons = System.console();
             cons.writer().println("\nThis task will validate an input token.");
             cons.writer().println("Input the full URL to a valid JWKS endpoint containing a JWK that will validate the token.");
-            cons.writer().print("To use the built-in default JWKS running in this process, simply press <RETURN> witnout inputting any URL: ");
+            cons.writer().println("To use the JWKS configured for the token's issuer, or the built-in default JWKS running in this");
+            cons.writer().print("process if no issuers are configured, simply press <RETURN> witnout inputting any URL: ");
             cons.writer().flush();
             String uri = cons.readLine();
-            String keyJson = null;
-            if (uri == null || uri.trim().length() == 0) {
-                keyJson = DemoOnlyTransientKeyManager.INSTANCE.getJsonPublicKeySet();
-            } else {
-                JWKSEndpointReader endpointReader = new JWKSEndpointReader(uri);
-                keyJson = endpointReader.getContent();
-            }
-
-            VerificationKeys vKeys = new VerificationKeys(keyJson);
 
             cons.writer().println("");
             cons.writer().print("Paste a GET entitlement token string to validate: ");
@@ -50,8 +43,8 @@ public class ValidateGetEntitlementTokenTask extends CommandLineTask {
                 e.printStackTrace();
             }
 
-            TokenClaims claims = TokenUtils.decodeToClaims(token, vKeys);
-            boolean isValid = (claims != null) && claims.validateClaims(cons, GET_ENTITLEMENT_AUD, false);
+            VerificationKeys vKeys = issuers.keysFor(uri, token);
+            boolean isValid = TokenUtils.printValidation(cons, token, TokenType.GET_ENTITLEMENT, vKeys);
 
             if (!isValid) {
                 cons.writer().println("\nErrors found, the token will not work.\n");
@@ -66,6 +59,18 @@ public class ValidateGetEntitlementTokenTask extends CommandLineTask {
         }
     }
 
+    /**
+     * Headless arguments: --token, and optionally --jwks-url to validate against instead of the token issuer's
+     * key set.
+     *
+     * @return The signature status, kid, claim errors and decoded claims, as POST /tokens/validate returns
+     */
+    @Override
+    public Object runHeadless(Map<String, String> args) throws Exception {
+        String token = requireArg(args, "token");
+        return TokenUtils.validate(token, TokenType.GET_ENTITLEMENT, issuers.keysFor(args.get("jwks-url"), token));
+    }
+
     private String getInput() {
         try {
             BufferedReader reader =
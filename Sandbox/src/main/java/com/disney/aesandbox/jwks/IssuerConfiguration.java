@@ -0,0 +1,136 @@
+package com.disney.aesandbox.jwks;
+
+import com.disney.aesandbox.jwks.external.JwksCachePolicy;
+import io.micronaut.context.annotation.EachProperty;
+import io.micronaut.context.annotation.Parameter;
+
+import java.time.Duration;
+
+/**
+ * One issuer from application.yml.  Each entry under aesandbox.issuers names a token issuer and where the keys
+ * for its tokens come from, which is exactly one of:
+ *
+ * - jwks-url: a remote JWKS endpoint, cached per the issuer's cache settings
+ * - file: a JWKS file, re-read when it changes
+ * - in-process: true, the key set of this sandbox's own key manager
+ *
+ * issuer is the "iss" claim value and defaults to the entry's name.  The optional cache settings (default-max-age,
+ * min-max-age, max-max-age, max-stale, error-retry-interval) override JwksCachePolicy.DEFAULT for a remote
+ * endpoint, e.g. "max-stale: 1h".
+ */
+@EachProperty("aesandbox.issuers")
+public class IssuerConfiguration {
+
+    private final String name;
+    private String issuer;
+    private String jwksUrl;
+    private String file;
+    private boolean inProcess;
+    private Duration defaultMaxAge;
+    private Duration minMaxAge;
+    private Duration maxMaxAge;
+    private Duration maxStale;
+    private Duration errorRetryInterval;
+
+    public IssuerConfiguration(@Parameter String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The "iss" value this entry applies to.
+     */
+    public String getIssuer() {
+        return (issuer != null) ? issuer : name;
+    }
+
+    public void setIssuer(String issuer) {
+        this.issuer = issuer;
+    }
+
+    public String getJwksUrl() {
+        return jwksUrl;
+    }
+
+    public void setJwksUrl(String jwksUrl) {
+        this.jwksUrl = jwksUrl;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public boolean isInProcess() {
+        return inProcess;
+    }
+
+    public void setInProcess(boolean inProcess) {
+        this.inProcess = inProcess;
+    }
+
+    public Duration getDefaultMaxAge() {
+        return defaultMaxAge;
+    }
+
+    public void setDefaultMaxAge(Duration defaultMaxAge) {
+        this.defaultMaxAge = defaultMaxAge;
+    }
+
+    public Duration getMinMaxAge() {
+        return minMaxAge;
+    }
+
+    public void setMinMaxAge(Duration minMaxAge) {
+        this.minMaxAge = minMaxAge;
+    }
+
+    public Duration getMaxMaxAge() {
+        return maxMaxAge;
+    }
+
+    public void setMaxMaxAge(Duration maxMaxAge) {
+        this.maxMaxAge = maxMaxAge;
+    }
+
+    public Duration getMaxStale() {
+        return maxStale;
+    }
+
+    public void setMaxStale(Duration maxStale) {
+        this.maxStale = maxStale;
+    }
+
+    public Duration getErrorRetryInterval() {
+        return errorRetryInterval;
+    }
+
+    public void setErrorRetryInterval(Duration errorRetryInterval) {
+        this.errorRetryInterval = errorRetryInterval;
+    }
+
+    /**
+     * @return The cache policy for this issuer's JWKS endpoint: the defaults, with any settings given here.
+     */
+    public JwksCachePolicy getCachePolicy() {
+        JwksCachePolicy d = JwksCachePolicy.DEFAULT;
+        return new JwksCachePolicy(
+                millis(defaultMaxAge, d.getDefaultMaxAge()),
+                millis(minMaxAge, d.getMinMaxAge()),
+                millis(maxMaxAge, d.getMaxMaxAge()),
+                millis(maxStale, d.getMaxStale()),
+                millis(errorRetryInterval, d.getErrorRetryInterval()),
+                d.getKidMissRefreshInterval(),
+                d.getNegativeTtl());
+    }
+
+    private static long millis(Duration value, long defaultMillis) {
+        return (value != null) ? value.toMillis() : defaultMillis;
+    }
+}
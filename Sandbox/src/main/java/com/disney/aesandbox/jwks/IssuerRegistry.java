@@ -0,0 +1,226 @@
+package com.disney.aesandbox.jwks;
+
+import com.disney.aesandbox.commandline.Logger;
+import com.disney.aesandbox.jwks.external.FileKeySetSource;
+import com.disney.aesandbox.jwks.external.JwksProviders;
+import com.disney.aesandbox.keymgmt.DemoOnlyTransientKeyManager;
+import com.disney.aesandbox.keymgmt.VerificationKeys;
+import com.disney.aesandbox.objmapping.TokenType;
+import com.disney.aesandbox.objmapping.TokenValidationResult;
+import com.disney.aesandbox.token.SignatureStatus;
+import com.disney.aesandbox.token.TokenUtils;
+
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps each configured token issuer to the source of its keys, so tokens from many issuers can be validated
+ * without naming a JWKS for each one: route() reads a token's unverified "iss" claim and returns that issuer's
+ * KeySetSource, and the token's signature is then checked against that issuer's keys only.
+ *
+ * Each issuer has its own source, with its own cache and failure backoff, even when issuers share a JWKS URL;
+ * remote sources all fetch through the one HTTP client of JwksProviders.  An issuer whose endpoint is down only
+ * affects its own tokens; see CachingJwksProvider for how long its cached keys keep being served and how quickly
+ * its callers fail once they can't be.
+ *
+ * Issuers are configured under aesandbox.issuers in application.yml (see IssuerConfiguration).  With none
+ * configured the registry is empty and callers fall back to the in-process key set.
+ *
+ * Callers may also name a JWKS URL to validate against (sourceForUrl), but only one that is configured: the
+ * jwks-url of an issuer, or one listed under aesandbox.jwks.allowed-urls (see JwksUrlConfiguration).  The URL
+ * often comes from an HTTP request, and fetching any URL a client names would let it make the server send
+ * requests to internal hosts.
+ */
+@Singleton
+public class IssuerRegistry {
+
+    /**
+     * The key set of this sandbox's own key manager.
+     */
+    public static final KeySetSource IN_PROCESS = () -> {
+        try {
+            return DemoOnlyTransientKeyManager.INSTANCE.getVerificationKeys();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Can't load the in-process key set", e);
+        }
+    };
+
+    private final Logger logger = Logger.newBasicLogger();
+
+    private final Map<String, KeySetSource> sources;
+    // Sources of the issuers configured with a jwks-url, by that URL
+    private final Map<String, KeySetSource> sourcesByUrl;
+    private final Set<String> allowedUrls;
+    private final JwksProviders providers;
+
+    public IssuerRegistry(List<IssuerConfiguration> issuers, JwksUrlConfiguration jwksUrls, JwksProviders providers) {
+        this.providers = providers;
+        this.allowedUrls = new HashSet<>(jwksUrls.getAllowedUrls());
+        Map<String, KeySetSource> map = new HashMap<>();
+        Map<String, KeySetSource> byUrl = new HashMap<>();
+        for (IssuerConfiguration config : issuers) {
+            try {
+                KeySetSource source = makeSource(config);
+                if (config.getJwksUrl() != null) {
+                    byUrl.putIfAbsent(config.getJwksUrl().trim(), source);
+                }
+                KeySetSource previous = map.put(config.getIssuer(), source);
+                if (previous != null) {
+                    logger.log("Issuer " + config.getIssuer() + " is configured more than once; using " + config.getName());
+                }
+            } catch (Exception e) {
+                // Leave the issuer out, so its tokens are rejected as from an unknown issuer
+                logger.log("Ignoring issuer " + config.getName() + ": " + e.getMessage());
+            }
+        }
+        sources = Collections.unmodifiableMap(map);
+        sourcesByUrl = Collections.unmodifiableMap(byUrl);
+    }
+
+    private KeySetSource makeSource(IssuerConfiguration config) throws Exception {
+        int count = (config.getJwksUrl() != null ? 1 : 0) + (config.getFile() != null ? 1 : 0) +
+                (config.isInProcess() ? 1 : 0);
+        if (count != 1) {
+            throw new IllegalArgumentException("exactly one of jwks-url, file or in-process must be set");
+        }
+        if (config.getJwksUrl() != null) {
+            return providers.newProvider(config.getJwksUrl(), config.getCachePolicy());
+        } else if (config.getFile() != null) {
+            return new FileKeySetSource(Paths.get(config.getFile()));
+        }
+        return IN_PROCESS;
+    }
+
+    /**
+     * @return Whether no issuers are configured.
+     */
+    public boolean isEmpty() {
+        return sources.isEmpty();
+    }
+
+    public Set<String> getIssuers() {
+        return sources.keySet();
+    }
+
+    /**
+     * @return The key source for the given issuer, or null if the issuer is not configured.
+     */
+    public KeySetSource sourceFor(String issuer) {
+        return (issuer != null) ? sources.get(issuer) : null;
+    }
+
+    /**
+     * @return The key source for the issuer named in the token's claims, or null if the token has no issuer or
+     * its issuer is not configured.
+     */
+    public KeySetSource route(String token) {
+        return sourceFor(TokenUtils.peekIssuer(token));
+    }
+
+    /**
+     * @return The source for a JWKS URL named by the caller: that issuer's source if the URL is an issuer's
+     * jwks-url, otherwise the shared source for an allowed URL.
+     * @throws IllegalArgumentException If the URL is neither an issuer's jwks-url nor in
+     * aesandbox.jwks.allowed-urls, or is not a valid URL
+     */
+    public KeySetSource sourceForUrl(String jwksUrl) {
+        String url = jwksUrl.trim();
+        KeySetSource configured = sourcesByUrl.get(url);
+        if (configured != null) {
+            return configured;
+        }
+        if (!allowedUrls.contains(url)) {
+            throw new IllegalArgumentException("JWKS URL " + url + " is not configured for an issuer or in aesandbox.jwks.allowed-urls");
+        }
+        try {
+            return providers.forUrl(url);
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid JWKS URL " + url, e);
+        }
+    }
+
+    /**
+     * @return The remote key set providers, e.g. to read how many are kept.
+     */
+    public JwksProviders getProviders() {
+        return providers;
+    }
+
+    /**
+     * @return Keys from the given JWKS URL if there is one, otherwise the keys for the token's issuer, or the
+     * in-process key set if no issuers are configured.
+     * @throws IOException If the keys can't be loaded, or the token's issuer is not configured
+     * @throws IllegalArgumentException If the JWKS URL is not allowed; see sourceForUrl()
+     */
+    public VerificationKeys keysFor(String jwksUrl, String token) throws IOException {
+        if (jwksUrl != null && jwksUrl.trim().length() > 0) {
+            // Cached per URL, so validating several tokens against the same endpoint fetches it once
+            return sourceForUrl(jwksUrl).getKeys();
+        }
+        return isEmpty() ? IN_PROCESS.getKeys() : keysForToken(token);
+    }
+
+    /**
+     * @return The keys for the issuer named in the token's claims.
+     * @throws IOException If the token's issuer is not configured, or its keys can't be loaded
+     */
+    public VerificationKeys keysForToken(String token) throws IOException {
+        String issuer = TokenUtils.peekIssuer(token);
+        KeySetSource source = sourceFor(issuer);
+        if (source == null) {
+            throw new IOException("No key set is configured for issuer " + issuer);
+        }
+        return source.getKeys();
+    }
+
+    /**
+     * Validate a token against the source's keys, as validate(String, TokenType, KeySetSource, VerificationKeys,
+     * boolean), loading them first.
+     *
+     * @return The result; signature status KEYS_UNAVAILABLE if the source's keys can't be loaded.
+     */
+    public TokenValidationResult validate(String token, TokenType type, KeySetSource source, boolean cached) {
+        VerificationKeys vKeys;
+        try {
+            vKeys = source.getKeys();
+        } catch (IOException e) {
+            return TokenUtils.notChecked(SignatureStatus.KEYS_UNAVAILABLE);
+        }
+        return validate(token, type, source, vKeys, cached);
+    }
+
+    /**
+     * Validate a token against keys already loaded from the source, and if its kid isn't in them, again against
+     * the source's refreshed keys: the issuer may have rotated keys since they were loaded.
+     *
+     * @param cached Whether to use the verified-token cache; see TokenUtils.validateUncached
+     */
+    public TokenValidationResult validate(String token, TokenType type, KeySetSource source, VerificationKeys vKeys,
+                                          boolean cached) {
+        TokenValidationResult result = cached ? TokenUtils.validate(token, type, vKeys) :
+                TokenUtils.validateUncached(token, type, vKeys);
+        if (SignatureStatus.UNKNOWN_KID.name().equals(result.getSignature())) {
+            try {
+                VerificationKeys refreshed = source.keysFor(result.getKid());
+                if (refreshed.getVerificationKey(result.getKid()) != null) {
+                    result = cached ? TokenUtils.validate(token, type, refreshed) :
+                            TokenUtils.validateUncached(token, type, refreshed);
+                }
+            } catch (IOException e) {
+                // Keep the UNKNOWN_KID result
+                logger.log("Can't refresh keys for kid " + result.getKid() + ": " + e.getMessage());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,32 @@
+package com.disney.aesandbox.jwks;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The JWKS URLs, beyond those of the configured issuers, that callers may name when validating, from
+ * aesandbox.jwks.allowed-urls in application.yml.  The server fetches whatever URL a validation request names,
+ * so any other URL is refused rather than fetched.  Empty by default.
+ */
+@ConfigurationProperties("aesandbox.jwks")
+public class JwksUrlConfiguration {
+
+    private List<String> allowedUrls = Collections.emptyList();
+
+    public List<String> getAllowedUrls() {
+        return allowedUrls;
+    }
+
+    public void setAllowedUrls(List<String> allowedUrls) {
+        List<String> trimmed = new ArrayList<>();
+        if (allowedUrls != null) {
+            for (String url : allowedUrls) {
+                trimmed.add(url.trim());
+            }
+        }
+        this.allowedUrls = Collections.unmodifiableList(trimmed);
+    }
+}
@@ -0,0 +1,26 @@
+package com.disney.aesandbox.jwks;
+
+import com.disney.aesandbox.keymgmt.VerificationKeys;
+
+import java.io.IOException;
+
+/**
+ * Where the keys for validating an issuer's tokens come from: a remote JWKS endpoint, a JWKS file, or the
+ * in-process key manager.  Implementations keep their keys loaded, so calls are cheap and thread-safe.
+ */
+public interface KeySetSource {
+
+    /**
+     * @return The current key set.
+     * @throws IOException If no key set is available
+     */
+    VerificationKeys getKeys() throws IOException;
+
+    /**
+     * @return The current key set, reloaded first if it doesn't contain the given kid and the source can have
+     * changed since it was loaded.  The returned keys may still not contain the kid.
+     */
+    default VerificationKeys keysFor(String kid) throws IOException {
+        return getKeys();
+    }
+}
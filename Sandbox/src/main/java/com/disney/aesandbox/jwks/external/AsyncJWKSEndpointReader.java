@@ -0,0 +1,265 @@
+package com.disney.aesandbox.jwks.external;
+
+import com.disney.aesandbox.objmapping.Keys;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import io.micronaut.core.io.buffer.ByteBuffer;
+import io.micronaut.http.HttpHeaders;
+import io.micronaut.http.HttpRequest;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.MutableHttpRequest;
+import io.micronaut.http.client.DefaultHttpClientConfiguration;
+import io.micronaut.http.client.RxStreamingHttpClient;
+import io.reactivex.Single;
+import org.reactivestreams.Publisher;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking JWKS reader on the Micronaut HTTP client.  No thread waits on the endpoint: results are delivered
+ * as a CompletableFuture or Publisher once the response has been read.
+ *
+ * - Readers share one pooled client (see JwksProviders and newClient()), so repeated fetches from the same host
+ *   reuse connections, and a new endpoint costs no new client or event loop.
+ * - The response body is fed to Jackson's non-blocking parser chunk by chunk as it arrives and bound to Keys
+ *   directly, without assembling it into a String first.
+ * - Bodies larger than the configured maximum are rejected as soon as the limit is passed, and the whole fetch
+ *   fails if it takes longer than the connect plus read timeout, so a slow or hostile endpoint can't hold up
+ *   validation indefinitely.
+ *
+ * Timeouts and the size cap are those the client was created with, by default from the aesandbox.jwks.* system
+ * properties below.  Members of the key set that Keys doesn't model (use, x5c, ...) are ignored.
+ */
+public class AsyncJWKSEndpointReader {
+
+    public static final String CONNECT_TIMEOUT_PROPERTY = "aesandbox.jwks.connectTimeoutMillis";
+    public static final String READ_TIMEOUT_PROPERTY = "aesandbox.jwks.readTimeoutMillis";
+    public static final String MAX_RESPONSE_BYTES_PROPERTY = "aesandbox.jwks.maxResponseBytes";
+
+    private static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(2);
+    private static final long DEFAULT_READ_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    // A key set with dozens of 4096-bit keys is still well under this
+    private static final int DEFAULT_MAX_RESPONSE_BYTES = 256 * 1024;
+
+    // Connections kept per host
+    private static final int MAX_CONNECTIONS = 4;
+
+    static final String USER_AGENT = "aesandbox-jwks-reader";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final URL url;
+    private final RxStreamingHttpClient client;
+    private final long timeoutMillis;
+    private final int maxResponseBytes;
+
+    /**
+     * @param client Client to fetch with, from newClient(); not closed by the reader
+     * @param jwksEndpointURI Absolute URL of the key set
+     * @param timeoutMillis The longest a fetch may take, normally the client's connect plus read timeout
+     * @param maxResponseBytes Largest key set accepted
+     */
+    public AsyncJWKSEndpointReader(RxStreamingHttpClient client, String jwksEndpointURI, long timeoutMillis,
+                                   int maxResponseBytes) throws MalformedURLException {
+        this.url = new URL(jwksEndpointURI);
+        this.client = client;
+        this.timeoutMillis = timeoutMillis;
+        this.maxResponseBytes = maxResponseBytes;
+    }
+
+    /**
+     * @return A pooled client with no base URL, for readers of any endpoint to share.  The caller closes it.
+     */
+    public static RxStreamingHttpClient newClient(long connectTimeoutMillis, long readTimeoutMillis, int maxResponseBytes) {
+        DefaultHttpClientConfiguration config = new DefaultHttpClientConfiguration();
+        config.setConnectTimeout(Duration.ofMillis(connectTimeoutMillis));
+        config.setReadTimeout(Duration.ofMillis(readTimeoutMillis));
+        config.setMaxContentLength(maxResponseBytes);
+        config.getConnectionPoolConfiguration().setEnabled(true);
+        config.getConnectionPoolConfiguration().setMaxConnections(MAX_CONNECTIONS);
+        return RxStreamingHttpClient.create(null, config);
+    }
+
+    static long getDefaultConnectTimeoutMillis() {
+        return Long.getLong(CONNECT_TIMEOUT_PROPERTY, DEFAULT_CONNECT_TIMEOUT_MILLIS);
+    }
+
+    static long getDefaultReadTimeoutMillis() {
+        return Long.getLong(READ_TIMEOUT_PROPERTY, DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    static int getDefaultMaxResponseBytes() {
+        return Integer.getInteger(MAX_RESPONSE_BYTES_PROPERTY, DEFAULT_MAX_RESPONSE_BYTES);
+    }
+
+    /**
+     * @return The key set.
+     */
+    public CompletableFuture<Keys> readKeys() {
+        return fetch(null).thenApply(Result::getKeys);
+    }
+
+    /**
+     * @return A Publisher emitting the key set once, or an error.
+     */
+    public Publisher<Keys> keysPublisher() {
+        return fetchSingle(null).map(Result::getKeys).toFlowable();
+    }
+
+    /**
+     * Fetch the key set, conditionally if an ETag from a previous response is given.
+     *
+     * @param etag The ETag of the copy the caller already has, or null
+     * @return The result; status 304 means the caller's copy is still current and there are no keys.  Fails
+     * with an IOException for any status other than 200 or 304, an oversized or unparseable body, or a timeout.
+     */
+    public CompletableFuture<Result> fetch(String etag) {
+        CompletableFuture<Result> future = new CompletableFuture<>();
+        fetchSingle(etag).subscribe(future::complete, future::completeExceptionally);
+        return future;
+    }
+
+    /**
+     * @return The longest a fetch can take before failing.
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public String getUrl() {
+        return url.toString();
+    }
+
+    private Single<Result> fetchSingle(String etag) {
+        // Absolute, since the shared client has no base URL
+        MutableHttpRequest<Object> request = HttpRequest.GET(url.toString())
+                .header(HttpHeaders.USER_AGENT, USER_AGENT)
+                .header(HttpHeaders.ACCEPT, "application/json");
+        if (etag != null) {
+            request.header(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+
+        return client.exchangeStream(request)
+                .reduceWith(() -> new StreamingKeysParser(maxResponseBytes), StreamingKeysParser::accept)
+                .map(StreamingKeysParser::finish)
+                .timeout(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Status, parsed key set and caching headers of a JWKS response.
+     */
+    public static class Result {
+
+        private int status;
+        private Keys keys;
+        private String etag;
+        private String cacheControl;
+
+        Result(int status, Keys keys, String etag, String cacheControl) {
+            this.status = status;
+            this.keys = keys;
+            this.etag = etag;
+            this.cacheControl = cacheControl;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * @return The key set for a 200 response, null for a 304.
+         */
+        public Keys getKeys() {
+            return keys;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getCacheControl() {
+            return cacheControl;
+        }
+    }
+
+    /**
+     * Accumulates one streamed response: takes the status and headers from the first part and feeds each body
+     * chunk to a non-blocking parser, buffering parsed tokens until the body is complete.
+     */
+    private static final class StreamingKeysParser {
+
+        private final int maxBytes;
+        private int status;
+        private String etag;
+        private String cacheControl;
+        private long bytes;
+        private boolean started;
+
+        private final JsonParser parser;
+        private final ByteArrayFeeder feeder;
+        private final TokenBuffer tokens;
+
+        StreamingKeysParser(int maxBytes) throws IOException {
+            this.maxBytes = maxBytes;
+            this.parser = MAPPER.getFactory().createNonBlockingByteArrayParser();
+            this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+            this.tokens = new TokenBuffer(parser);
+        }
+
+        StreamingKeysParser accept(HttpResponse<ByteBuffer<?>> part) throws IOException {
+            if (!started) {
+                started = true;
+                status = part.code();
+                etag = part.getHeaders().get(HttpHeaders.ETAG);
+                cacheControl = part.getHeaders().get(HttpHeaders.CACHE_CONTROL);
+            }
+
+            ByteBuffer<?> chunk = part.body();
+            if (chunk != null && status == HttpURLConnection.HTTP_OK) {
+                byte[] data = chunk.toByteArray();
+                bytes += data.length;
+                if (bytes > maxBytes) {
+                    throw new IOException("JWKS response exceeds " + maxBytes + " bytes");
+                }
+                feeder.feedInput(data, 0, data.length);
+                drain();
+            }
+            return this;
+        }
+
+        Result finish() throws IOException {
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return new Result(status, null, etag, cacheControl);
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("JWKS endpoint returned HTTP " + status);
+            }
+
+            feeder.endOfInput();
+            drain();
+            Keys keys = MAPPER.readValue(tokens.asParser(), Keys.class);
+            if (keys == null || keys.getKeys() == null) {
+                throw new IOException("JWKS response has no \"keys\" member");
+            }
+            return new Result(status, keys, etag, cacheControl);
+        }
+
+        private void drain() throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                tokens.copyCurrentEvent(parser);
+            }
+        }
+    }
+}
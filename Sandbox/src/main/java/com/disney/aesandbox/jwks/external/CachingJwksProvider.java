@@ -0,0 +1,310 @@
+package com.disney.aesandbox.jwks.external;
+
+import com.disney.aesandbox.jwks.KeySetSource;
+import com.disney.aesandbox.keymgmt.VerificationKeys;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps a remote key set in memory so that validating a token does not fetch the JWKS.
+ *
+ * - Freshness follows the endpoint's Cache-Control max-age, clamped to the policy's [minMaxAge, maxMaxAge], with
+ *   the policy's defaultMaxAge when there is none.  Refreshes are conditional on the ETag of the cached copy, so an
+ *   unchanged key set costs a 304 and no parsing.
+ * - Refresh-ahead: once three quarters of the max-age has passed, the next caller starts a background refresh and
+ *   is served the cached keys, so callers don't wait on the endpoint while the cache is in use.
+ * - Stale-if-error: if the key set has expired and can't be refetched, the expired copy keeps being served for up
+ *   to maxStale.  After a failed fetch no new fetch is attempted for errorRetryInterval, so an endpoint outage
+ *   doesn't add a fetch timeout to every validation.  That holds before the first successful fetch too: callers
+ *   then fail at once instead of each waiting for the endpoint.
+ * - Unknown kid: keysFor(kid) refetches the key set when the kid isn't in it, e.g. just after the issuer rotated
+ *   keys, at most once per kidMissRefreshInterval.  A kid still unknown after a refetch is remembered for
+ *   negativeTtl, so tokens with bogus kids can't be used to hammer the endpoint.
+ * - Concurrent refreshes are merged: there is at most one fetch in flight per endpoint, and everyone who needs
+ *   its result waits for the same one.  Fetches go through AsyncJWKSEndpointReader, so background refreshes
+ *   don't occupy a thread while waiting on the endpoint.
+ *
+ * The settings come from a JwksCachePolicy.  Providers are created by JwksProviders, which shares one HTTP client
+ * between them and keeps one provider, and so one cache, per endpoint named by URL.
+ */
+public class CachingJwksProvider implements KeySetSource {
+
+    // Bounds the memory bogus kids can take up; when exceeded, the remembered kids are simply forgotten
+    private static final int MAX_UNKNOWN_KIDS = 1000;
+
+    // Added to the reader's timeout, so a fetch fails on its own before a waiter gives up on it
+    private static final long FETCH_WAIT_MARGIN_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
+    private final String url;
+    private final JwksCachePolicy policy;
+    private final AsyncJWKSEndpointReader reader;
+    // Updated in place on each fetch, so unchanged keys aren't decoded again
+    private final VerificationKeys keys = new VerificationKeys();
+
+    private volatile CachedKeySet cached;
+    private final AtomicReference<CompletableFuture<CachedKeySet>> inFlight = new AtomicReference<>();
+    private volatile long nextFetchAllowedAt;
+    private volatile long lastKidMissRefresh;
+    private final ConcurrentMap<String, Long> unknownKids = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleServed = new LongAdder();
+    private final LongAdder fetches = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder fetchFailures = new LongAdder();
+    private final LongAdder kidMissRefreshes = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+
+    CachingJwksProvider(AsyncJWKSEndpointReader reader, JwksCachePolicy policy) {
+        this.url = reader.getUrl();
+        this.policy = policy;
+        this.reader = reader;
+    }
+
+    /**
+     * @return The current key set.  Only waits for the endpoint on first use, or when the cached copy is too
+     * old to be served and has to be refetched.
+     * @throws IOException If there is no usable key set and it could not be fetched
+     */
+    @Override
+    public VerificationKeys getKeys() throws IOException {
+        long now = System.currentTimeMillis();
+        CachedKeySet current = cached;
+
+        if (current != null && now < current.expiresAt) {
+            hits.increment();
+            if (now >= current.refreshAt) {
+                refreshInBackground(now);
+            }
+            return current.keys;
+        }
+
+        if (current != null && (now < nextFetchAllowedAt || inFlight.get() != null)) {
+            // The endpoint failed recently, or a fetch is already running; don't wait for another one
+            return serveStale(current, now);
+        }
+
+        if (current == null && now < nextFetchAllowedAt) {
+            throw new IOException("Key set from " + url + " is unavailable; the last fetch failed");
+        }
+
+        try {
+            return awaitRefresh().keys;
+        } catch (IOException e) {
+            if (current == null) {
+                throw e;
+            }
+            return serveStale(current, now);
+        }
+    }
+
+    /**
+     * @return The current key set, refetched first if it doesn't contain the given kid (subject to the refresh
+     * interval and negative caching).  The returned keys may still not contain the kid.
+     */
+    @Override
+    public VerificationKeys keysFor(String kid) throws IOException {
+        VerificationKeys keys = getKeys();
+        if (kid == null || keys.getVerificationKey(kid) != null) {
+            return keys;
+        }
+
+        long now = System.currentTimeMillis();
+        Long unknownUntil = unknownKids.get(kid);
+        if (unknownUntil != null && now < unknownUntil) {
+            negativeHits.increment();
+            return keys;
+        }
+        if (now - lastKidMissRefresh < policy.getKidMissRefreshInterval()) {
+            return keys;
+        }
+
+        lastKidMissRefresh = now;
+        kidMissRefreshes.increment();
+        try {
+            keys = awaitRefresh().keys;
+        } catch (IOException e) {
+            // Keep the keys we have; the kid is unknown either way
+            e.printStackTrace();
+        }
+        if (keys.getVerificationKey(kid) == null) {
+            if (unknownKids.size() >= MAX_UNKNOWN_KIDS) {
+                unknownKids.clear();
+            }
+            unknownKids.put(kid, now + policy.getNegativeTtl());
+        }
+        return keys;
+    }
+
+    private VerificationKeys serveStale(CachedKeySet current, long now) throws IOException {
+        if (now >= current.expiresAt + policy.getMaxStale()) {
+            throw new IOException("Key set from " + url + " expired at " + new java.util.Date(current.expiresAt) +
+                    " and could not be refreshed");
+        }
+        staleServed.increment();
+        return current.keys;
+    }
+
+    private void refreshInBackground(long now) {
+        if (now >= nextFetchAllowedAt) {
+            refresh();
+        }
+    }
+
+    private CachedKeySet awaitRefresh() throws IOException {
+        try {
+            return refresh().get(reader.getTimeoutMillis() + FETCH_WAIT_MARGIN_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw (cause instanceof IOException) ? (IOException) cause : new IOException(cause);
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out fetching key set from " + url, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted fetching key set from " + url, e);
+        }
+    }
+
+    /**
+     * @return The fetch in flight, starting one if there is none.
+     */
+    private CompletableFuture<CachedKeySet> refresh() {
+        while (true) {
+            CompletableFuture<CachedKeySet> running = inFlight.get();
+            if (running != null) {
+                return running;
+            }
+            CompletableFuture<CachedKeySet> mine = new CompletableFuture<>();
+            if (inFlight.compareAndSet(null, mine)) {
+                CachedKeySet current = cached;
+                fetches.increment();
+                reader.fetch(current != null ? current.etag : null).whenComplete((result, error) -> {
+                    // The outcome is published before the fetch stops being in flight, so the next fetch starts
+                    // from the new key set and its ETag, not the one this fetch replaced
+                    try {
+                        if (error != null) {
+                            throw error;
+                        }
+                        mine.complete(publish(current, result));
+                    } catch (Throwable t) {
+                        fetchFailures.increment();
+                        nextFetchAllowedAt = System.currentTimeMillis() + policy.getErrorRetryInterval();
+                        mine.completeExceptionally((t instanceof CompletionException && t.getCause() != null) ? t.getCause() : t);
+                    } finally {
+                        inFlight.compareAndSet(mine, null);
+                    }
+                });
+                return mine;
+            }
+        }
+    }
+
+    /**
+     * Publish the fetched key set.  Only ever runs for one fetch at a time per provider.
+     */
+    private CachedKeySet publish(CachedKeySet current, AsyncJWKSEndpointReader.Result result) throws Exception {
+        long now = System.currentTimeMillis();
+        long maxAge = maxAge(result.getCacheControl(), policy);
+
+        CachedKeySet next;
+        if (result.getStatus() == HttpURLConnection.HTTP_NOT_MODIFIED && current != null) {
+            notModified.increment();
+            next = new CachedKeySet(current.keys, current.etag, now, maxAge);
+        } else if (result.getStatus() == HttpURLConnection.HTTP_OK) {
+            keys.update(result.getKeys());
+            next = new CachedKeySet(keys, result.getEtag(), now, maxAge);
+            // Kids that were unknown may be in the new set
+            unknownKids.clear();
+        } else {
+            throw new IOException("JWKS endpoint " + url + " returned HTTP " + result.getStatus());
+        }
+        cached = next;
+        return next;
+    }
+
+    /**
+     * @return The max-age from a Cache-Control header in milliseconds, clamped to the range the policy allows.
+     */
+    static long maxAge(String cacheControl, JwksCachePolicy policy) {
+        if (cacheControl == null) {
+            return policy.getDefaultMaxAge();
+        }
+        long maxAge = policy.getDefaultMaxAge();
+        for (String directive : cacheControl.split(",")) {
+            String d = directive.trim().toLowerCase();
+            if (d.equals("no-store") || d.equals("no-cache")) {
+                // Revalidating on every use would put the endpoint back on the hot path
+                return policy.getMinMaxAge();
+            }
+            if (d.startsWith("max-age=")) {
+                try {
+                    maxAge = TimeUnit.SECONDS.toMillis(Long.parseLong(d.substring("max-age=".length()).trim()));
+                } catch (NumberFormatException nfe) {
+                    // Ignore a malformed max-age
+                }
+            }
+        }
+        return Math.max(policy.getMinMaxAge(), Math.min(policy.getMaxMaxAge(), maxAge));
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public JwksCachePolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return Calls served from a fresh cached key set.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Calls served an expired key set because it could not be refreshed.
+     */
+    public long getStaleServed() {
+        return staleServed.sum();
+    }
+
+    public long getFetches() {
+        return fetches.sum();
+    }
+
+    public long getNotModified() {
+        return notModified.sum();
+    }
+
+    public long getFetchFailures() {
+        return fetchFailures.sum();
+    }
+
+    public long getKidMissRefreshes() {
+        return kidMissRefreshes.sum();
+    }
+
+    public long getNegativeHits() {
+        return negativeHits.sum();
+    }
+
+    private static final class CachedKeySet {
+
+        final VerificationKeys keys;
+        final String etag;
+        final long refreshAt;
+        final long expiresAt;
+
+        CachedKeySet(VerificationKeys keys, String etag, long fetchedAt, long maxAge) {
+            this.keys = keys;
+            this.etag = etag;
+            this.refreshAt = fetchedAt + maxAge * 3 / 4;
+            this.expiresAt = fetchedAt + maxAge;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.disney.aesandbox.jwks.external;
+
+import com.disney.aesandbox.jwks.KeySetSource;
+import com.disney.aesandbox.keymgmt.VerificationKeys;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A key set read from a JWKS file, e.g. one a partner supplied out of band.  The file's modification time is
+ * checked at most once per RECHECK_INTERVAL and the file re-read when it has changed, so it can be replaced
+ * while the sandbox runs.  If a changed file can't be read or parsed, the keys loaded before keep being used.
+ */
+public class FileKeySetSource implements KeySetSource {
+
+    static final long RECHECK_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+
+    private final Path path;
+    private final VerificationKeys keys = new VerificationKeys();
+
+    private volatile boolean loaded;
+    private volatile long nextCheckAt;
+    private long lastModified = -1;
+
+    public FileKeySetSource(Path path) {
+        this.path = path.toAbsolutePath();
+    }
+
+    @Override
+    public VerificationKeys getKeys() throws IOException {
+        if (System.currentTimeMillis() >= nextCheckAt) {
+            reloadIfChanged();
+        }
+        if (!loaded) {
+            throw new IOException("No key set could be read from " + path);
+        }
+        return keys;
+    }
+
+    private synchronized void reloadIfChanged() throws IOException {
+        long now = System.currentTimeMillis();
+        if (now < nextCheckAt) {
+            // Another thread just checked
+            return;
+        }
+        nextCheckAt = now + RECHECK_INTERVAL;
+        try {
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            if (modified != lastModified) {
+                keys.update(new String(Files.readAllBytes(path), UTF_8));
+                lastModified = modified;
+                loaded = true;
+            }
+        } catch (Exception e) {
+            if (!loaded) {
+                throw (e instanceof IOException) ? (IOException) e : new IOException("Can't load key set from " + path, e);
+            }
+            // Keep the keys we have
+            e.printStackTrace();
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+}
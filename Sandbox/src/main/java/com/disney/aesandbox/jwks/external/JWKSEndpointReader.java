@@ -1,13 +1,24 @@
 package com.disney.aesandbox.jwks.external;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.concurrent.TimeUnit;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Blocking JWKS reader, for the command line tasks that need the raw key set JSON.  Validation paths use
+ * CachingJwksProvider, which reads through AsyncJWKSEndpointReader.
+ */
 public class JWKSEndpointReader {
 
+    // A JWKS endpoint that doesn't answer within these limits is treated as failed rather than holding up the
+    // caller indefinitely
+    static final int CONNECT_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(5);
+    static final int READ_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(10);
+
     private String endpoint;
 
     public JWKSEndpointReader(String jwksEndpointURI) {
@@ -17,39 +28,104 @@ public class JWKSEndpointReader {
     public String getContent() {
 
         String result = null;
+
+        try {
+            Response response = fetch(null);
+            if (response.getStatus() == HttpURLConnection.HTTP_OK) {
+                result = response.getBody();
+            } else {
+                System.err.println("JWKS endpoint " + endpoint + " returned HTTP " + response.getStatus());
+            }
+        } catch (Exception e) {
+
+            e.printStackTrace();
+
+        }
+
+        return result;
+    }
+
+    /**
+     * Fetch the key set, conditionally if an ETag from a previous response is given.
+     *
+     * @param etag The ETag of the copy the caller already has, or null
+     * @return The response; status 304 means the caller's copy is still current and there is no body
+     * @throws Exception If the endpoint can't be reached or doesn't respond in time
+     */
+    public Response fetch(String etag) throws Exception {
+
         HttpURLConnection conn = null;
 
         try {
 
             URL url = new URL(endpoint);
             conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestProperty("User-Agent", "Mozilla/5.0");
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            conn.setReadTimeout(READ_TIMEOUT_MILLIS);
+            conn.setRequestProperty("User-Agent", AsyncJWKSEndpointReader.USER_AGENT);
             conn.setRequestProperty("Accept", "*/*");
-            InputStream iStream = conn.getInputStream();
-            BufferedReader in = new BufferedReader(
-                    new InputStreamReader(conn.getInputStream()));
-            String inputLine;
-            StringBuilder content = new StringBuilder();
-            while ((inputLine = in.readLine()) != null) {
-                content.append(inputLine);
+            if (etag != null) {
+                conn.setRequestProperty("If-None-Match", etag);
             }
-            in.close();
-
-            result = content.toString();
 
-        } catch (Exception e) {
+            int status = conn.getResponseCode();
+            String body = null;
+            if (status == HttpURLConnection.HTTP_OK) {
+                try (InputStream in = conn.getInputStream()) {
+                    ByteArrayOutputStream content = new ByteArrayOutputStream();
+                    byte[] buf = new byte[4096];
+                    int read;
+                    while ((read = in.read(buf)) > 0) {
+                        content.write(buf, 0, read);
+                    }
+                    body = new String(content.toByteArray(), UTF_8);
+                }
+            }
 
-            e.printStackTrace();
+            return new Response(status, body, conn.getHeaderField("ETag"), conn.getHeaderField("Cache-Control"));
 
         } finally {
 
-            try {
+            if (conn != null) {
                 conn.disconnect();
-            } catch (Exception e2) {
-                // do nothing
             }
         }
+    }
 
-        return result;
+    /**
+     * Status, body and caching headers of a JWKS response.
+     */
+    public static class Response {
+
+        private int status;
+        private String body;
+        private String etag;
+        private String cacheControl;
+
+        Response(int status, String body, String etag, String cacheControl) {
+            this.status = status;
+            this.body = body;
+            this.etag = etag;
+            this.cacheControl = cacheControl;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * @return The key set JSON for a 200 response, null otherwise.
+         */
+        public String getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getCacheControl() {
+            return cacheControl;
+        }
     }
 }
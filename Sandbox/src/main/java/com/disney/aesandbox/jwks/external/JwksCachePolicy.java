@@ -0,0 +1,69 @@
+package com.disney.aesandbox.jwks.external;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long a CachingJwksProvider keeps and serves a remote key set.  See CachingJwksProvider for how each
+ * setting is used.  Immutable, so one policy (DEFAULT in particular) can be shared by any number of providers.
+ * DEFAULT suits most issuers; issuers configured in application.yml can override any of the settings (see
+ * IssuerConfiguration).
+ */
+public class JwksCachePolicy {
+
+    private final long defaultMaxAge;
+    private final long minMaxAge;
+    private final long maxMaxAge;
+    private final long maxStale;
+    private final long errorRetryInterval;
+    private final long kidMissRefreshInterval;
+    private final long negativeTtl;
+
+    public static final JwksCachePolicy DEFAULT =
+            new JwksCachePolicy(
+                    TimeUnit.MINUTES.toMillis(5),   // Max-age when the endpoint sends none
+                    TimeUnit.SECONDS.toMillis(30),  // Lower bound on the endpoint's max-age
+                    TimeUnit.DAYS.toMillis(1),      // Upper bound on the endpoint's max-age
+                    TimeUnit.DAYS.toMillis(1),      // Serve an expired key set this long while the endpoint is failing
+                    TimeUnit.SECONDS.toMillis(30),  // Wait this long after a failed fetch before fetching again
+                    TimeUnit.SECONDS.toMillis(30),  // Refetch for an unknown kid at most this often
+                    TimeUnit.MINUTES.toMillis(5));  // Remember a kid still unknown after a refetch this long
+
+    public JwksCachePolicy(long defaultMaxAge, long minMaxAge, long maxMaxAge, long maxStale, long errorRetryInterval,
+                           long kidMissRefreshInterval, long negativeTtl) {
+        this.defaultMaxAge = defaultMaxAge;
+        this.minMaxAge = minMaxAge;
+        this.maxMaxAge = maxMaxAge;
+        this.maxStale = maxStale;
+        this.errorRetryInterval = errorRetryInterval;
+        this.kidMissRefreshInterval = kidMissRefreshInterval;
+        this.negativeTtl = negativeTtl;
+    }
+
+    public long getDefaultMaxAge() {
+        return defaultMaxAge;
+    }
+
+    public long getMinMaxAge() {
+        return minMaxAge;
+    }
+
+    public long getMaxMaxAge() {
+        return maxMaxAge;
+    }
+
+    public long getMaxStale() {
+        return maxStale;
+    }
+
+    public long getErrorRetryInterval() {
+        return errorRetryInterval;
+    }
+
+    public long getKidMissRefreshInterval() {
+        return kidMissRefreshInterval;
+    }
+
+    public long getNegativeTtl() {
+        return negativeTtl;
+    }
+}
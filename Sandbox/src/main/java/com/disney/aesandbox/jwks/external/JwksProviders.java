@@ -0,0 +1,108 @@
+package com.disney.aesandbox.jwks.external;
+
+import io.micronaut.http.client.RxStreamingHttpClient;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Singleton;
+import java.net.MalformedURLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Creates the CachingJwksProviders for remote key sets, all reading through one shared HTTP client, and keeps a
+ * bounded set of them for key sets named by URL.
+ *
+ * - forUrl() returns the provider for a JWKS URL given at validation time, with the default policy.  At most
+ *   aesandbox.jwks.maxProviders of these are kept, least recently used first out; an evicted provider only loses
+ *   its cached keys, and is recreated if its URL is used again.
+ * - newProvider() creates a provider outside that set, e.g. for a configured issuer with its own cache policy.
+ *
+ * The client pools connections per host, so providers for the same host share connections, and the number of
+ * providers has no effect on the number of clients or event loops.  The client is closed with the application
+ * context.
+ */
+@Singleton
+public class JwksProviders {
+
+    public static final String MAX_PROVIDERS_PROPERTY = "aesandbox.jwks.maxProviders";
+    private static final int DEFAULT_MAX_PROVIDERS = 64;
+
+    private final RxStreamingHttpClient client;
+    private final long timeoutMillis;
+    private final int maxResponseBytes;
+
+    private final LinkedHashMap<String, CachingJwksProvider> byUrl;
+    private final LongAdder evictions = new LongAdder();
+
+    public JwksProviders() {
+        this(Integer.getInteger(MAX_PROVIDERS_PROPERTY, DEFAULT_MAX_PROVIDERS));
+    }
+
+    /**
+     * @param maxProviders Maximum number of providers kept for forUrl()
+     */
+    public JwksProviders(int maxProviders) {
+        long connectTimeoutMillis = AsyncJWKSEndpointReader.getDefaultConnectTimeoutMillis();
+        long readTimeoutMillis = AsyncJWKSEndpointReader.getDefaultReadTimeoutMillis();
+        this.maxResponseBytes = AsyncJWKSEndpointReader.getDefaultMaxResponseBytes();
+        this.timeoutMillis = connectTimeoutMillis + readTimeoutMillis;
+        this.client = AsyncJWKSEndpointReader.newClient(connectTimeoutMillis, readTimeoutMillis, maxResponseBytes);
+
+        this.byUrl = new LinkedHashMap<String, CachingJwksProvider>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachingJwksProvider> eldest) {
+                boolean evict = size() > maxProviders;
+                if (evict) {
+                    evictions.increment();
+                }
+                return evict;
+            }
+        };
+    }
+
+    /**
+     * @return The shared provider for the given JWKS URL, with the default policy.
+     * @throws MalformedURLException If the URL is not valid
+     */
+    public CachingJwksProvider forUrl(String url) throws MalformedURLException {
+        String key = url.trim();
+        synchronized (byUrl) {
+            CachingJwksProvider provider = byUrl.get(key);
+            if (provider == null) {
+                provider = newProvider(key, JwksCachePolicy.DEFAULT);
+                byUrl.put(key, provider);
+            }
+            return provider;
+        }
+    }
+
+    /**
+     * @return A new provider for the URL, not shared through forUrl().
+     * @throws MalformedURLException If the URL is not valid
+     */
+    public CachingJwksProvider newProvider(String url, JwksCachePolicy policy) throws MalformedURLException {
+        return new CachingJwksProvider(new AsyncJWKSEndpointReader(client, url.trim(), timeoutMillis, maxResponseBytes), policy);
+    }
+
+    /**
+     * @return Number of providers kept for forUrl().
+     */
+    public int size() {
+        synchronized (byUrl) {
+            return byUrl.size();
+        }
+    }
+
+    /**
+     * @return Providers dropped from the forUrl() set to stay within its size limit.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @PreDestroy
+    public void close() {
+        client.close();
+    }
+}
@@ -1,17 +1,24 @@
 package com.disney.aesandbox.keymgmt;
 
 import com.disney.aesandbox.commandline.Logger;
-import com.disney.aesandbox.objmapping.Keys;
+import com.disney.aesandbox.metrics.SandboxMetrics;
 import com.disney.aesandbox.objmapping.RSAKey;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.*;
-import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPublicKey;
 import java.util.*;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * This class generates transient keypairs.  DO NOT USE IN PRODUCTION!  Transient keypairs are
@@ -25,8 +32,10 @@ import java.util.concurrent.TimeUnit;
  * tokens, external web processes will query for a JWKS in order to verify token signatures.
  *
  * To modify this class for production use, some suitable storage (secure, mutable) for key information
- * must be implemented so that the key set survives restarts of the web process.  Basically the KeyDataHolder
- * array or an equivalent must be implemented on some filesystem or other storage.
+ * must be implemented so that the key set survives restarts of the web process.  Setting
+ * -Daesandbox.keyStore=<file> makes the key set and pending rotation events survive restarts by saving them to
+ * a local file (see KeyRingStore), but the private keys in it are not encrypted, so that is not suitable
+ * storage for production either.
  *
  * This class mimics the documented Disney-recommended key rotation policy, but for testing purposes uses a
  * time unit of MINUTES instead of DAYS, so unless the time unit is changed the key will rotate every 90
@@ -35,21 +44,52 @@ import java.util.concurrent.TimeUnit;
  */
 public class DemoOnlyTransientKeyManager {
 
-    // Instance object used for synchronization
-    private Object holderLock;
+    // Algorithm new keys are generated for: RS256, PS256 or ES256.  Overridable with
+    // -Daesandbox.signingAlgorithm=<alg>, so that signing cost and token size can be compared; RS256 remains the
+    // default.
+    public static final String SIGNING_ALGORITHM_PROPERTY = "aesandbox.signingAlgorithm";
+    private static final SigningAlgorithm DEFAULT_SIGNING_ALGORITHM = SigningAlgorithm.RS256;
+
+    // RSA modulus size for generated keys (not used for ES256).  Overridable with -Daesandbox.keySize=<bits>,
+    // mostly so that benchmarks can compare key sizes; 4096 remains the default.
+    public static final String KEY_SIZE_PROPERTY = "aesandbox.keySize";
+    private static final int DEFAULT_KEY_SIZE = 4096;
+
+    // Number of pre-generated key pairs kept ready for rotation.  Overridable with -Daesandbox.keyPoolSize=<n>.
+    public static final String KEY_POOL_SIZE_PROPERTY = "aesandbox.keyPoolSize";
+    private static final int DEFAULT_KEY_POOL_SIZE = 2;
 
-    // State information for the set of keys
-    private KeyDataHolder standbyKey;
-    private KeyDataHolder primary;
-    private List<KeyDataHolder> verificationKeys;
+    // File the key set is saved to and restored from.  Unset by default, in which case keys are transient.
+    public static final String KEY_STORE_PROPERTY = "aesandbox.keyStore";
+
+    // State information for the set of keys: primary, standby, verification keys and their JWKS, published as
+    // one immutable snapshot.  Changes build the next KeyRing and compare-and-set it in; readers never block.
+    private final AtomicReference<KeyRing> ring = new AtomicReference<>();
     private KeyRotationManager rotator;
 
-    private KeyPairGenerator kpg;
+    // Held while introducing or promoting a key, so that a ring change and the event it schedules are one step.
+    // Otherwise a timer-driven change could schedule its event after a forced rotation has already replaced it.
+    private final Object lifecycleLock = new Object();
+
+    // Null unless a key store is configured.  Saves are serialized so that the last one always writes the latest
+    // state.
+    private KeyRingStore store;
+    private final Object storeLock = new Object();
+
+    // Key pairs are generated ahead of time in the background, so rotation never waits on key generation
+    private KeyPairPool keyPool;
+
+    // The published key set for in-process validation, brought up to date from the current JWKS on each use,
+    // and the JWKS it was last updated from.  Updates are serialized on verificationKeys.
+    private final VerificationKeys verificationKeys = new VerificationKeys();
+    private volatile JwksSnapshot appliedJwks;
 
     private Logger logger;
 
     private TimeBasedKeyRotationPolicy rotationPolicy;
 
+    private SigningAlgorithm signingAlgorithm;
+
     // Housekeeping thread pool
     private ScheduledExecutorService execSvc;
 
@@ -63,86 +103,246 @@ public class DemoOnlyTransientKeyManager {
 
     private DemoOnlyTransientKeyManager() {
 
-        // Very important semaphore for changing key values
-        holderLock = new Object();
-
         logger = Logger.newBasicLogger();
 
+        String algName = System.getProperty(SIGNING_ALGORITHM_PROPERTY, DEFAULT_SIGNING_ALGORITHM.getJwsName());
+        signingAlgorithm = SigningAlgorithm.forJwsName(algName);
+        if (signingAlgorithm == null) {
+            logger.log("Unsupported signing algorithm " + algName + ", using " + DEFAULT_SIGNING_ALGORITHM.getJwsName());
+            signingAlgorithm = DEFAULT_SIGNING_ALGORITHM;
+        }
+
+        int keySize = Integer.getInteger(KEY_SIZE_PROPERTY, DEFAULT_KEY_SIZE);
+        // Generates the first primary key if there is no stored key set.  Creating it, and a Signature, also
+        // checks that the algorithm and key size are usable before anything else starts.
+        KeyPairGenerator initialGenerator = null;
         try {
-            kpg = KeyPairGenerator.getInstance("RSA");
-            kpg.initialize(4096);
-        } catch (NoSuchAlgorithmException nsa) {
-            // Can't happen -- RSA is guaranteed to be in the JDK.  However, if it ever did happen, it would be an
-            // absolutely fatal error.
-            nsa.printStackTrace();
+            initialGenerator = signingAlgorithm.newKeyPairGenerator(keySize);
+            signingAlgorithm.newSignature();
+        } catch (GeneralSecurityException gse) {
+            // RSA and P-256 are guaranteed to be in the JDK, so this means an unusable key size or an old JDK
+            // without RSASSA-PSS.  Without keys nothing works, so this is an absolutely fatal error.
+            gse.printStackTrace();
             System.err.flush();
             System.exit(1);
         }
 
+        int poolSize = Integer.getInteger(KEY_POOL_SIZE_PROPERTY, DEFAULT_KEY_POOL_SIZE);
+        if (poolSize < 1) {
+            logger.log("Key pool size must be at least 1, got " + poolSize + ", using 1");
+            poolSize = 1;
+        }
+        SigningAlgorithm alg = signingAlgorithm;
+        keyPool = new KeyPairPool(poolSize, () -> {
+            try {
+                return alg.newKeyPairGenerator(keySize);
+            } catch (GeneralSecurityException gse) {
+                // Checked above
+                throw new IllegalStateException(gse);
+            }
+        });
+        keyPool.start();
+
         // FIXME: testing configuration by default uses very short intervals for key rotation
         rotationPolicy = TimeBasedKeyRotationPolicy.TEST;
         //rotationPolicy = TimeBasedKeyRotationPolicy.PRODUCTION;
 
-        // At any given moment, there MUST be:
-        // - One primary signing key
-        // there MAY be:
-        // - One newly-introduced ("standby") key, which will become the primary key after some interval
-        // - A small number of keys that might be used for verification, but not used for signing (these are
-        //      keys that were formerly primary signing keys but have been rotated out)
-        verificationKeys = new ArrayList<>();
-        primary = makeKeyDataHolder();
-        standbyKey = null;
-
-        // Initialize the background rotation thread object, instructing it to introduce a new key at the appropriate time
+        // Background thread handling the rotation (Runnable) object.  The rotator schedules itself for the
+        // next deadline, so it only wakes up when there is something to do.
+        execSvc = Executors.newSingleThreadScheduledExecutor();
         rotator = new KeyRotationManager();
-        long now = System.currentTimeMillis();
-        RotationEvent evt = new RotationEvent(RotationEventType.INTRO, now + rotationPolicy.getTimeDelayBeforeIntroducingNewStandby());
-        logger.logVerbose("Time is " + new Date() + ", new key should be introduced at " +
-                new Date(now + rotationPolicy.getTimeDelayBeforeIntroducingNewStandby()));
-        rotator.addEvent(evt);
 
-        // Kick off the background thread handling the rotation (Runnable) object.
-        execSvc = Executors.newSingleThreadScheduledExecutor();
-        execSvc.scheduleAtFixedRate(rotator, rotationPolicy.getPollingInterval(), rotationPolicy.getPollingInterval(), TimeUnit.MILLISECONDS);
+        // A restart with a key store resumes where the previous process left off: same keys, same JWKS version,
+        // same pending rotation events.  Events that fell due while the process was down run on the first
+        // rotation pass.  The store is read here, when INSTANCE is first used, rather than on the first key
+        // request: the rotator must be scheduled from the stored events, and reading it is far cheaper than the
+        // key generation it replaces.
+        KeyRingStore.Contents stored = null;
+        String storePath = System.getProperty(KEY_STORE_PROPERTY);
+        if (storePath != null) {
+            store = new KeyRingStore(Paths.get(storePath));
+            stored = loadStore();
+        }
+
+        if (stored != null) {
+            ring.set(stored.ring);
+            for (RotationEvent evt : stored.events) {
+                rotator.addEvent(evt);
+            }
+            if (stored.events.isEmpty()) {
+                // Shouldn't happen, since every change schedules the next event, but rotation must not stop
+                RotationEventType next = (stored.ring.getStandby() != null) ? RotationEventType.PROMOTE : RotationEventType.INTRO;
+                rotator.addEvent(new RotationEvent(next, System.currentTimeMillis()));
+            }
+        } else {
+            // The initial primary key below is generated here, not taken from the pool, while these fill the pool
+            // on other cores; taking it would always find the pool empty and count as an inline fallback
+            keyPool.prefill(Math.min(poolSize, Runtime.getRuntime().availableProcessors()));
+
+            // At any given moment, there MUST be:
+            // - One primary signing key
+            // there MAY be:
+            // - One newly-introduced ("standby") key, which will become the primary key after some interval
+            // - A small number of keys that might be used for verification, but not used for signing (these are
+            //      keys that were formerly primary signing keys but have been rotated out)
+            long start = System.nanoTime();
+            KeyPair initial = initialGenerator.generateKeyPair();
+            SandboxMetrics.INSTANCE.getKeyGeneration().recordSince(start);
+            ring.set(KeyRing.initial(makeKeyDataHolder(initial)));
+
+            // Instruct the background rotation thread object to introduce a new key at the appropriate time
+            long now = System.currentTimeMillis();
+            RotationEvent evt = new RotationEvent(RotationEventType.INTRO, now + rotationPolicy.getTimeDelayBeforeIntroducingNewStandby());
+            logger.logVerbose("Time is " + new Date() + ", new key should be introduced at " +
+                    new Date(now + rotationPolicy.getTimeDelayBeforeIntroducingNewStandby()));
+            rotator.addEvent(evt);
+            saveStore();
+        }
+
+        // Also covers keys restored from the store that expire before the next lifecycle event
+        rotator.reschedule();
     }
 
     /**
-     * Return a public key set in JSON format, suitable for an HTTP response.  This implementation builds the
-     * JSON return object for every call, with no caching.
+     * Return a public key set in JSON format, suitable for an HTTP response.  The JSON is taken from the current
+     * snapshot, which is only rebuilt when the key set changes.
      *
      */
     public String getJsonPublicKeySet() {
-        return getPrettyPrintedJsonPublicKeySet();
+        return ring.get().getJwks().getCompactString();
     }
 
     /**
-     * Return a public key set in JSON format, pretty-printed.  This implementation builds the
-     * JSON return object for every call, with no caching.
+     * Return a public key set in JSON format, pretty-printed.
      *
      */
     public String getPrettyPrintedJsonPublicKeySet() {
+        return new String(ring.get().getJwks().getPretty(), UTF_8);
+    }
 
-        // Jackson ObjectMapper implementation
-        Keys keys = new Keys();
+    /**
+     * Return the current serialized public key set.  Snapshots are immutable; a new one is published each time
+     * a key is added to or removed from the verification set.
+     */
+    public JwksSnapshot getJwksSnapshot() {
+        return ring.get().getJwks();
+    }
 
-        keys.setKeys(makeRSAKeyArray());
-        ObjectMapper mapper = new ObjectMapper();
-        String json = null;
-        try {
-            json = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(keys);
-        } catch (Exception e) {
-            // disaster
-            e.printStackTrace();
+    /**
+     * Return the current key set.  The returned ring is immutable and internally consistent; it does not change
+     * if keys are rotated afterwards.
+     */
+    public KeyRing getKeyRing() {
+        return ring.get();
+    }
+
+    /**
+     * @return Keys for validating tokens against the current JWKS.  The same registry is returned every time and
+     * only the keys added since the last call are decoded.  While the JWKS is unchanged this is a volatile read
+     * and a reference compare, so concurrent verifiers don't contend on a lock.
+     */
+    public VerificationKeys getVerificationKeys() throws Exception {
+        JwksSnapshot jwks = ring.get().getJwks();
+        if (jwks != appliedJwks) {
+            synchronized (verificationKeys) {
+                JwksSnapshot applied = appliedJwks;
+                // Versions only increase, so a thread that read an older snapshot can't roll the keys back
+                if (applied == null || jwks.getVersion() > applied.getVersion()) {
+                    verificationKeys.update(jwks.getCompactString());
+                    appliedJwks = jwks;
+                }
+            }
         }
+        return verificationKeys;
+    }
+
+    /**
+     * @return The pool of pre-generated key pairs, e.g. to read its depth and generation timings.
+     */
+    public KeyPairPool getKeyPairPool() {
+        return keyPool;
+    }
+
+    /**
+     * @return The algorithm new keys are generated for.  Keys already in the set keep their own algorithm.
+     */
+    public SigningAlgorithm getSigningAlgorithm() {
+        return signingAlgorithm;
+    }
+
+    /**
+     * @return Every scheduled key lifecycle step, earliest first: the pending intro or promote event and the
+     * removal of each inactive key.
+     */
+    public List<RotationDeadline> getRotationTimeline() {
+        List<RotationDeadline> timeline = new ArrayList<>();
+        for (RotationEvent evt : rotator.getPendingEvents()) {
+            timeline.add(new RotationDeadline(evt.eType == RotationEventType.INTRO ?
+                    RotationDeadline.Type.INTRO : RotationDeadline.Type.PROMOTE, evt.doAt, null));
+        }
+        KeyRing current = ring.get();
+        for (KeyDataHolder holder : current.getVerificationKeys()) {
+            if (isRemovable(current, holder)) {
+                timeline.add(new RotationDeadline(RotationDeadline.Type.EXPIRE, expiresAt(holder), holder.getRsaKey().getKid()));
+            }
+        }
+        timeline.sort(Comparator.comparingLong(RotationDeadline::getAt));
+        return timeline;
+    }
+
+    /**
+     * @return The number of intro and promote events waiting in the rotation queue.
+     */
+    public int getPendingRotationEventCount() {
+        return rotator.getPendingEventCount();
+    }
 
-        return json;
+    public TimeBasedKeyRotationPolicy getRotationPolicy() {
+        return rotationPolicy;
     }
 
     /**
      * This method handles key rotation initiated by either a timer or by a user action.
      */
     public void rotateKeys() {
-        promote();
+        promote(true);
+        saveStore();
+    }
+
+    /**
+     * @return The stored key set, or null if there is none or it can't be read.  An unreadable file is moved
+     * aside rather than overwritten.
+     */
+    private KeyRingStore.Contents loadStore() {
+        try {
+            return store.load();
+        } catch (IOException e) {
+            e.printStackTrace();
+            try {
+                Path aside = store.quarantine();
+                logger.log("Unreadable key store moved to " + aside + ", starting with a new key");
+            } catch (IOException qe) {
+                qe.printStackTrace();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Save the current key set and pending events, if a key store is configured.  Called after every change.
+     */
+    private void saveStore() {
+        if (store == null) {
+            return;
+        }
+        synchronized (storeLock) {
+            try {
+                store.save(ring.get(), rotator.getPendingEvents());
+            } catch (IOException e) {
+                // The in-memory key set is still correct; the next change will try to save again
+                e.printStackTrace();
+            }
+        }
     }
 
     /**
@@ -154,129 +354,155 @@ public class DemoOnlyTransientKeyManager {
      * and its promotion to primary signing key (the "standby" time).
      */
     private void introduceNewKey() {
-        synchronized (holderLock) {
-            if (standbyKey == null) {
-                standbyKey = makeKeyDataHolder();
-
-                // When introducing a new key, set a timer for that key to be promoted to primary.  This is done so
-                // that the key exists in the verification set for some amount of time before it is used for signing,
-                // which is useful for when clients cache keyset results.  When clients use caching, then may not
-                // have a refreshed set of keys for verification for some time, so that if they receive a JWT signed
-                // with a brand-new key they might fail to verify it.
-                RotationEvent evt = new RotationEvent(RotationEventType.PROMOTE,
-                        System.currentTimeMillis() + rotationPolicy.getDelayBeforePromotionToPrimary());
-                logger.logVerbose("New key " + standbyKey + " introduced, will be promoted to primary at " +
-                        new Date(System.currentTimeMillis() + rotationPolicy.getDelayBeforePromotionToPrimary()));
-                rotator.addEvent(evt);
-            } else {
-                // Atypical case where we want to introduce a new key, but there is already one on standby.  The known
-                // use case for this is when a forced key rotation has been done.  Other cases are likely bugs.
-                logger.log("Attempting to introduce new key when there is already a standby primary, nothing will be done.");
-                logger.log("\tThis is expected after a forced key rotation event, unexpected otherwise.");
-            }
+        if (ring.get().getStandby() != null) {
+            logStandbyAlreadyPresent();
+            return;
+        }
+
+        // Generate outside the lock and the update loop: key generation is slow, and the loop may run more than once
+        KeyDataHolder newKey = makeKeyDataHolder();
+        synchronized (lifecycleLock) {
+            KeyRing current;
+            do {
+                current = ring.get();
+                if (current.getStandby() != null) {
+                    // Another thread introduced or forced a key in the meantime; the new key is discarded unused
+                    logStandbyAlreadyPresent();
+                    return;
+                }
+            } while (!ring.compareAndSet(current, current.withStandby(newKey)));
+
+            // When introducing a new key, set a timer for that key to be promoted to primary.  This is done so
+            // that the key exists in the verification set for some amount of time before it is used for signing,
+            // which is useful for when clients cache keyset results.  When clients use caching, then may not
+            // have a refreshed set of keys for verification for some time, so that if they receive a JWT signed
+            // with a brand-new key they might fail to verify it.
+            RotationEvent evt = new RotationEvent(RotationEventType.PROMOTE,
+                    System.currentTimeMillis() + rotationPolicy.getDelayBeforePromotionToPrimary());
+            logger.logVerbose("New key " + newKey + " introduced, will be promoted to primary at " +
+                    new Date(System.currentTimeMillis() + rotationPolicy.getDelayBeforePromotionToPrimary()));
+            rotator.replaceEvents(evt);
         }
     }
 
+    private void logStandbyAlreadyPresent() {
+        // Atypical case where we want to introduce a new key, but there is already one on standby.  The known
+        // use case for this is when a forced key rotation has been done.  Other cases are likely bugs.
+        logger.log("Attempting to introduce new key when there is already a standby primary, nothing will be done.");
+        logger.log("\tThis is expected after a forced key rotation event, unexpected otherwise.");
+    }
+
     /**
-     * Promote: ensure a standby key exists.  Make the standby key the primary signing key.  The previous
-     * primary signing key becomes inactive in the verification set until it expires based on the key
-     * rotation policy in effect.
+     * Promote: make the standby key the primary signing key.  The previous primary signing key becomes inactive
+     * in the verification set until it expires based on the key rotation policy in effect.
+     *
+     * @param forced True for a user-initiated rotation, which generates a new primary if there is no standby.
+     *               A timer-driven promotion never signs with a key it did not publish first: without a standby it
+     *               leaves the primary in place.
      */
-    private void promote() {
-        synchronized (holderLock) {
-            if (standbyKey == null) {
-                // This commonly happens when doing user-initiated key rotations.
-                standbyKey = makeKeyDataHolder();
-            }
-
-            logger.logVerbose("Key promotion event at " + new Date() + ":\n\told primary=" + primary + "\n\tstandby=" + standbyKey +
-                    ", standby will become new primary.");
-            primary = standbyKey;
-            standbyKey = null;
+    private void promote(boolean forced) {
+        synchronized (lifecycleLock) {
+            KeyDataHolder generated = null;
+            KeyRing current;
+            KeyDataHolder newPrimary;
+            do {
+                current = ring.get();
+                newPrimary = current.getStandby();
+                if (newPrimary == null) {
+                    if (!forced) {
+                        logNoStandbyToPromote();
+                        return;
+                    }
+                    // This commonly happens when doing user-initiated key rotations.  Generated at most once, even
+                    // if the update has to be retried.
+                    if (generated == null) {
+                        generated = makeKeyDataHolder();
+                    }
+                    newPrimary = generated;
+                }
+            } while (!ring.compareAndSet(current, current.promote(newPrimary)));
+
+            logger.logVerbose("Key promotion event at " + new Date() + ":\n\told primary=" + current.getPrimary() +
+                    "\n\tstandby=" + newPrimary + ", standby will become new primary.");
+
+            // When promoting, set a timer so that a new key will be introduced with enough lead time (see comment
+            // in introduceNewKey for why this is important).  This replaces any pending event: after a forced
+            // rotation, the intro or promote scheduled for the old primary no longer applies.
+            RotationEvent evt = new RotationEvent(RotationEventType.INTRO,
+                    System.currentTimeMillis() + rotationPolicy.getTimeDelayBeforeIntroducingNewStandby());
+            logger.logVerbose("Time is " + new Date() + ", new key should be introduced at " +
+                    new Date(System.currentTimeMillis() + rotationPolicy.getTimeDelayBeforeIntroducingNewStandby()));
+            rotator.replaceEvents(evt);
         }
+    }
 
-        // When promoting, set a timer so that a new key will be introduced with enough lead time (see comment
-        // in introduceNewKey for why this is important).
-        RotationEvent evt = new RotationEvent(RotationEventType.INTRO,
-                System.currentTimeMillis() + rotationPolicy.getTimeDelayBeforeIntroducingNewStandby());
-        logger.logVerbose("Time is " + new Date() + ", new key should be introduced at " +
-                new Date(System.currentTimeMillis() + rotationPolicy.getTimeDelayBeforeIntroducingNewStandby()));
-        rotator.addEvent(evt);
+    private void logNoStandbyToPromote() {
+        // A scheduled promotion found no standby, typically because a forced rotation promoted it first.  That
+        // rotation already scheduled the next introduction; if nothing is pending, introduce a key now so that
+        // rotation carries on.
+        logger.log("Scheduled key promotion found no standby key, the primary is kept.");
+        if (rotator.getPendingEventCount() == 0) {
+            rotator.addEvent(new RotationEvent(RotationEventType.INTRO, System.currentTimeMillis()));
+        }
     }
 
     /**
      * Convenience method to make a holder object for storing all of the key data necessary for rotating keys,
-     * returning JSON key objects, getting quick access to a key ID, etc.  Any new key created is automatically
-     * added to the set used to verify tokens.  Any other semantics for the new key is the responsibility of
-     * the caller.
+     * returning JSON key objects, getting quick access to a key ID, etc.  The new key is not part of the key set
+     * until the caller publishes a KeyRing containing it.
      *
      * @return A holder object.
      */
     private KeyDataHolder makeKeyDataHolder() {
-        KeyPair kp = kpg.generateKeyPair();
-        RSAPublicKey pub = (RSAPublicKey) kp.getPublic();
-        RSAPrivateKey priv = (RSAPrivateKey) kp.getPrivate();
-        String id = UUID.randomUUID().toString();
-        RSAKey jsonKeyObj = makeRSAKey(pub, id);
-
-        KeyDataHolder result = new KeyDataHolder(pub, priv, jsonKeyObj);
+        // Generation time is recorded by the pool, on whichever thread generated the pair
+        return makeKeyDataHolder(keyPool.take());
+    }
 
-        // All keys created may be used for verification until expired
-        synchronized (holderLock) {
-            verificationKeys.add(result);
-        }
+    private KeyDataHolder makeKeyDataHolder(KeyPair kp) {
+        PublicKey pub = kp.getPublic();
+        PrivateKey priv = kp.getPrivate();
+        String id = UUID.randomUUID().toString();
+        RSAKey jsonKeyObj = makeJsonKey(pub, id, signingAlgorithm);
 
-        return result;
+        return new KeyDataHolder(pub, priv, jsonKeyObj);
     }
 
     /**
-     * Convenience method to make a JSON object representing a RSA public key.
+     * Convenience method to make a JSON object representing a public key: n and e for RSA keys, crv, x and y for
+     * EC keys.
      *
-     * @param pk  A valid RSA public key.
+     * @param pk  A valid RSA or P-256 public key.
      * @return An object used by the Jackson ObjectMapper to create a JSON string that can be passed over the web
      */
-    private RSAKey makeRSAKey(RSAPublicKey pk, String id) {
+    static RSAKey makeJsonKey(PublicKey pk, String id, SigningAlgorithm alg) {
         RSAKey result = new RSAKey();
         result.setKty(pk.getAlgorithm()); // getAlgorithm() returns kty not algorithm
 
         result.setKid(id);
-        result.setN(Base64.getUrlEncoder().encodeToString(pk.getModulus().toByteArray()));
-        result.setE(Base64.getUrlEncoder().encodeToString(pk.getPublicExponent().toByteArray()));
-        result.setAlg("RS256");  // See above comment for setKty; getAlgorithm() does not return what you think it should
+        if (pk instanceof ECPublicKey) {
+            ECPublicKey ecKey = (ECPublicKey) pk;
+            result.setCrv(SigningAlgorithm.EC_CURVE);
+            result.setX(encodeCoordinate(ecKey.getW().getAffineX()));
+            result.setY(encodeCoordinate(ecKey.getW().getAffineY()));
+        } else {
+            RSAPublicKey rsaKey = (RSAPublicKey) pk;
+            result.setN(Base64.getUrlEncoder().encodeToString(rsaKey.getModulus().toByteArray()));
+            result.setE(Base64.getUrlEncoder().encodeToString(rsaKey.getPublicExponent().toByteArray()));
+        }
+        result.setAlg(alg.getJwsName());  // See above comment for setKty; getAlgorithm() does not return what you think it should
 
         return result;
     }
 
     /**
-     * Basic data transformation method to create a Java object representation of the JSON
-     * that will be returned by the JWKS endpoint.
-     *
-     * @return  An array of objects to pass to the Jackson ObjectMapper to be turned into JSON
-     * for HTTP response output.
+     * EC coordinates are encoded unsigned and at the full field length (32 bytes for P-256), as RFC 7518 requires.
      */
-    private RSAKey[] makeRSAKeyArray() {
-
-        // Always make a copy of the outer array.  It is okay to share references of individual RSAKey JSON object
-        // representations, but not the containing array
-        KeyDataHolder[] currentState;
-
-        // Snapshot copy made under synchronization, used as source data.  The verification key List is a list of all
-        // keys that can possibly be used for verification, which includes standby, primary, and inactive keys.
-        List<KeyDataHolder> currentVerificationKeys;
-        synchronized (holderLock) {
-            currentVerificationKeys = new ArrayList<>(verificationKeys);
-        }
-
-        // Copy into a JSON-friendly structure.  Note that this method is not a real-time method, it is intended
-        // to only be called on a polling thread or as a test user action.
-        int size = 1;   // Accounts for primary key, which must exist always
-        RSAKey[] result = new RSAKey[currentVerificationKeys.size()];
-        int resultIndex = 0;
-        for (KeyDataHolder holder : currentVerificationKeys) {
-            result[resultIndex++] = holder.getRsaKey();
-        }
-
-        return result;
+    private static String encodeCoordinate(BigInteger coordinate) {
+        byte[] raw = coordinate.toByteArray();
+        byte[] fixed = new byte[32];
+        int len = Math.min(raw.length, fixed.length);
+        System.arraycopy(raw, raw.length - len, fixed, fixed.length - len, len);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(fixed);
     }
 
     /**
@@ -284,14 +510,12 @@ public class DemoOnlyTransientKeyManager {
      * @return
      */
     public KeyDataHolder getPrivateKeyForSigning() {
-        synchronized (holderLock) {
-            return primary;
-        }
+        return ring.get().getPrimary();
     }
 
-    private enum RotationEventType { INTRO, PROMOTE };
+    enum RotationEventType { INTRO, PROMOTE };
 
-    private class RotationEvent {
+    static class RotationEvent {
         RotationEventType eType;
         long doAt;
 
@@ -302,83 +526,183 @@ public class DemoOnlyTransientKeyManager {
     }
 
     /**
-     * Key rotation thread: this class executes the key rotation policy in effect.
+     * Get rid of expired inactive keys.  Even if a key is expired, it is not deleted if it is the primary signing
+     * key, but that is logged.
+     *
+     * @return true if any keys were removed
      */
-    private class KeyRotationManager implements Runnable {
+    private boolean removeExpiredKeys(long now) {
+        KeyRing current;
+        KeyRing next;
+        List<KeyDataHolder> expired;
+        do {
+            current = ring.get();
+            expired = new ArrayList<>();
+            for (KeyDataHolder holder : current.getVerificationKeys()) {
+                if (isRemovable(current, holder) && expiresAt(holder) <= now) {
+                    expired.add(holder);
+                }
+            }
+            if (expired.isEmpty()) {
+                break;
+            }
+            next = current.without(expired);
+        } while (!ring.compareAndSet(current, next));
 
-        private List<RotationEvent> events;
-        private long lastRun;
+        for (KeyDataHolder holder : expired) {
+            logger.logVerbose("Expired key with id " + holder.getRsaKey().getKid() + " deleted at " + new Date());
+        }
 
-        KeyRotationManager() {
-            events = new ArrayList<>();
-            lastRun = 0;
+        KeyDataHolder primary = current.getPrimary();
+        if (expiresAt(primary) <= now) {
+            logger.logVerbose(new Date() + ": Primary signing key with id " + primary.getRsaKey().getKid() +
+                    " is expired, will not delete.  Key expiration is at " +
+                    new Date(primary.getTimestamp() + rotationPolicy.getTimeUntilDeletion()));
         }
+        return !expired.isEmpty();
+    }
+
+    private long expiresAt(KeyDataHolder holder) {
+        return holder.getTimestamp() + rotationPolicy.getTimeUntilDeletion();
+    }
+
+    /**
+     * The primary and standby keys are never removed, however old they are.
+     */
+    private static boolean isRemovable(KeyRing r, KeyDataHolder holder) {
+        return !holder.equals(r.getPrimary()) && !holder.equals(r.getStandby());
+    }
+
+    /**
+     * @return The earliest time an inactive key in the ring expires, or Long.MAX_VALUE if there are none.
+     */
+    private long nextExpiry(KeyRing r) {
+        long next = Long.MAX_VALUE;
+        for (KeyDataHolder holder : r.getVerificationKeys()) {
+            if (isRemovable(r, holder)) {
+                next = Math.min(next, expiresAt(holder));
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Key rotation thread: this class executes the key rotation policy in effect.  Instead of polling, it keeps
+     * the pending lifecycle events in a priority queue and schedules a single run on the executor for the
+     * earliest deadline: the next event or the next inactive key expiry, whichever comes first.  Adding or
+     * replacing events and changing the key set reschedule it.
+     */
+    private class KeyRotationManager implements Runnable {
+
+        // Guards events, scheduled and scheduledFor
+        private final Object lock = new Object();
+        private final PriorityQueue<RotationEvent> events =
+                new PriorityQueue<>(Comparator.comparingLong((RotationEvent evt) -> evt.doAt));
+        private ScheduledFuture<?> scheduled;
+        private long scheduledFor = Long.MAX_VALUE;
 
         public void addEvent(RotationEvent evt) {
-            synchronized (events) {
+            synchronized (lock) {
                 events.add(evt);
             }
+            reschedule();
+        }
+
+        /**
+         * Drop all pending events and schedule the given one instead.
+         */
+        void replaceEvents(RotationEvent evt) {
+            synchronized (lock) {
+                events.clear();
+                events.add(evt);
+            }
+            reschedule();
+        }
+
+        int getPendingEventCount() {
+            synchronized (lock) {
+                return events.size();
+            }
+        }
+
+        List<RotationEvent> getPendingEvents() {
+            synchronized (lock) {
+                List<RotationEvent> pending = new ArrayList<>(events);
+                pending.sort(events.comparator());
+                return pending;
+            }
+        }
+
+        /**
+         * Make sure a run is scheduled for the earliest deadline.  An already scheduled run that is due no later
+         * is kept.
+         */
+        void reschedule() {
+            long expiry = nextExpiry(ring.get());
+            synchronized (lock) {
+                long next = events.isEmpty() ? expiry : Math.min(expiry, events.peek().doAt);
+                if (scheduled != null && scheduledFor <= next) {
+                    return;
+                }
+                if (scheduled != null) {
+                    scheduled.cancel(false);
+                    scheduled = null;
+                }
+                if (next != Long.MAX_VALUE) {
+                    long delay = Math.max(0, next - System.currentTimeMillis());
+                    scheduledFor = next;
+                    scheduled = execSvc.schedule(this, delay, TimeUnit.MILLISECONDS);
+                }
+            }
         }
 
         public void run() {
+            long dueAt;
+            synchronized (lock) {
+                // This run is no longer pending; anything rescheduled from here on needs a new one
+                dueAt = scheduledFor;
+                scheduled = null;
+                scheduledFor = Long.MAX_VALUE;
+            }
+
             try {
                 long now = System.currentTimeMillis();
 
-                if (lastRun > 0) {
-                    // Flag situations where this thread job didn't run in the expected time window,
-                    // using some reasonable threshold.
-                    long timeDiff = now - lastRun;
-                    if (timeDiff > (rotationPolicy.getPollingInterval() * 2)) {
-                        logger.log("WARNING: polling thread not running at expected interval.  Key rotation events");
-                        logger.log("\tare unlikely to happen in the expected time, but functionality should still be correct.");
-                    }
+                // Flag runs that started well after their deadline, e.g. because of a long GC pause.
+                if (now - dueAt > rotationPolicy.getLateEventTolerance()) {
+                    logger.log("WARNING: key rotation ran " + (now - dueAt) + " ms after it was due.  Key rotation");
+                    logger.log("\tevents happened later than expected, but functionality should still be correct.");
                 }
 
-                // Grab whatever is on the event queue
+                // Grab whatever is due from the event queue
                 List<RotationEvent> eventsDue = new ArrayList<>();
-                synchronized (events) {
-                    for (Iterator<RotationEvent> evtIter = events.iterator(); evtIter.hasNext(); ) {
-                        RotationEvent evt = evtIter.next();
-                        if (evt.doAt < now) {
-                            eventsDue.add(evt);
-                            evtIter.remove();
-                        }
+                synchronized (lock) {
+                    while (!events.isEmpty() && events.peek().doAt <= now) {
+                        eventsDue.add(events.poll());
                     }
                 }
 
                 // Process lifecycle events (intro, promote)
                 for (RotationEvent evt : eventsDue) {
                     // Don't check time, that was done above
+                    long lagNanos = TimeUnit.MILLISECONDS.toNanos(now - evt.doAt);
                     if (evt.eType.equals(RotationEventType.INTRO)) {
+                        SandboxMetrics.INSTANCE.getIntroLag().record(lagNanos);
                         introduceNewKey();
                     } else if (evt.eType.equals(RotationEventType.PROMOTE)) {
-                        promote();
+                        SandboxMetrics.INSTANCE.getPromoteLag().record(lagNanos);
+                        promote(false);
                     }
                 }
 
-                // Get rid of expired inactives
-                synchronized (verificationKeys) {
-                    for (Iterator<KeyDataHolder> inactivesIter = verificationKeys.iterator(); inactivesIter.hasNext(); ) {
-                        KeyDataHolder holder = inactivesIter.next();
-
-                        // Even if the key is expired, don't delete a key if it is the primary signing key,
-                        // but log an error
-                        if (holder.getTimestamp() + rotationPolicy.getTimeUntilDeletion() < now) {
-                            if (!holder.equals(primary)) {
-                                inactivesIter.remove();
-                                logger.logVerbose("Expired key with id " +
-                                        holder.getRsaKey().getKid() + " deleted at " + new Date());
-                            } else {
-                                logger.logVerbose(new Date() + ": Primary signing key with id " +
-                                        holder.getRsaKey().getKid() +
-                                        " is expired, will not delete.  Key expiration is at " +
-                                        new Date(holder.getTimestamp() + rotationPolicy.getTimeUntilDeletion()));
-                            }
-                        }
-                    }
+                boolean removed = removeExpiredKeys(now);
+                if (removed || !eventsDue.isEmpty()) {
+                    saveStore();
                 }
             } catch (Exception e) {
                 e.printStackTrace();
+            } finally {
+                reschedule();
             }
         }
     }
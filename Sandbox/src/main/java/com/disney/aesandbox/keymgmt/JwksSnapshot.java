@@ -0,0 +1,83 @@
+package com.disney.aesandbox.keymgmt;
+
+import java.security.MessageDigest;
+import java.util.Base64;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Immutable, pre-serialized form of the public key set.  A new snapshot is built only when the set of
+ * verification keys changes, so serving the JWKS costs no serialization or locking.
+ *
+ * The byte arrays are shared, not copied; callers must not modify them.
+ */
+public final class JwksSnapshot {
+
+    private final byte[] compact;
+    private final byte[] pretty;
+    private final String compactString;
+    private final long version;
+    private final String contentHash;
+    private final long createdAt;
+
+    /**
+     * @param createdAt When the key set last changed, in epoch millis; kept across restarts for Last-Modified
+     */
+    JwksSnapshot(byte[] compact, byte[] pretty, long version, long createdAt) throws Exception {
+        this.compact = compact;
+        this.pretty = pretty;
+        this.compactString = new String(compact, UTF_8);
+        this.version = version;
+        this.contentHash = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                MessageDigest.getInstance("SHA-256").digest(compact));
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * @return The JWKS JSON without whitespace, UTF-8 encoded.
+     */
+    public byte[] getCompact() {
+        return compact;
+    }
+
+    /**
+     * @return The JWKS JSON pretty-printed, UTF-8 encoded.
+     */
+    public byte[] getPretty() {
+        return pretty;
+    }
+
+    public String getCompactString() {
+        return compactString;
+    }
+
+    /**
+     * @return A number that increases every time the key set changes.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return URL-safe Base64 SHA-256 of the compact JSON.
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * @return A strong HTTP entity tag for this snapshot.  The version alone would repeat after a restart, so
+     * part of the content hash is included.
+     */
+    public String getETag() {
+        return "\"" + version + "-" + contentHash.substring(0, 16) + "\"";
+    }
+
+    /**
+     * @return When the key set last changed, in epoch millis.  For a key set restored from a key store, this is
+     * when it changed before the restart, not when it was restored.
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+}
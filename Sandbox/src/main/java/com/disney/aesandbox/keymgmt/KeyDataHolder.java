@@ -29,6 +29,17 @@ public class KeyDataHolder {
         stamp();
     }
 
+    /**
+     * For keys loaded from storage, which keep their original creation timestamp.
+     */
+    public KeyDataHolder(PublicKey pub, PrivateKey priv, RSAKey artifacts, long timestamp) {
+
+        setPublicKey(pub);
+        setPrivateKey(priv);
+        setRsaKey(artifacts);
+        this.timestamp = timestamp;
+    }
+
     /**
      * @return
      */
@@ -58,6 +69,15 @@ public class KeyDataHolder {
         this.rsaKey = rsaKey;
     }
 
+    /**
+     * @return The algorithm this key signs with, taken from the JWK alg, or the default for its key type if the
+     * JWK has none.
+     */
+    public SigningAlgorithm getAlgorithm() {
+        SigningAlgorithm alg = SigningAlgorithm.forJwsName(rsaKey.getAlg());
+        return (alg != null) ? alg : SigningAlgorithm.defaultFor(privateKey);
+    }
+
     public long getTimestamp() {
         return timestamp;
     }
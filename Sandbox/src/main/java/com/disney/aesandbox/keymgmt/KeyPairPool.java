@@ -0,0 +1,159 @@
+package com.disney.aesandbox.keymgmt;
+
+import com.disney.aesandbox.metrics.SandboxMetrics;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A small pool of pre-generated key pairs, so that key rotation takes a ready pair instead of waiting for key
+ * generation (hundreds of milliseconds to seconds for large RSA keys).
+ *
+ * Once start() is called, a low-priority daemon thread keeps the pool topped up: it generates a pair and then
+ * blocks until there is room for it.  take() is O(1) when the pool has a pair and only falls back to generating
+ * on the calling thread when the pool is empty, which is counted.  prefill() can additionally fill the pool in
+ * parallel, e.g. at startup.  Every generation, on any thread, is recorded in the key generation metric.
+ *
+ * KeyPairGenerator instances are not guaranteed to be thread-safe, so every generating thread gets its own from
+ * the supplied factory.
+ */
+public class KeyPairPool {
+
+    private final BlockingQueue<KeyPair> ready;
+    private final ThreadLocal<KeyPairGenerator> generator;
+
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder generationNanos = new LongAdder();
+    private final AtomicLong maxGenerationNanos = new AtomicLong();
+    private volatile long lastGenerationNanos;
+    private final LongAdder inlineFallbacks = new LongAdder();
+
+    private Thread refill;
+
+    /**
+     * @param capacity Number of pairs to keep ready, at least 1
+     * @param generators Factory for initialized generators, called once per generating thread
+     * @throws IllegalArgumentException If capacity is less than 1
+     */
+    public KeyPairPool(int capacity, Supplier<KeyPairGenerator> generators) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Key pair pool capacity must be at least 1, got " + capacity);
+        }
+        this.ready = new LinkedBlockingQueue<>(capacity);
+        this.generator = ThreadLocal.withInitial(generators);
+    }
+
+    /**
+     * Start the thread that keeps the pool topped up.  Separate from the constructor so the thread never sees a
+     * partly constructed pool.
+     *
+     * @throws IllegalStateException If the pool has already been started
+     */
+    public synchronized void start() {
+        if (refill != null) {
+            throw new IllegalStateException("Key pair pool already started");
+        }
+        refill = new Thread(this::refill, "key-pair-pool-refill");
+        refill.setDaemon(true);
+        refill.setPriority(Thread.MIN_PRIORITY);
+        refill.start();
+    }
+
+    /**
+     * @return A ready key pair, or a freshly generated one if none is ready.
+     */
+    public KeyPair take() {
+        KeyPair kp = ready.poll();
+        if (kp == null) {
+            inlineFallbacks.increment();
+            kp = generate();
+        }
+        return kp;
+    }
+
+    /**
+     * Fill the pool using up to the given number of extra threads.  Returns immediately; the threads exit once
+     * the pool is full.
+     */
+    public void prefill(int threads) {
+        for (int i = 0; i < threads; i++) {
+            Thread filler = new Thread(() -> {
+                while (ready.remainingCapacity() > 0) {
+                    if (!ready.offer(generate())) {
+                        // Filled by someone else while generating; the extra pair is dropped
+                        break;
+                    }
+                }
+            }, "key-pair-pool-prefill-" + i);
+            filler.setDaemon(true);
+            filler.setPriority(Thread.MIN_PRIORITY);
+            filler.start();
+        }
+    }
+
+    private void refill() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                // Blocks while the pool is full
+                ready.put(generate());
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private KeyPair generate() {
+        long start = System.nanoTime();
+        KeyPair kp = generator.get().generateKeyPair();
+        long elapsed = System.nanoTime() - start;
+
+        generated.increment();
+        generationNanos.add(elapsed);
+        lastGenerationNanos = elapsed;
+        maxGenerationNanos.accumulateAndGet(elapsed, Math::max);
+        SandboxMetrics.INSTANCE.getKeyGeneration().record(elapsed);
+        return kp;
+    }
+
+    /**
+     * @return Number of key pairs ready to be taken.
+     */
+    public int getDepth() {
+        return ready.size();
+    }
+
+    public int getCapacity() {
+        return ready.size() + ready.remainingCapacity();
+    }
+
+    /**
+     * @return Number of key pairs generated, by any thread.
+     */
+    public long getGeneratedCount() {
+        return generated.sum();
+    }
+
+    /**
+     * @return Number of take() calls that found the pool empty and generated on the calling thread.
+     */
+    public long getInlineFallbackCount() {
+        return inlineFallbacks.sum();
+    }
+
+    public long getTotalGenerationNanos() {
+        return generationNanos.sum();
+    }
+
+    public long getLastGenerationNanos() {
+        return lastGenerationNanos;
+    }
+
+    public long getMaxGenerationNanos() {
+        return maxGenerationNanos.get();
+    }
+}
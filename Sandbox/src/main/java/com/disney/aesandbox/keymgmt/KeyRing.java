@@ -0,0 +1,144 @@
+package com.disney.aesandbox.keymgmt;
+
+import com.disney.aesandbox.objmapping.Keys;
+import com.disney.aesandbox.objmapping.RSAKey;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of the whole key set: the primary signing key, the optional standby key, every key that may
+ * be used for verification, and the serialized JWKS for those keys.  The key manager publishes a KeyRing through
+ * an AtomicReference; changing the key set means building the next KeyRing and compare-and-setting it in, so
+ * readers never lock and always see a consistent primary/standby/JWKS combination.
+ *
+ * The verification list includes the primary and standby keys as well as inactive keys that have been rotated
+ * out but not yet expired.
+ */
+public final class KeyRing {
+
+    private static final ObjectMapper JWKS_MAPPER = new ObjectMapper();
+
+    private final KeyDataHolder primary;
+    private final KeyDataHolder standby;
+    private final List<KeyDataHolder> verificationKeys;
+    private final JwksSnapshot jwks;
+
+    private KeyRing(KeyDataHolder primary, KeyDataHolder standby, List<KeyDataHolder> verificationKeys, JwksSnapshot jwks) {
+        this.primary = primary;
+        this.standby = standby;
+        this.verificationKeys = verificationKeys;
+        this.jwks = jwks;
+    }
+
+    /**
+     * @return A ring with a single key, which is both the primary and the only verification key.
+     */
+    static KeyRing initial(KeyDataHolder primary) {
+        List<KeyDataHolder> keys = Collections.singletonList(primary);
+        return new KeyRing(primary, null, keys, serialize(keys, 1, System.currentTimeMillis()));
+    }
+
+    /**
+     * @return A ring rebuilt from stored keys.  The JWKS keeps the stored version and creation time, so clients
+     * that cached it before a restart still see the same ETag and Last-Modified.
+     */
+    static KeyRing restore(KeyDataHolder primary, KeyDataHolder standby, List<KeyDataHolder> keys, long version,
+                           long jwksCreatedAt) {
+        List<KeyDataHolder> frozen = Collections.unmodifiableList(new ArrayList<>(keys));
+        return new KeyRing(primary, standby, frozen, serialize(frozen, version, jwksCreatedAt));
+    }
+
+    /**
+     * @return The next ring, with the given key added to the verification set as the standby key.
+     */
+    KeyRing withStandby(KeyDataHolder newStandby) {
+        List<KeyDataHolder> keys = new ArrayList<>(verificationKeys);
+        keys.add(newStandby);
+        return withKeys(primary, newStandby, keys);
+    }
+
+    /**
+     * @return The next ring, with the given key as primary and no standby.  The key is added to the verification
+     * set if it is not already there (it normally is, having been the standby).  The old primary stays in the
+     * verification set until it expires.
+     */
+    KeyRing promote(KeyDataHolder newPrimary) {
+        if (verificationKeys.contains(newPrimary)) {
+            // The verification set, and so the JWKS, is unchanged
+            return new KeyRing(newPrimary, null, verificationKeys, jwks);
+        }
+        List<KeyDataHolder> keys = new ArrayList<>(verificationKeys);
+        keys.add(newPrimary);
+        return withKeys(newPrimary, null, keys);
+    }
+
+    /**
+     * @return The next ring, with the given keys removed from the verification set.  The primary and standby keys
+     * are never removed.
+     */
+    KeyRing without(Collection<KeyDataHolder> removed) {
+        List<KeyDataHolder> keys = new ArrayList<>(verificationKeys.size());
+        for (KeyDataHolder holder : verificationKeys) {
+            if (!removed.contains(holder) || holder.equals(primary) || holder.equals(standby)) {
+                keys.add(holder);
+            }
+        }
+        return (keys.size() == verificationKeys.size()) ? this : withKeys(primary, standby, keys);
+    }
+
+    private KeyRing withKeys(KeyDataHolder newPrimary, KeyDataHolder newStandby, List<KeyDataHolder> keys) {
+        List<KeyDataHolder> frozen = Collections.unmodifiableList(keys);
+        return new KeyRing(newPrimary, newStandby, frozen, serialize(frozen, jwks.getVersion() + 1, System.currentTimeMillis()));
+    }
+
+    private static JwksSnapshot serialize(List<KeyDataHolder> keys, long version, long createdAt) {
+        // Jackson ObjectMapper implementation
+        RSAKey[] rsaKeys = new RSAKey[keys.size()];
+        int index = 0;
+        for (KeyDataHolder holder : keys) {
+            rsaKeys[index++] = holder.getRsaKey();
+        }
+        Keys keySet = new Keys();
+        keySet.setKeys(rsaKeys);
+
+        try {
+            return new JwksSnapshot(JWKS_MAPPER.writeValueAsBytes(keySet),
+                    JWKS_MAPPER.writerWithDefaultPrettyPrinter().writeValueAsBytes(keySet), version, createdAt);
+        } catch (Exception e) {
+            // Serializing a few strings can't realistically fail; if it does, the key set can't be published
+            throw new IllegalStateException("Could not serialize the key set", e);
+        }
+    }
+
+    /**
+     * @return The current primary signing key, never null.
+     */
+    public KeyDataHolder getPrimary() {
+        return primary;
+    }
+
+    /**
+     * @return The key waiting to be promoted, or null if there is none.
+     */
+    public KeyDataHolder getStandby() {
+        return standby;
+    }
+
+    /**
+     * @return Every key that may be used for verification, unmodifiable.
+     */
+    public List<KeyDataHolder> getVerificationKeys() {
+        return verificationKeys;
+    }
+
+    /**
+     * @return The serialized public key set for getVerificationKeys().
+     */
+    public JwksSnapshot getJwks() {
+        return jwks;
+    }
+}
@@ -0,0 +1,222 @@
+package com.disney.aesandbox.keymgmt;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persists the key ring and the pending rotation events to a single binary file, so that a restarted process
+ * keeps signing with the same keys and publishing the same JWKS instead of generating a new key and
+ * invalidating every token already issued.
+ *
+ * The file holds, in order: a magic number and format version, the JWKS version and creation time, then for
+ * each key in the verification set its role (primary, standby or inactive), kid, alg, creation timestamp and the
+ * X.509 and PKCS#8 encodings of its public and private key, then each pending rotation event's type and due time.
+ * JWKs are rebuilt from the public keys on load.  Format 1 files, which have no JWKS creation time, are still
+ * read; their JWKS is dated from the load.
+ *
+ * Saves are atomic: the new contents are written to a temporary file in the same directory, forced to disk,
+ * and renamed over the old file, so a crash leaves either the old or the new key ring, never a partial one.
+ *
+ * DEMO ONLY: private keys are stored unencrypted.  The file is created readable by its owner only where the
+ * file system supports POSIX permissions.
+ */
+class KeyRingStore {
+
+    private static final int MAGIC = 0x414b5253; // "AKRS"
+    private static final int FORMAT_VERSION = 2;
+    // Written before the JWKS creation time was stored
+    private static final int FORMAT_VERSION_1 = 1;
+
+    private static final byte ROLE_INACTIVE = 0;
+    private static final byte ROLE_PRIMARY = 1;
+    private static final byte ROLE_STANDBY = 2;
+
+    private final Path path;
+
+    KeyRingStore(Path path) {
+        this.path = path.toAbsolutePath();
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * The contents of a store file.
+     */
+    static final class Contents {
+
+        final KeyRing ring;
+        final List<DemoOnlyTransientKeyManager.RotationEvent> events;
+
+        Contents(KeyRing ring, List<DemoOnlyTransientKeyManager.RotationEvent> events) {
+            this.ring = ring;
+            this.events = events;
+        }
+    }
+
+    /**
+     * @return The stored key ring and events, or null if there is no store file yet.
+     * @throws IOException If the file exists but can't be read or is not a valid store file
+     */
+    Contents load() throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(path + " is not a key ring store");
+            }
+            int format = in.readInt();
+            if (format != FORMAT_VERSION && format != FORMAT_VERSION_1) {
+                throw new IOException(path + " has unsupported format version " + format);
+            }
+
+            long jwksVersion = in.readLong();
+            long jwksCreatedAt = (format == FORMAT_VERSION_1) ? System.currentTimeMillis() : in.readLong();
+            int keyCount = in.readInt();
+            List<KeyDataHolder> keys = new ArrayList<>(keyCount);
+            KeyDataHolder primary = null;
+            KeyDataHolder standby = null;
+            for (int i = 0; i < keyCount; i++) {
+                byte role = in.readByte();
+                KeyDataHolder holder = readKey(in);
+                keys.add(holder);
+                if (role == ROLE_PRIMARY) {
+                    primary = holder;
+                } else if (role == ROLE_STANDBY) {
+                    standby = holder;
+                }
+            }
+            if (primary == null) {
+                throw new IOException(path + " has no primary key");
+            }
+
+            int eventCount = in.readInt();
+            List<DemoOnlyTransientKeyManager.RotationEvent> events = new ArrayList<>(eventCount);
+            for (int i = 0; i < eventCount; i++) {
+                DemoOnlyTransientKeyManager.RotationEventType type =
+                        DemoOnlyTransientKeyManager.RotationEventType.valueOf(in.readUTF());
+                events.add(new DemoOnlyTransientKeyManager.RotationEvent(type, in.readLong()));
+            }
+
+            return new Contents(KeyRing.restore(primary, standby, keys, jwksVersion, jwksCreatedAt), events);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IOException(path + " contains an unusable key or event", e);
+        }
+    }
+
+    private KeyDataHolder readKey(DataInputStream in) throws IOException, GeneralSecurityException {
+        String kid = in.readUTF();
+        SigningAlgorithm alg = SigningAlgorithm.forJwsName(in.readUTF());
+        if (alg == null) {
+            throw new IOException("Unsupported algorithm for key " + kid);
+        }
+        long timestamp = in.readLong();
+        KeyFactory fac = KeyFactory.getInstance(alg.getKeyType());
+        PublicKey pub = fac.generatePublic(new X509EncodedKeySpec(readBytes(in)));
+        PrivateKey priv = fac.generatePrivate(new PKCS8EncodedKeySpec(readBytes(in)));
+        return new KeyDataHolder(pub, priv, DemoOnlyTransientKeyManager.makeJsonKey(pub, kid, alg), timestamp);
+    }
+
+    /**
+     * Atomically replace the store file with the given key ring and events.
+     */
+    void save(KeyRing ring, List<DemoOnlyTransientKeyManager.RotationEvent> events) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(ring.getJwks().getVersion());
+            out.writeLong(ring.getJwks().getCreatedAt());
+
+            List<KeyDataHolder> keys = ring.getVerificationKeys();
+            out.writeInt(keys.size());
+            for (KeyDataHolder holder : keys) {
+                out.writeByte(holder.equals(ring.getPrimary()) ? ROLE_PRIMARY :
+                        holder.equals(ring.getStandby()) ? ROLE_STANDBY : ROLE_INACTIVE);
+                out.writeUTF(holder.getRsaKey().getKid());
+                out.writeUTF(holder.getAlgorithm().getJwsName());
+                out.writeLong(holder.getTimestamp());
+                writeBytes(out, holder.getPublicKey().getEncoded());
+                writeBytes(out, holder.getPrivateKey().getEncoded());
+            }
+
+            out.writeInt(events.size());
+            for (DemoOnlyTransientKeyManager.RotationEvent evt : events) {
+                out.writeUTF(evt.eType.name());
+                out.writeLong(evt.doAt);
+            }
+        }
+
+        Path dir = path.getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        try {
+            restrictToOwner(tmp);
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+                while (buf.hasRemaining()) {
+                    ch.write(buf);
+                }
+                ch.force(true);
+            }
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        syncDirectory(dir);
+    }
+
+    /**
+     * Move an unreadable store file aside, so that it is kept for inspection rather than overwritten.
+     *
+     * @return Where the file was moved to
+     */
+    Path quarantine() throws IOException {
+        Path aside = path.resolveSibling(path.getFileName() + ".unreadable-" + System.currentTimeMillis());
+        Files.move(path, aside);
+        return aside;
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] b = new byte[in.readInt()];
+        in.readFully(b);
+        return b;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] b) throws IOException {
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static void restrictToOwner(Path file) throws IOException {
+        try {
+            Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException uoe) {
+            // Not a POSIX file system
+        }
+    }
+
+    private static void syncDirectory(Path dir) {
+        // Makes the rename itself durable.  Directories can't be opened this way on every platform; where they
+        // can't, the rename is still atomic, just not necessarily on disk yet.
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException e) {
+            // Best effort
+        }
+    }
+}
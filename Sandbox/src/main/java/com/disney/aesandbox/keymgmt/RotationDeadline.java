@@ -0,0 +1,48 @@
+package com.disney.aesandbox.keymgmt;
+
+/**
+ * One upcoming key lifecycle step, as reported by DemoOnlyTransientKeyManager.getRotationTimeline().
+ */
+public class RotationDeadline {
+
+    public enum Type {
+        // A new standby key is introduced into the set
+        INTRO,
+        // The standby key (or a new one, if there is none) becomes the primary signing key
+        PROMOTE,
+        // An inactive key is removed from the verification set
+        EXPIRE
+    }
+
+    private final Type type;
+    private final long at;
+    private final String kid;
+
+    RotationDeadline(Type type, long at, String kid) {
+        this.type = type;
+        this.at = at;
+        this.kid = kid;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return When the step is due, in epoch milliseconds.
+     */
+    public long getAt() {
+        return at;
+    }
+
+    /**
+     * @return The key being removed, for EXPIRE; null otherwise.
+     */
+    public String getKid() {
+        return kid;
+    }
+
+    public String toString() {
+        return type + " at " + new java.util.Date(at) + (kid != null ? " (" + kid + ")" : "");
+    }
+}
@@ -0,0 +1,239 @@
+package com.disney.aesandbox.keymgmt;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+
+/**
+ * The JWS signature algorithms the sandbox can issue and verify, with the JCA names and settings behind each.
+ *
+ * - RS256: RSASSA-PKCS1-v1_5 with SHA-256, the original and default algorithm.  Any RSA key size works; the
+ *   key manager's size is set with -Daesandbox.keySize.
+ * - PS256: RSASSA-PSS with SHA-256, MGF1 with SHA-256 and a 32-byte salt, as RFC 7518 requires.  Same key
+ *   sizes and costs as RS256, but a randomized signature.
+ * - ES256: ECDSA on P-256 with SHA-256.  Signing is an order of magnitude cheaper than with RSA-4096 and the
+ *   signature is 64 bytes instead of 512, so tokens are much shorter; verification is somewhat slower than RSA.
+ *
+ * The JCA produces and expects ECDSA signatures in DER form, while JWS uses the fixed-length concatenation of R
+ * and S.  toJws() and fromJws() convert between the two, and are no-ops for the RSA algorithms.
+ */
+public enum SigningAlgorithm {
+
+    RS256("RS256", "RSA", "SHA256withRSA", 0),
+    PS256("PS256", "RSA", "RSASSA-PSS", 0),
+    ES256("ES256", "EC", "SHA256withECDSA", 32);
+
+    // Curve name for ES256 keys, in JWK ("crv") and JCA form
+    public static final String EC_CURVE = "P-256";
+    static final String EC_CURVE_JCA_NAME = "secp256r1";
+
+    private String jwsName;
+    private String keyType;
+    private String jcaName;
+    // Length in bytes of each of R and S in the JWS form of an ECDSA signature; 0 for RSA
+    private int ecFieldLength;
+
+    SigningAlgorithm(String jwsName, String keyType, String jcaName, int ecFieldLength) {
+        this.jwsName = jwsName;
+        this.keyType = keyType;
+        this.jcaName = jcaName;
+        this.ecFieldLength = ecFieldLength;
+    }
+
+    /**
+     * @return The "alg" value used in token headers and JWKs.
+     */
+    public String getJwsName() {
+        return jwsName;
+    }
+
+    /**
+     * @return The JWK "kty" value, which is also the JCA key algorithm name.
+     */
+    public String getKeyType() {
+        return keyType;
+    }
+
+    /**
+     * @return A new Signature for this algorithm, not yet initialized with a key.
+     */
+    public Signature newSignature() throws GeneralSecurityException {
+        Signature sig = Signature.getInstance(jcaName);
+        if (this == PS256) {
+            sig.setParameter(new PSSParameterSpec("SHA-256", "MGF1", MGF1ParameterSpec.SHA256, 32, 1));
+        }
+        return sig;
+    }
+
+    /**
+     * @param rsaKeySize Modulus size in bits; ignored for ES256, whose key size is fixed by the curve
+     * @return A generator initialized for keys usable with this algorithm.
+     */
+    public KeyPairGenerator newKeyPairGenerator(int rsaKeySize) throws GeneralSecurityException {
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance(keyType);
+        if (ecFieldLength > 0) {
+            kpg.initialize(new ECGenParameterSpec(EC_CURVE_JCA_NAME));
+        } else {
+            kpg.initialize(rsaKeySize);
+        }
+        return kpg;
+    }
+
+    /**
+     * Convert a signature as produced by the JCA to its JWS form.
+     */
+    public byte[] toJws(byte[] jcaSignature) throws SignatureException {
+        return (ecFieldLength > 0) ? derToConcat(jcaSignature, ecFieldLength) : jcaSignature;
+    }
+
+    /**
+     * Convert a signature in JWS form to the form the JCA expects.
+     *
+     * @throws SignatureException If the signature has the wrong length for this algorithm
+     */
+    public byte[] fromJws(byte[] jwsSignature) throws SignatureException {
+        return (ecFieldLength > 0) ? concatToDer(jwsSignature, 0, jwsSignature.length, ecFieldLength) : jwsSignature;
+    }
+
+    /**
+     * Check a signature in JWS form held in a slice of a larger buffer, against a Signature that has been
+     * initialized and given the signed data.  RSA signatures are passed to the JCA in place; ECDSA signatures
+     * still have to be converted to DER.
+     *
+     * @throws SignatureException If the signature has the wrong length for this algorithm
+     */
+    public boolean verifyJws(Signature sig, byte[] jws, int off, int len) throws SignatureException {
+        if (ecFieldLength > 0) {
+            return sig.verify(concatToDer(jws, off, len, ecFieldLength));
+        }
+        return sig.verify(jws, off, len);
+    }
+
+    /**
+     * @return The algorithm with the given "alg" name, or null if it is not supported.
+     */
+    public static SigningAlgorithm forJwsName(String jwsName) {
+        if (jwsName == null) {
+            return null;
+        }
+        switch (jwsName) {
+            case "RS256":
+                return RS256;
+            case "PS256":
+                return PS256;
+            case "ES256":
+                return ES256;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return The algorithm assumed for a key when none is given: RS256 for RSA keys, ES256 for EC keys, null
+     * for anything else.  Accepts a JCA Key algorithm or a JWK kty, which are the same for these key types.
+     */
+    public static SigningAlgorithm defaultFor(String keyType) {
+        if ("RSA".equals(keyType)) {
+            return RS256;
+        } else if ("EC".equals(keyType)) {
+            return ES256;
+        }
+        return null;
+    }
+
+    public static SigningAlgorithm defaultFor(Key key) {
+        return defaultFor(key.getAlgorithm());
+    }
+
+    /**
+     * DER SEQUENCE { INTEGER r, INTEGER s } to R || S, each left-padded to fieldLength bytes.
+     */
+    private static byte[] derToConcat(byte[] der, int fieldLength) throws SignatureException {
+        try {
+            // Sequence length is in short form for P-256, but allow the one-byte long form too
+            int offset = (der[1] == (byte) 0x81) ? 3 : 2;
+            byte[] concat = new byte[2 * fieldLength];
+            offset = copyInteger(der, offset, concat, 0, fieldLength);
+            copyInteger(der, offset, concat, fieldLength, fieldLength);
+            return concat;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new SignatureException("Malformed DER signature");
+        }
+    }
+
+    /**
+     * Copy the DER INTEGER at offset into dst, right-aligned in fieldLength bytes, and return the offset just
+     * past it.
+     */
+    private static int copyInteger(byte[] der, int offset, byte[] dst, int dstOffset, int fieldLength)
+            throws SignatureException {
+        if (der[offset] != 0x02) {
+            throw new SignatureException("Malformed DER signature");
+        }
+        int len = der[offset + 1];
+        int start = offset + 2;
+        int end = start + len;
+        // Drop the sign byte and any other leading zeros
+        while (len > 0 && der[start] == 0) {
+            start++;
+            len--;
+        }
+        if (len > fieldLength) {
+            throw new SignatureException("Signature component too long");
+        }
+        System.arraycopy(der, start, dst, dstOffset + fieldLength - len, len);
+        return end;
+    }
+
+    /**
+     * R || S to DER SEQUENCE { INTEGER r, INTEGER s }.
+     */
+    private static byte[] concatToDer(byte[] concat, int off, int len, int fieldLength) throws SignatureException {
+        if (len != 2 * fieldLength) {
+            throw new SignatureException("Expected a " + (2 * fieldLength) + "-byte signature");
+        }
+        int rStart = firstSignificant(concat, off, fieldLength);
+        int sStart = firstSignificant(concat, off + fieldLength, fieldLength);
+        int rLen = off + fieldLength - rStart;
+        int sLen = off + 2 * fieldLength - sStart;
+        // DER INTEGERs are signed: a leading 0x00 keeps a set high bit from making the value negative
+        int rPad = (concat[rStart] < 0) ? 1 : 0;
+        int sPad = (concat[sStart] < 0) ? 1 : 0;
+        int seqLen = 2 + rPad + rLen + 2 + sPad + sLen;
+
+        byte[] der = new byte[(seqLen > 127 ? 3 : 2) + seqLen];
+        int o = 0;
+        der[o++] = 0x30;
+        if (seqLen > 127) {
+            der[o++] = (byte) 0x81;
+        }
+        der[o++] = (byte) seqLen;
+        der[o++] = 0x02;
+        der[o++] = (byte) (rPad + rLen);
+        o += rPad;
+        System.arraycopy(concat, rStart, der, o, rLen);
+        o += rLen;
+        der[o++] = 0x02;
+        der[o++] = (byte) (sPad + sLen);
+        o += sPad;
+        System.arraycopy(concat, sStart, der, o, sLen);
+        return der;
+    }
+
+    /**
+     * @return The index of the first non-zero byte in the range, keeping at least one byte.
+     */
+    private static int firstSignificant(byte[] bytes, int offset, int len) {
+        int i = offset;
+        int last = offset + len - 1;
+        while (i < last && bytes[i] == 0) {
+            i++;
+        }
+        return i;
+    }
+}
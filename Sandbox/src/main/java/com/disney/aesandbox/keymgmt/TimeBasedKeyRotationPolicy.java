@@ -13,27 +13,27 @@ public class TimeBasedKeyRotationPolicy {
     private long untilPrimary;
     private long asPrimary;
     private long asInactive;
-    private long pollingInterval;
+    private long lateEventTolerance;
 
     public static final TimeBasedKeyRotationPolicy PRODUCTION =
             new TimeBasedKeyRotationPolicy(
                     TimeUnit.DAYS.toMillis(3),      // Wait this long after introduction to become primary signing key
                     TimeUnit.DAYS.toMillis(80),     // Remain as primary signing key for this long
                     TimeUnit.DAYS.toMillis(7),      // After being rotated out as primary signing key, remain as validation key this long
-                    TimeUnit.MINUTES.toMillis(10)); // Polling frequency
+                    TimeUnit.MINUTES.toMillis(1));  // Warn if a rotation event runs later than this
 
     public static final TimeBasedKeyRotationPolicy TEST =
             new TimeBasedKeyRotationPolicy(                 // See above comments for the meaning of the time
                     TimeUnit.MINUTES.toMillis(5),
                     TimeUnit.MINUTES.toMillis(25),
                     TimeUnit.MINUTES.toMillis(60),  // Abnormally long for production, okay in test
-                    TimeUnit.MINUTES.toMillis(1));
+                    TimeUnit.SECONDS.toMillis(5));
 
-    private TimeBasedKeyRotationPolicy(long untilPrimary, long asPrimary, long asInactive, long pollingInterval) {
+    private TimeBasedKeyRotationPolicy(long untilPrimary, long asPrimary, long asInactive, long lateEventTolerance) {
         this.untilPrimary = untilPrimary;
         this.asPrimary = asPrimary;
         this.asInactive = asInactive;
-        this.pollingInterval = pollingInterval;
+        this.lateEventTolerance = lateEventTolerance;
     }
 
     public long getDelayBeforePromotionToPrimary() {
@@ -48,7 +48,19 @@ public class TimeBasedKeyRotationPolicy {
         return untilPrimary + asPrimary + asInactive;
     }
 
-    public long getPollingInterval() {
-        return pollingInterval;
+    /**
+     * How long clients may cache the JWKS.  A newly introduced key is published for the standby period
+     * (getDelayBeforePromotionToPrimary) before it signs anything, so every client must refresh within that
+     * window.  A quarter of it leaves room for clients that refresh late or miss a fetch.
+     */
+    public long getMaxKeySetCacheAge() {
+        return untilPrimary / 4;
+    }
+
+    /**
+     * Rotation events run at their due time; a run that starts more than this much later is logged as a warning.
+     */
+    public long getLateEventTolerance() {
+        return lateEventTolerance;
     }
 }
@@ -5,46 +5,225 @@ import com.disney.aesandbox.objmapping.RSAKey;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.math.BigInteger;
+import java.security.AlgorithmParameters;
 import java.security.KeyFactory;
 import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
 import java.security.spec.RSAPublicKeySpec;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Data transformation class to simplify accessing public keys used for verifying signatures.
+ *
+ * Both RSA (n, e) and EC P-256 (crv, x, y) JWKs are accepted.  Each key is tied to one algorithm, its JWK alg or
+ * the default for its key type, and tokens signed with any other algorithm must be rejected.  JWKs with an
+ * unsupported kty, alg or curve are skipped, so tokens naming them are treated as having an unknown kid.
+ *
+ * An instance is a registry that can be updated in place as the key set changes, and is safe to read while
+ * another thread updates it:
+ *
+ * - update() diffs the incoming key set against the current one by kid and key material.  Keys that are
+ *   unchanged keep their existing PublicKey object, so only new or changed JWKs are decoded and run through a
+ *   KeyFactory, and anything cached per PublicKey (Signatures in TokenVerifier, VerifiedTokenCache entries)
+ *   stays valid across refreshes.
+ * - Kids missing from the incoming set are dropped.
+ * - The new kid map is built on the side and published with a single volatile write, so readers see either
+ *   the old key set or the new one, never a mix.  If any key fails to decode, nothing is published.
  */
 public class VerificationKeys {
 
-    private Map<String, PublicKey> keyMap;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private volatile Map<String, KeyEntry> entries = Collections.emptyMap();
+
+    // JSON of the last update(String), so an unchanged key set isn't even parsed.  Guarded by this.
+    private String lastJson;
+
+    private final LongAdder keysDecoded = new LongAdder();
+    private final LongAdder keysReused = new LongAdder();
+
+    /**
+     * An empty registry, to be filled by update().
+     */
+    public VerificationKeys() {
+    }
 
     public VerificationKeys(String jwksJson) throws Exception {
-        ObjectMapper mapper = new ObjectMapper();
-        Keys keySet = mapper.readValue(jwksJson, Keys.class);
-        initFromKeys(keySet);
+        update(jwksJson);
     }
 
     public VerificationKeys(Keys objectSource) throws Exception {
-        initFromKeys(objectSource);
+        update(objectSource);
     }
 
-    private void initFromKeys(Keys objectSource) throws Exception {
-        keyMap = new HashMap<>(objectSource.getKeys().length);
+    /**
+     * Replace the key set with the one in the given JWKS JSON.
+     *
+     * @return Whether the key set changed.
+     */
+    public synchronized boolean update(String jwksJson) throws Exception {
+        if (jwksJson.equals(lastJson)) {
+            return false;
+        }
+        boolean changed = update(MAPPER.readValue(jwksJson, Keys.class));
+        lastJson = jwksJson;
+        return changed;
+    }
+
+    /**
+     * Replace the key set with the given one, reusing the keys that have not changed.
+     *
+     * @return Whether the key set changed.
+     */
+    public synchronized boolean update(Keys objectSource) throws Exception {
+        Map<String, KeyEntry> current = entries;
+        Map<String, KeyEntry> next = new HashMap<>(objectSource.getKeys().length * 2);
+        boolean changed = false;
+
         for (RSAKey key : objectSource.getKeys()) {
-            keyMap.put(key.getKid(), makeKey(key.getN(), key.getE()));
+            SigningAlgorithm alg = (key.getAlg() != null) ?
+                    SigningAlgorithm.forJwsName(key.getAlg()) : SigningAlgorithm.defaultFor(key.getKty());
+            if (alg == null || !alg.getKeyType().equals(key.getKty())) {
+                continue;
+            }
+
+            String material = material(key, alg);
+            KeyEntry existing = current.get(key.getKid());
+            if (existing != null && existing.material.equals(material)) {
+                next.put(key.getKid(), existing);
+                keysReused.increment();
+                continue;
+            }
+
+            PublicKey pk = makeKey(key);
+            if (pk != null) {
+                next.put(key.getKid(), new KeyEntry(pk, alg, material));
+                keysDecoded.increment();
+                changed = true;
+            }
+        }
+
+        // Also changed if kids were dropped
+        changed |= next.size() != current.size() || !next.keySet().equals(current.keySet());
+        if (changed) {
+            entries = Collections.unmodifiableMap(next);
         }
+        lastJson = null;
+        return changed;
+    }
+
+    /**
+     * @return The key and algorithm for the kid, or null if the kid is unknown.  Use this rather than
+     * getVerificationKey() and getAlgorithm() when both are needed, since the key set may be updated between
+     * the two calls.
+     */
+    public KeyEntry getEntry(String kid) {
+        return entries.get(kid);
     }
 
     public PublicKey getVerificationKey(String kid) {
-        return keyMap.get(kid);
+        KeyEntry entry = entries.get(kid);
+        return (entry != null) ? entry.key : null;
     }
 
-    private PublicKey makeKey(String mod, String exp) throws Exception {
-        BigInteger modulus = new BigInteger(Base64.getUrlDecoder().decode(mod));
-        BigInteger publicExp = new BigInteger(Base64.getUrlDecoder().decode(exp));
-        RSAPublicKeySpec spec = new RSAPublicKeySpec(modulus, publicExp);
-        KeyFactory fac = KeyFactory.getInstance("RSA");
-        return fac.generatePublic(spec);
+    /**
+     * @return The only algorithm tokens with the given kid may be signed with, or null if the kid is unknown.
+     */
+    public SigningAlgorithm getAlgorithm(String kid) {
+        KeyEntry entry = entries.get(kid);
+        return (entry != null) ? entry.algorithm : null;
+    }
+
+    /**
+     * @return The kids currently in the key set.
+     */
+    public Set<String> getKids() {
+        return entries.keySet();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return How many JWKs have been decoded into new PublicKeys over the registry's lifetime.
+     */
+    public long getKeysDecoded() {
+        return keysDecoded.sum();
+    }
+
+    /**
+     * @return How many JWKs were unchanged on update and kept their existing PublicKey.
+     */
+    public long getKeysReused() {
+        return keysReused.sum();
+    }
+
+    /**
+     * @return The members of the JWK that determine the key, for comparing it with the one cached for its kid.
+     */
+    private static String material(RSAKey key, SigningAlgorithm alg) {
+        return alg.getJwsName() + '|' + key.getKty() + '|' + key.getN() + '|' + key.getE() + '|' +
+                key.getCrv() + '|' + key.getX() + '|' + key.getY();
+    }
+
+    /**
+     * @return The Java key for the JWK, or null if its key type or curve is not supported.
+     */
+    private PublicKey makeKey(RSAKey key) throws Exception {
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        if ("RSA".equals(key.getKty())) {
+            // JWK integers are unsigned big-endian
+            BigInteger modulus = new BigInteger(1, decoder.decode(key.getN()));
+            BigInteger publicExp = new BigInteger(1, decoder.decode(key.getE()));
+            RSAPublicKeySpec spec = new RSAPublicKeySpec(modulus, publicExp);
+            KeyFactory fac = KeyFactory.getInstance("RSA");
+            return fac.generatePublic(spec);
+        } else if ("EC".equals(key.getKty()) && SigningAlgorithm.EC_CURVE.equals(key.getCrv())) {
+            ECPoint point = new ECPoint(new BigInteger(1, decoder.decode(key.getX())),
+                    new BigInteger(1, decoder.decode(key.getY())));
+            KeyFactory fac = KeyFactory.getInstance("EC");
+            return fac.generatePublic(new ECPublicKeySpec(point, curveParameters()));
+        }
+        return null;
+    }
+
+    private static ECParameterSpec curveParameters() throws Exception {
+        AlgorithmParameters params = AlgorithmParameters.getInstance("EC");
+        params.init(new ECGenParameterSpec(SigningAlgorithm.EC_CURVE_JCA_NAME));
+        return params.getParameterSpec(ECParameterSpec.class);
+    }
+
+    /**
+     * A verification key and the algorithm tokens signed with it must use.
+     */
+    public static final class KeyEntry {
+
+        private final PublicKey key;
+        private final SigningAlgorithm algorithm;
+        // The JWK members the key was built from
+        private final String material;
+
+        KeyEntry(PublicKey key, SigningAlgorithm algorithm, String material) {
+            this.key = key;
+            this.algorithm = algorithm;
+            this.material = material;
+        }
+
+        public PublicKey getKey() {
+            return key;
+        }
+
+        public SigningAlgorithm getAlgorithm() {
+            return algorithm;
+        }
     }
 }
@@ -0,0 +1,359 @@
+package com.disney.aesandbox.loadtest;
+
+import com.disney.aesandbox.keymgmt.DemoOnlyTransientKeyManager;
+import com.disney.aesandbox.keymgmt.VerificationKeys;
+import com.disney.aesandbox.metrics.LatencyHistogram;
+import com.disney.aesandbox.objmapping.TokenClaims;
+import com.disney.aesandbox.token.DecodedToken;
+import com.disney.aesandbox.token.TokenUtils;
+import com.disney.aesandbox.token.TokenVerifier;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives the sandbox's JWKS endpoint and its token signing and verification code from many threads at once, and
+ * reports latency percentiles, throughput and errors for each.
+ *
+ * Each worker thread runs requests back to back, starting the next as soon as the last one finishes, and cycles
+ * through the operations of the mix in proportion to their weights.  The run ends after the given duration or
+ * number of requests, whichever comes first.  Latencies are recorded per worker and merged at the end, so the
+ * workers never contend on shared counters.
+ *
+ * The JWKS operations are HTTP requests to a sandbox's /jwks and /jwks/rotate, by default the one served by this
+ * process, so they need a server running at that URL.  Signing and verification run in this process, with its key
+ * manager: sign mints an activation token, verify decodes one of a pool of tokens minted before the run, through
+ * the verified-token cache as TokenUtils.decodeToClaims does, and verify-uncached checks the signature every time.
+ * The verify operations fetch the current key set before their clock starts, so only the decoding is timed.  A forced rotation can
+ * also be requested periodically, on its own thread, to see how the other operations behave while keys change.
+ */
+public class LoadGenerator {
+
+    public enum Operation {
+        JWKS("jwks"),
+        ROTATE("rotate"),
+        SIGN("sign"),
+        VERIFY("verify"),
+        VERIFY_UNCACHED("verify-uncached");
+
+        private final String name;
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public static Operation forName(String name) {
+            for (Operation op : values()) {
+                if (op.name.equalsIgnoreCase(name)) {
+                    return op;
+                }
+            }
+            throw new IllegalArgumentException("Unknown operation " + name + "; expected jwks, rotate, sign, verify or verify-uncached");
+        }
+    }
+
+    // The port this process serves on when it runs the server, unless micronaut.server.port is set
+    public static final String DEFAULT_BASE_URL = "http://localhost:8080";
+    public static final String DEFAULT_MIX = "jwks,sign,verify";
+
+    // Distinct tokens for the verify operations to cycle through
+    private static final int TOKEN_POOL_SIZE = 1000;
+
+    private static final String USER_AGENT = "aesandbox-load-generator";
+    private static final int CONNECT_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(5);
+    private static final int READ_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(10);
+
+    private final String baseUrl;
+    private final Map<Operation, Integer> mix;
+    private final Operation[] schedule;
+    private final int concurrency;
+    private final long rotateEveryMillis;
+
+    private TokenClaims claims;
+    private String[] tokens;
+
+    /**
+     * @param baseUrl URL of the sandbox to send JWKS requests to, without the /jwks path
+     * @param mix Operations to run, with their relative weights
+     * @param concurrency Number of worker threads
+     * @param rotateEveryMillis Interval between forced rotations on a separate thread, or 0 for none
+     */
+    public LoadGenerator(String baseUrl, Map<Operation, Integer> mix, int concurrency, long rotateEveryMillis) {
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("No operations to run");
+        }
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.mix = mix;
+        this.concurrency = Math.max(1, concurrency);
+        this.rotateEveryMillis = rotateEveryMillis;
+
+        List<Operation> ops = new ArrayList<>();
+        mix.forEach((op, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                ops.add(op);
+            }
+        });
+        schedule = ops.toArray(new Operation[0]);
+    }
+
+    /**
+     * @param spec Comma-separated operation names, each optionally followed by :weight, e.g. "jwks:1,verify:8"
+     */
+    public static Map<Operation, Integer> parseMix(String spec) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String part : spec.split(",")) {
+            String[] nameAndWeight = part.trim().split(":");
+            int weight = 1;
+            if (nameAndWeight.length > 1) {
+                try {
+                    weight = Integer.parseInt(nameAndWeight[1].trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid weight in " + part);
+                }
+            }
+            if (weight > 0) {
+                mix.merge(Operation.forName(nameAndWeight[0].trim()), weight, Integer::sum);
+            }
+        }
+        return mix;
+    }
+
+    /**
+     * Run the load test.  At least one of durationMillis and requests must be positive.
+     *
+     * @param durationMillis How long to run for, or 0 for no limit
+     * @param requests How many requests to make in total, across the workers, or 0 for no limit
+     * @return The report
+     * @throws Exception If the run could not be set up; failed requests are counted as errors instead
+     */
+    public LoadTestReport run(long durationMillis, long requests) throws Exception {
+        if (durationMillis <= 0 && requests <= 0) {
+            throw new IllegalArgumentException("A duration or a number of requests is required");
+        }
+        prepare();
+
+        long start = System.nanoTime();
+        long deadline = (durationMillis > 0) ? start + TimeUnit.MILLISECONDS.toNanos(durationMillis) : Long.MAX_VALUE;
+        AtomicLong remaining = new AtomicLong((requests > 0) ? requests : Long.MAX_VALUE);
+
+        Stats[] rotations = newStats();
+        ScheduledExecutorService rotator = null;
+        if (rotateEveryMillis > 0) {
+            rotator = Executors.newSingleThreadScheduledExecutor();
+            rotator.scheduleAtFixedRate(() -> execute(Operation.ROTATE, 0, rotations[Operation.ROTATE.ordinal()]),
+                    rotateEveryMillis, rotateEveryMillis, TimeUnit.MILLISECONDS);
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        List<Future<Stats[]>> futures = new ArrayList<>();
+        try {
+            for (int w = 0; w < concurrency; w++) {
+                final int worker = w;
+                futures.add(workers.submit(() -> work(worker, deadline, remaining)));
+            }
+
+            Stats[] totals = newStats();
+            for (Future<Stats[]> future : futures) {
+                merge(totals, future.get());
+            }
+            long elapsedNanos = System.nanoTime() - start;
+
+            if (rotator != null) {
+                rotator.shutdown();
+                rotator.awaitTermination(READ_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                merge(totals, rotations);
+            }
+            return report(totals, elapsedNanos);
+        } finally {
+            workers.shutdownNow();
+            if (rotator != null) {
+                rotator.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Build the inputs for signing and verifying up front, so that the run measures only the operations.
+     */
+    private void prepare() throws Exception {
+        claims = TokenClaims.newActivationClaimsFromJson();
+        long nowInSeconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        claims.setIat(nowInSeconds);
+        claims.setExp(nowInSeconds + TimeUnit.HOURS.toSeconds(1));
+
+        if (mix.containsKey(Operation.VERIFY) || mix.containsKey(Operation.VERIFY_UNCACHED)) {
+            List<TokenClaims> pool = new ArrayList<>();
+            for (int i = 0; i < TOKEN_POOL_SIZE; i++) {
+                // A different exp for each, so that every token is distinct
+                TokenClaims c = TokenClaims.newActivationClaimsFromJson();
+                c.setIat(nowInSeconds);
+                c.setExp(nowInSeconds + TimeUnit.HOURS.toSeconds(1) + i);
+                pool.add(c);
+            }
+            tokens = TokenUtils.newTokens(pool).toArray(new String[0]);
+        }
+        // Decode the in-process key set before the clock starts
+        DemoOnlyTransientKeyManager.INSTANCE.getVerificationKeys();
+    }
+
+    private Stats[] work(int worker, long deadline, AtomicLong remaining) {
+        Stats[] stats = newStats();
+        // Start each worker at a different point in the mix, so that they don't all run the same operation at once
+        int i = worker;
+        while (System.nanoTime() < deadline && remaining.getAndDecrement() > 0 && !Thread.currentThread().isInterrupted()) {
+            Operation op = schedule[i % schedule.length];
+            execute(op, i, stats[op.ordinal()]);
+            i++;
+        }
+        return stats;
+    }
+
+    private void execute(Operation op, int i, Stats stats) {
+        long t0 = System.nanoTime();
+        String error;
+        try {
+            VerificationKeys vKeys = null;
+            if (op == Operation.VERIFY || op == Operation.VERIFY_UNCACHED) {
+                // Not part of verifying; keep the key lookup out of the measurement
+                vKeys = DemoOnlyTransientKeyManager.INSTANCE.getVerificationKeys();
+                t0 = System.nanoTime();
+            }
+            error = perform(op, i, vKeys);
+        } catch (Exception e) {
+            error = e.toString();
+        }
+        stats.latency.record(System.nanoTime() - t0);
+        if (error != null) {
+            stats.errors++;
+            if (stats.firstError == null) {
+                stats.firstError = error;
+            }
+        }
+    }
+
+    /**
+     * @return null on success, otherwise a description of the failure
+     */
+    private String perform(Operation op, int i, VerificationKeys vKeys) throws Exception {
+        switch (op) {
+            case JWKS:
+                return get(baseUrl + "/jwks");
+            case ROTATE:
+                return get(baseUrl + "/jwks/rotate");
+            case SIGN:
+                return TokenUtils.newToken(claims).isEmpty() ? "Token could not be signed" : null;
+            case VERIFY:
+                return checkSignature(TokenUtils.decode(tokens[i % tokens.length], vKeys));
+            case VERIFY_UNCACHED:
+                return checkSignature(TokenVerifier.INSTANCE.decode(tokens[i % tokens.length], vKeys));
+            default:
+                throw new IllegalStateException("Unhandled operation " + op);
+        }
+    }
+
+    private static String checkSignature(DecodedToken decoded) {
+        if (decoded == null) {
+            return "Token could not be decoded";
+        }
+        return decoded.isSignatureValid() ? null : "Signature status " + decoded.getSignatureStatus();
+    }
+
+    private static String get(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        conn.setReadTimeout(READ_TIMEOUT_MILLIS);
+        conn.setRequestProperty("User-Agent", USER_AGENT);
+        int status = conn.getResponseCode();
+
+        // Read the body to the end and close it rather than disconnecting, so that the connection is kept alive
+        // for the worker's next request as a real client's would be
+        try (InputStream in = (status < 400) ? conn.getInputStream() : conn.getErrorStream()) {
+            if (in != null) {
+                byte[] buf = new byte[4096];
+                while (in.read(buf) > 0) {
+                    // Discard
+                }
+            }
+        }
+        return (status == HttpURLConnection.HTTP_OK) ? null : "HTTP " + status + " from " + url;
+    }
+
+    private static Stats[] newStats() {
+        Stats[] stats = new Stats[Operation.values().length];
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = new Stats();
+        }
+        return stats;
+    }
+
+    private static void merge(Stats[] totals, Stats[] stats) {
+        for (int i = 0; i < totals.length; i++) {
+            totals[i].latency.add(stats[i].latency);
+            totals[i].errors += stats[i].errors;
+            if (totals[i].firstError == null) {
+                totals[i].firstError = stats[i].firstError;
+            }
+        }
+    }
+
+    private LoadTestReport report(Stats[] totals, long elapsedNanos) {
+        double seconds = Math.max(elapsedNanos, 1) / 1e9;
+        long requests = 0;
+        long errors = 0;
+        Map<String, OperationReport> operations = new LinkedHashMap<>();
+        for (Operation op : Operation.values()) {
+            Stats stats = totals[op.ordinal()];
+            long count = stats.latency.getCount();
+            if (count == 0) {
+                continue;
+            }
+            OperationReport opReport = new OperationReport();
+            opReport.setRequests(count);
+            opReport.setErrors(stats.errors);
+            opReport.setRequestsPerSecond(count / seconds);
+            opReport.setFirstError(stats.firstError);
+            opReport.setLatencyMicros(stats.latency.getSummaryMicros());
+            operations.put(op.getName(), opReport);
+            requests += count;
+            errors += stats.errors;
+        }
+
+        LoadTestReport report = new LoadTestReport();
+        report.setBaseUrl(baseUrl);
+        report.setConcurrency(concurrency);
+        report.setRotateEveryMillis(rotateEveryMillis);
+        report.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        report.setRequests(requests);
+        report.setErrors(errors);
+        report.setRequestsPerSecond(requests / seconds);
+        report.setOperations(operations);
+        return report;
+    }
+
+    /**
+     * Latencies and errors of one operation, on one worker or merged.
+     */
+    private static final class Stats {
+
+        final LatencyHistogram latency = new LatencyHistogram();
+        long errors;
+        String firstError;
+    }
+}
@@ -0,0 +1,83 @@
+package com.disney.aesandbox.loadtest;
+
+import java.util.Map;
+
+/**
+ * Results of one LoadGenerator run.  requests and errors are totals over all operations, including forced
+ * rotations; operations has the breakdown by operation name, for the operations that ran.
+ */
+public class LoadTestReport {
+
+    private String baseUrl;
+    private int concurrency;
+    private long rotateEveryMillis;
+    private long elapsedMillis;
+    private long requests;
+    private long errors;
+    private double requestsPerSecond;
+    private Map<String, OperationReport> operations;
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public void setBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public long getRotateEveryMillis() {
+        return rotateEveryMillis;
+    }
+
+    public void setRotateEveryMillis(long rotateEveryMillis) {
+        this.rotateEveryMillis = rotateEveryMillis;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public void setRequests(long requests) {
+        this.requests = requests;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public void setErrors(long errors) {
+        this.errors = errors;
+    }
+
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public void setRequestsPerSecond(double requestsPerSecond) {
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    public Map<String, OperationReport> getOperations() {
+        return operations;
+    }
+
+    public void setOperations(Map<String, OperationReport> operations) {
+        this.operations = operations;
+    }
+}
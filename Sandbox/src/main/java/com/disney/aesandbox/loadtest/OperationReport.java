@@ -0,0 +1,56 @@
+package com.disney.aesandbox.loadtest;
+
+import java.util.Map;
+
+/**
+ * Results for one operation of a load test.  latencyMicros has the percentiles of the time each request took,
+ * failed requests included; firstError describes the first failure seen, if there were any.
+ */
+public class OperationReport {
+
+    private long requests;
+    private long errors;
+    private double requestsPerSecond;
+    private String firstError;
+    private Map<String, Double> latencyMicros;
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public void setRequests(long requests) {
+        this.requests = requests;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public void setErrors(long errors) {
+        this.errors = errors;
+    }
+
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public void setRequestsPerSecond(double requestsPerSecond) {
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    public String getFirstError() {
+        return firstError;
+    }
+
+    public void setFirstError(String firstError) {
+        this.firstError = firstError;
+    }
+
+    public Map<String, Double> getLatencyMicros() {
+        return latencyMicros;
+    }
+
+    public void setLatencyMicros(Map<String, Double> latencyMicros) {
+        this.latencyMicros = latencyMicros;
+    }
+}
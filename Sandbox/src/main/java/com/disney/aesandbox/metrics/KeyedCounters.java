@@ -0,0 +1,51 @@
+package com.disney.aesandbox.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters by key, e.g. by kid.  Incrementing an existing key is a lock-free map lookup and a LongAdder
+ * increment.  The number of keys is capped, since keys may come from tokens presented by callers: once the cap
+ * is reached, new keys are counted under OTHER.
+ */
+public class KeyedCounters {
+
+    public static final String OTHER = "other";
+    public static final String NONE = "none";
+
+    private static final int DEFAULT_MAX_KEYS = 256;
+
+    private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final int maxKeys;
+
+    public KeyedCounters() {
+        this(DEFAULT_MAX_KEYS);
+    }
+
+    public KeyedCounters(int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    public void increment(String key) {
+        String k = (key != null) ? key : NONE;
+        LongAdder counter = counters.get(k);
+        if (counter == null) {
+            if (counters.size() >= maxKeys) {
+                k = OTHER;
+            }
+            counter = counters.computeIfAbsent(k, x -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * @return The current counts, by key in key order.
+     */
+    public Map<String, Long> getCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        counters.forEach((k, v) -> counts.put(k, v.sum()));
+        return counts;
+    }
+}
@@ -0,0 +1,125 @@
+package com.disney.aesandbox.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size histogram of durations in nanoseconds, for reporting percentiles without keeping every sample.
+ *
+ * Values are counted in log-linear buckets, in the style of HdrHistogram: each power of two is split into
+ * SUB_BUCKETS linear buckets, so any recorded value is reported to within 1/SUB_BUCKETS (about 3%) of its
+ * true value, from nanoseconds to hours, in a few KB.  Recording is a single atomic increment and is safe from
+ * any number of threads; histograms recorded separately, e.g. one per worker thread, can be combined with add().
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Enough for any non-negative long
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketFor(value));
+        total.incrementAndGet();
+        sum.addAndGet(value);
+        long m;
+        while (value > (m = max.get()) && !max.compareAndSet(m, value)) {
+            // Retry
+        }
+    }
+
+    /**
+     * Add the counts of another histogram to this one.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = other.counts.get(i);
+            if (c != 0) {
+                counts.addAndGet(i, c);
+            }
+        }
+        total.addAndGet(other.total.get());
+        sum.addAndGet(other.sum.get());
+        long otherMax = other.max.get();
+        long m;
+        while (otherMax > (m = max.get()) && !max.compareAndSet(m, otherMax)) {
+            // Retry
+        }
+    }
+
+    public long getCount() {
+        return total.get();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    public double getMeanNanos() {
+        long n = total.get();
+        return (n == 0) ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * @param percentile 0 to 100
+     * @return The value at the given percentile, to within the histogram's precision; 0 if nothing was recorded.
+     */
+    public long getNanosAtPercentile(double percentile) {
+        long n = total.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(valueFor(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * @return p50, p90, p99, p99.9, max and mean in microseconds, in that order, for reports.
+     */
+    public Map<String, Double> getSummaryMicros() {
+        Map<String, Double> micros = new LinkedHashMap<>();
+        micros.put("p50", getNanosAtPercentile(50) / 1000.0);
+        micros.put("p90", getNanosAtPercentile(90) / 1000.0);
+        micros.put("p99", getNanosAtPercentile(99) / 1000.0);
+        micros.put("p99.9", getNanosAtPercentile(99.9) / 1000.0);
+        micros.put("max", getMaxNanos() / 1000.0);
+        micros.put("mean", getMeanNanos() / 1000.0);
+        return micros;
+    }
+
+    private static int bucketFor(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> exponent) - SUB_BUCKETS;
+        return (exponent + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return The midpoint of the values counted in the bucket.
+     */
+    private static long valueFor(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << exponent;
+        return lowest + ((1L << exponent) >>> 1);
+    }
+}
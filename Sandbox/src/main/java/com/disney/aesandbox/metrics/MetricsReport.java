@@ -0,0 +1,164 @@
+package com.disney.aesandbox.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A point-in-time set of metrics, rendered both in the Prometheus text exposition format and as a map for JSON.
+ * Metrics are added by name, each with a help line; names follow Prometheus conventions (snake case, base units,
+ * counters ending in _total).  Timers become Prometheus histograms in seconds, plus a _max gauge.
+ */
+public class MetricsReport {
+
+    public static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final StringBuilder prometheus = new StringBuilder();
+    private final Map<String, Object> json = new LinkedHashMap<>();
+
+    public MetricsReport counter(String name, String help, Number value) {
+        header(name, help, "counter");
+        sample(name, null, null, value.doubleValue());
+        json.put(name, value);
+        return this;
+    }
+
+    public MetricsReport gauge(String name, String help, Number value) {
+        header(name, help, "gauge");
+        sample(name, null, null, value.doubleValue());
+        json.put(name, value);
+        return this;
+    }
+
+    /**
+     * A counter with one label, e.g. a count per kid.
+     */
+    public MetricsReport counters(String name, String help, String label, Map<String, ? extends Number> values) {
+        return labeled(name, help, "counter", label, values);
+    }
+
+    /**
+     * A gauge with one label, e.g. a size per issuer.
+     */
+    public MetricsReport gauges(String name, String help, String label, Map<String, ? extends Number> values) {
+        return labeled(name, help, "gauge", label, values);
+    }
+
+    public MetricsReport timer(String name, String help, Timer timer) {
+        return timers(name, help, null, Collections.singletonMap(null, timer));
+    }
+
+    /**
+     * A timer with one label, e.g. a lag per event type.
+     */
+    public MetricsReport timers(String name, String help, String label, Map<String, Timer> timers) {
+        long[] bounds = Timer.getBoundsNanos();
+        Map<String, Object> values = new LinkedHashMap<>();
+
+        header(name, help, "histogram");
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            Timer timer = entry.getValue();
+            long[] counts = timer.getBucketCounts();
+            long cumulative = 0;
+            Map<String, Long> buckets = new LinkedHashMap<>();
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                String le = (i < bounds.length) ? String.valueOf(bounds[i] / NANOS_PER_SECOND) : "+Inf";
+                bucketSample(name, label, entry.getKey(), le, cumulative);
+                buckets.put(le, cumulative);
+            }
+            double sumSeconds = timer.getTotalNanos() / NANOS_PER_SECOND;
+            sample(name + "_sum", label, entry.getKey(), sumSeconds);
+            sample(name + "_count", label, entry.getKey(), cumulative);
+
+            Map<String, Object> value = new LinkedHashMap<>();
+            value.put("count", cumulative);
+            value.put("sumSeconds", sumSeconds);
+            value.put("maxSeconds", timer.getMaxNanos() / NANOS_PER_SECOND);
+            value.put("meanSeconds", (cumulative == 0) ? 0 : sumSeconds / cumulative);
+            value.put("buckets", buckets);
+            values.put(entry.getKey(), value);
+        }
+
+        header(name + "_max", "Largest value of " + name, "gauge");
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            sample(name + "_max", label, entry.getKey(), entry.getValue().getMaxNanos() / NANOS_PER_SECOND);
+        }
+
+        json.put(name, (label == null) ? values.get(null) : values);
+        return this;
+    }
+
+    public String toPrometheus() {
+        return prometheus.toString();
+    }
+
+    /**
+     * @return The metrics by name.  Unlabeled counters and gauges are numbers, labeled ones maps from label value
+     * to number, and timers have their count, sum, max, mean and cumulative bucket counts.
+     */
+    public Map<String, Object> toMap() {
+        return json;
+    }
+
+    private MetricsReport labeled(String name, String help, String type, String label, Map<String, ? extends Number> values) {
+        header(name, help, type);
+        for (Map.Entry<String, ? extends Number> entry : values.entrySet()) {
+            sample(name, label, entry.getKey(), entry.getValue().doubleValue());
+        }
+        json.put(name, new LinkedHashMap<>(values));
+        return this;
+    }
+
+    private void header(String name, String help, String type) {
+        prometheus.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        prometheus.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private void sample(String name, String label, String labelValue, double value) {
+        prometheus.append(name);
+        if (label != null) {
+            prometheus.append('{').append(label).append("=\"");
+            escape(labelValue);
+            prometheus.append("\"}");
+        }
+        prometheus.append(' ');
+        format(value);
+        prometheus.append('\n');
+    }
+
+    private void bucketSample(String name, String label, String labelValue, String le, long value) {
+        prometheus.append(name).append("_bucket{");
+        if (label != null) {
+            prometheus.append(label).append("=\"");
+            escape(labelValue);
+            prometheus.append("\",");
+        }
+        prometheus.append("le=\"").append(le).append("\"} ").append(value).append('\n');
+    }
+
+    private void format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            // Counts and sizes as integers
+            prometheus.append((long) value);
+        } else {
+            prometheus.append(value);
+        }
+    }
+
+    private void escape(String labelValue) {
+        String s = String.valueOf(labelValue);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' || c == '"') {
+                prometheus.append('\\').append(c);
+            } else if (c == '\n') {
+                prometheus.append("\\n");
+            } else {
+                prometheus.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.disney.aesandbox.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The sandbox's own instrumentation: timers and counters recorded in place by the signing, verification, JWKS
+ * and key management code, and published by the /metrics endpoint together with the sizes and counters the
+ * components already keep (see MetricsService).
+ *
+ * Everything here is recorded with LongAdders, so recording never takes a lock or contends on a single counter,
+ * however many threads sign and verify at once.
+ */
+public class SandboxMetrics {
+
+    public static final SandboxMetrics INSTANCE = new SandboxMetrics();
+
+    // Signature creation and checking only: the RSA or EC operation, not token encoding or decoding
+    private final Timer sign = new Timer();
+    private final Timer verify = new Timer();
+
+    // Tokens signed by kid, and token signatures checked by kid and result.  Tokens whose kid is not in the key
+    // set they are checked against aren't counted by kid, since their kids are whatever the caller sent.
+    private final KeyedCounters signaturesByKid = new KeyedCounters();
+    private final KeyedCounters validSignaturesByKid = new KeyedCounters();
+    private final KeyedCounters invalidSignaturesByKid = new KeyedCounters();
+    private final LongAdder unknownKids = new LongAdder();
+
+    // Tokens rejected by TokenVerifier.verify, by VerificationReason
+    private final KeyedCounters rejectionsByReason = new KeyedCounters();
+
+    // Time to build a /jwks response, and the body bytes sent
+    private final Timer jwksServe = new Timer();
+    private final LongAdder jwksBytes = new LongAdder();
+    private final LongAdder jwksNotModified = new LongAdder();
+
+    // Time to produce a new key in the key manager, usually taken from the key pair pool
+    private final Timer keyGeneration = new Timer();
+
+    // How long after its scheduled time each rotation event ran
+    private final Timer introLag = new Timer();
+    private final Timer promoteLag = new Timer();
+
+    private SandboxMetrics() {
+    }
+
+    public Timer getSign() {
+        return sign;
+    }
+
+    public Timer getVerify() {
+        return verify;
+    }
+
+    public KeyedCounters getSignaturesByKid() {
+        return signaturesByKid;
+    }
+
+    public KeyedCounters getValidSignaturesByKid() {
+        return validSignaturesByKid;
+    }
+
+    public KeyedCounters getInvalidSignaturesByKid() {
+        return invalidSignaturesByKid;
+    }
+
+    public LongAdder getUnknownKids() {
+        return unknownKids;
+    }
+
+    public KeyedCounters getRejectionsByReason() {
+        return rejectionsByReason;
+    }
+
+    public Timer getJwksServe() {
+        return jwksServe;
+    }
+
+    public LongAdder getJwksBytes() {
+        return jwksBytes;
+    }
+
+    public LongAdder getJwksNotModified() {
+        return jwksNotModified;
+    }
+
+    public Timer getKeyGeneration() {
+        return keyGeneration;
+    }
+
+    public Timer getIntroLag() {
+        return introLag;
+    }
+
+    public Timer getPromoteLag() {
+        return promoteLag;
+    }
+}
@@ -0,0 +1,96 @@
+package com.disney.aesandbox.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts durations into fixed buckets, for export as a Prometheus histogram, along with their sum and maximum.
+ *
+ * Made for always-on instrumentation of hot paths: recording is a bucket search over a few longs and two
+ * LongAdder increments, which stripe themselves across cells under contention, so concurrent callers don't
+ * serialize on a shared counter.  The maximum only needs a compare-and-set when a new maximum is seen.  For
+ * percentiles of a bounded run, e.g. a load test, use LatencyHistogram instead.
+ */
+public class Timer {
+
+    /**
+     * Upper bounds of the buckets, in nanoseconds, from 10us to 60s; larger values are only counted in the total.
+     */
+    private static final long[] BOUNDS_NANOS = {
+            TimeUnit.MICROSECONDS.toNanos(10), TimeUnit.MICROSECONDS.toNanos(25), TimeUnit.MICROSECONDS.toNanos(50),
+            TimeUnit.MICROSECONDS.toNanos(100), TimeUnit.MICROSECONDS.toNanos(250), TimeUnit.MICROSECONDS.toNanos(500),
+            TimeUnit.MILLISECONDS.toNanos(1), 2_500_000L, TimeUnit.MILLISECONDS.toNanos(5),
+            TimeUnit.MILLISECONDS.toNanos(10), TimeUnit.MILLISECONDS.toNanos(25), TimeUnit.MILLISECONDS.toNanos(50),
+            TimeUnit.MILLISECONDS.toNanos(100), TimeUnit.MILLISECONDS.toNanos(250), TimeUnit.MILLISECONDS.toNanos(500),
+            TimeUnit.SECONDS.toNanos(1), 2_500_000_000L, TimeUnit.SECONDS.toNanos(5),
+            TimeUnit.SECONDS.toNanos(10), TimeUnit.SECONDS.toNanos(30), TimeUnit.SECONDS.toNanos(60)
+    };
+
+    // One more than the bounds, for values above the largest
+    private final LongAdder[] buckets = new LongAdder[BOUNDS_NANOS.length + 1];
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public Timer() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        int i = 0;
+        while (i < BOUNDS_NANOS.length && value > BOUNDS_NANOS[i]) {
+            i++;
+        }
+        buckets[i].increment();
+        totalNanos.add(value);
+        long m;
+        while (value > (m = maxNanos.get()) && !maxNanos.compareAndSet(m, value)) {
+            // Retry
+        }
+    }
+
+    /**
+     * Record the time since startNanos, a System.nanoTime() value.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * @return The bucket upper bounds in nanoseconds.  There is one more count than bounds in getBucketCounts().
+     */
+    public static long[] getBoundsNanos() {
+        return BOUNDS_NANOS.clone();
+    }
+
+    /**
+     * @return The count of each bucket (not cumulative), the last being values above the largest bound.  Read
+     * while other threads record, the counts may be a few recordings apart from each other and from the sum.
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+}
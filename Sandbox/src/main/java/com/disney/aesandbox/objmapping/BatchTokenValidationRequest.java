@@ -0,0 +1,36 @@
+package com.disney.aesandbox.objmapping;
+
+/**
+ * Request body for validating many tokens of the same type against one key set.  If jwksUrl is not set, the
+ * in-process key set is used.
+ */
+public class BatchTokenValidationRequest {
+
+    private String[] tokens;
+    private TokenType type;
+    private String jwksUrl;
+
+    public String[] getTokens() {
+        return tokens;
+    }
+
+    public void setTokens(String[] tokens) {
+        this.tokens = tokens;
+    }
+
+    public TokenType getType() {
+        return type;
+    }
+
+    public void setType(TokenType type) {
+        this.type = type;
+    }
+
+    public String getJwksUrl() {
+        return jwksUrl;
+    }
+
+    public void setJwksUrl(String jwksUrl) {
+        this.jwksUrl = jwksUrl;
+    }
+}
@@ -0,0 +1,17 @@
+package com.disney.aesandbox.objmapping;
+
+/**
+ * Machine-readable reasons a set of claims fails validation.
+ */
+public enum ClaimErrorCode {
+
+    AUD_MISSING,
+    AUD_TOO_FEW,
+    AUD_NOT_INCLUDED,
+    PRODUCTS_MISSING,
+    PROVIDER_MISSING,
+    ISS_MISSING,
+    IAT_IN_FUTURE,
+    EXP_BEFORE_IAT,
+    SUB_MISSING
+}
@@ -0,0 +1,143 @@
+package com.disney.aesandbox.objmapping;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks token claims against the rules for one token type and returns a ValidationResult.  There is no I/O:
+ * callers decide how to report the result (TokenClaims.validateClaims(Console, ...) prints it, the web
+ * endpoints return it as JSON).
+ *
+ * There is one validator per TokenType, shared: get it with forType().  Instances are immutable and
+ * thread-safe.  The expected audience is turned into a set once, at construction, and the current time is read
+ * once per validate() call.
+ */
+public final class ClaimsValidator {
+
+    private static final Map<TokenType, ClaimsValidator> BY_TYPE = new EnumMap<>(TokenType.class);
+
+    static {
+        for (TokenType type : TokenType.values()) {
+            BY_TYPE.put(type, new ClaimsValidator(type.getExpectedAud(), type.isActivation()));
+        }
+    }
+
+    private final Set<String> expectedAud;
+    private final boolean isActivation;
+
+    /**
+     * @param expectedAud The audience values a token must contain
+     * @param isActivation true if the activation-only claims (products, sub) are required
+     */
+    private ClaimsValidator(String[] expectedAud, boolean isActivation) {
+        this.expectedAud = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(expectedAud)));
+        this.isActivation = isActivation;
+    }
+
+    /**
+     * @return The shared validator for a token type.
+     */
+    public static ClaimsValidator forType(TokenType type) {
+        return BY_TYPE.get(type);
+    }
+
+    public ValidationResult validate(TokenClaims claims) {
+        return validate(claims, System.currentTimeMillis());
+    }
+
+    /**
+     * @param claims The claims to check
+     * @param nowMillis The time to check iat against
+     */
+    public ValidationResult validate(TokenClaims claims, long nowMillis) {
+
+        // Allocated only once a check fails; valid claims return the shared VALID result
+        List<ValidationResult.ClaimError> errors = null;
+
+        errors = checkAud(claims.getAud(), errors);
+
+        if (isActivation && claims.getProducts() == null) {
+            errors = add(errors, ClaimErrorCode.PRODUCTS_MISSING, "Missing \"products\" claim in token");
+        }
+
+        if (claims.getProvider() == null) {
+            errors = add(errors, ClaimErrorCode.PROVIDER_MISSING, "Missing \"provider\" claim in token");
+        }
+
+        if (claims.getIss() == null) {
+            errors = add(errors, ClaimErrorCode.ISS_MISSING, "Missing \"iss\" claim in token");
+        }
+
+        long iatMillis = claims.getIat() * 1000;
+        if (nowMillis < iatMillis) {
+            errors = add(errors, ClaimErrorCode.IAT_IN_FUTURE, "\"iat\" claim must be a date earlier than the current time");
+        }
+
+        if (claims.getExp() * 1000 < iatMillis) {
+            errors = add(errors, ClaimErrorCode.EXP_BEFORE_IAT,
+                    "\"exp\" claim must be a date later than the date indicated by the \"iat\" claim");
+        }
+
+        if (isActivation && claims.getSub() == null) {
+            errors = add(errors, ClaimErrorCode.SUB_MISSING, "Missing \"sub\" claim in token");
+        }
+
+        return (errors == null) ? ValidationResult.VALID : ValidationResult.of(errors);
+    }
+
+    private List<ValidationResult.ClaimError> checkAud(String[] aud, List<ValidationResult.ClaimError> errors) {
+        if (aud == null || aud.length == 0) {
+            return add(errors, ClaimErrorCode.AUD_MISSING, "Missing \"aud\" claim in token");
+        }
+
+        if (aud.length < expectedAud.size()) {
+            return add(errors, ClaimErrorCode.AUD_TOO_FEW,
+                    "\"aud\" claims found, but the number of claims in the array is less than the expected number.  " +
+                    expectedAud.size() + " \"aud\" claims were expected");
+        }
+
+        // One pass over the token's audience, counting distinct expected values seen
+        int found = 0;
+        for (int i = 0; i < aud.length; i++) {
+            if (expectedAud.contains(aud[i]) && !seenEarlier(aud, i)) {
+                found++;
+            }
+        }
+
+        if (found < expectedAud.size()) {
+            // Only on failure: work out which values are missing, for the messages
+            Set<String> present = new LinkedHashSet<>(Arrays.asList(aud));
+            for (String expected : expectedAud) {
+                if (!present.contains(expected)) {
+                    errors = add(errors, ClaimErrorCode.AUD_NOT_INCLUDED, "Error: \"aud\" claims do not include " + expected + ".");
+                }
+            }
+        }
+
+        return errors;
+    }
+
+    private static boolean seenEarlier(String[] values, int index) {
+        for (int i = 0; i < index; i++) {
+            if (values[i].equals(values[index])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<ValidationResult.ClaimError> add(List<ValidationResult.ClaimError> errors,
+                                                         ClaimErrorCode code, String message) {
+        if (errors == null) {
+            errors = new ArrayList<>(4);
+        }
+        errors.add(new ValidationResult.ClaimError(code, message));
+        return errors;
+    }
+}
@@ -1,10 +1,20 @@
 package com.disney.aesandbox.objmapping;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A JWK as published in a JWKS.  Despite the name this also holds EC keys (kty "EC"): RSA keys carry n and e,
+ * EC keys carry crv, x and y.  Members that don't apply to the key type are left null and omitted from the JSON.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class RSAKey {
 
     private String kty;
     private String n;
     private String e;
+    private String crv;
+    private String x;
+    private String y;
     private String alg;
     private String kid;
 
@@ -37,6 +47,30 @@ public class RSAKey {
         this.e = e;
     }
 
+    public String getCrv() {
+        return crv;
+    }
+
+    public void setCrv(String crv) {
+        this.crv = crv;
+    }
+
+    public String getX() {
+        return x;
+    }
+
+    public void setX(String x) {
+        this.x = x;
+    }
+
+    public String getY() {
+        return y;
+    }
+
+    public void setY(String y) {
+        this.y = y;
+    }
+
     public String getAlg() {
         return alg;
     }
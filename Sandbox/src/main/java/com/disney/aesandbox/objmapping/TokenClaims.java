@@ -1,24 +1,42 @@
 package com.disney.aesandbox.objmapping;
 
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 import java.io.Console;
 import java.io.File;
 import java.io.FileReader;
 import java.io.LineNumberReader;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class TokenClaims {
 
+    // Shared and thread-safe, rather than an ObjectMapper per call
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectReader READER = MAPPER.readerFor(TokenClaims.class);
+    private static final ObjectWriter WRITER = MAPPER.writerFor(TokenClaims.class);
+
     private Map<String, String> address;
+    // A single string is read as a one-element array; RFC 7519 allows it for aud
+    @JsonFormat(with = JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY)
     private String[] aud;
     private long exp;
     private long iat;
     private String iss;
+    @JsonFormat(with = JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY)
     private String[] products;
     private String provider;
     private String sub;
+    // Claims without a field above, e.g. from other issuers, kept so they survive decoding and re-encoding
+    private Map<String, Object> otherClaims;
 
     public static TokenClaims newActivationClaimsFromJson() {
         return newFromJson(getDefaultActivationJson());
@@ -41,8 +59,7 @@ public class TokenClaims {
         TokenClaims result = null;
 
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            result = mapper.readValue(json, TokenClaims.class);
+            result = READER.readValue(json);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -91,144 +108,19 @@ public class TokenClaims {
         return result;
     }
 
-    public boolean validateClaims(Console cons, String[] expectedAud, boolean isActivation) {
-
-        boolean isValid = true;
-
-        // Validate aud
-        Object aud = getAud();
-        if (aud != null) {
-            if (aud instanceof String[]) {
-                String[] audArray = (String[]) aud;
-                if (audArray.length > 0) {
-                    if (audArray.length >= expectedAud.length) {
-                        for (String expectedAudStr : expectedAud) {
-                            boolean foundAud = false;
-                            for (String audStr : audArray) {
-                                if (audStr.equals(expectedAudStr)) {
-                                    foundAud = true;
-                                }
-                            }
-
-                            if (!foundAud) {
-                                cons.writer().println("Error: \"aud\" claims do not include " + expectedAudStr + ".");
-                                isValid = false;
-                            }
-                        }
-                    } else {
-                        cons.writer().println("\"aud\" claims found, but the number of claims in the array is less than the expected number.");
-                        cons.writer().println("  " + expectedAud.length + " \"aud\" claims were expected");
-                        isValid = false;
-                    }
-                }
-            } else if (aud instanceof String) {
-                if (expectedAud.length == 1) {
-                    String audStr = (String) aud;
-                    if (!audStr.equals(expectedAud[0])) {
-                        cons.writer().println("Error: \"aud\" claims do not include " + expectedAud[0] + ".");
-                        isValid = false;
-                    }
-                } else {
-                    cons.writer().println("Expected " + expectedAud.length + " \"aud\" claims, but found 1.");
-                    isValid = false;
-                }
-            }
-        } else {
-            cons.writer().println("Missing \"aud\" claim in token");
-            isValid = false;
-        }
-
-        // Validate products
-        if (isActivation) {
-            Object products = getProducts();
-            if (products != null) {
-                if (! (products instanceof String[])) {
-                    cons.writer().println("\"products\" claims found, but the value must be a String array type");
-                    isValid = false;
-                }
-            } else {
-                cons.writer().println("Missing \"products\" claim in token");
-                isValid = false;
-            }
-        }
-
-        // Validate provider
-        Object provider = getProvider();
-        if (provider != null) {
-            if (!(provider instanceof String)) {
-                cons.writer().println("\"provider\" claims found, but the value must be a String type");
-                isValid = false;
-            }
-        } else {
-            cons.writer().println("Missing \"provider\" claim in token");
-            isValid = false;
-        }
-
-        // Validate issuer (iss)
-        Object iss = getIss();
-        if (iss != null) {
-            if (!(iss instanceof String)) {
-                cons.writer().println("\"iss\" claims found, but the value must be a String type");
-                isValid = false;
-            }
-        } else {
-            cons.writer().println("Missing \"iss\" claim in token");
-            isValid = false;
-        }
-
-        // Validate iat
-        Object iat = getIat();
-        long iatAsLong = Long.MIN_VALUE;
-        if (iat != null) {
-            if (iat instanceof Long) {
-                iatAsLong = ((Long) iat).longValue() * 1000;
-                long now = System.currentTimeMillis();
-                if (now < iatAsLong) {
-                    cons.writer().println("\"iat\" claim must be a date earlier than the current time");
-                    isValid = false;
-                }
-            } else {
-                cons.writer().println("\"iat\" claim is not a Long value");
-                isValid = false;
-            }
-        } else {
-            cons.writer().println("Missing \"iat\" claim in token");
-            isValid = false;
-        }
-
-        // Validate exp
-        Object exp = getExp();
-        if (exp != null) {
-            if (exp instanceof Long) {
-                long expAsLong = ((Long) exp).longValue() * 1000;
-                if (expAsLong < iatAsLong) {
-                    cons.writer().println("\"exp\" claim must be a date later than the date indicated by the \"iat\" claim");
-                    isValid = false;
-                }
-            } else {
-                cons.writer().println("\"exp\" claim is not a Long value");
-                isValid = false;
-            }
-        } else {
-            cons.writer().println("Missing \"exp\" claim in token");
-            isValid = false;
+    /**
+     * Validate the claims and print any errors to the console.  The rules themselves are in ClaimsValidator,
+     * which can be used directly where there is no console.
+     *
+     * @param type The kind of token the claims must be valid for
+     * @return true if the claims are valid
+     */
+    public boolean validateClaims(Console cons, TokenType type) {
+        ValidationResult result = ClaimsValidator.forType(type).validate(this);
+        for (ValidationResult.ClaimError error : result.getErrors()) {
+            cons.writer().println(error.getMessage());
         }
-
-        // Validate sub
-        if (isActivation) {
-            Object sub = getSub();
-            if (sub != null) {
-                if (!(sub instanceof String)) {
-                    cons.writer().println("\"sub\" claims found, but the value must be a String type");
-                    isValid = false;
-                }
-            } else {
-                cons.writer().println("Missing \"sub\" claim in token");
-                isValid = false;
-            }
-        }
-
-        return isValid;
+        return result.isValid();
     }
 
     public Map<String, String> getAddress() {
@@ -295,8 +187,71 @@ public class TokenClaims {
         this.sub = sub;
     }
 
+    /**
+     * @return The claims that have no field of their own, by name, or null if there are none.
+     */
+    @JsonAnyGetter
+    public Map<String, Object> getOtherClaims() {
+        return otherClaims;
+    }
+
+    @JsonAnySetter
+    public void setOtherClaim(String name, Object value) {
+        if (otherClaims == null) {
+            otherClaims = new LinkedHashMap<>();
+        }
+        otherClaims.put(name, value);
+    }
+
+    /**
+     * @return A copy that can be changed without affecting these claims.  Arrays, the address and the values of
+     * other claims are copied too.
+     */
+    public TokenClaims copy() {
+        TokenClaims copy = new TokenClaims();
+        copy.address = (address == null) ? null : new LinkedHashMap<>(address);
+        copy.aud = (aud == null) ? null : aud.clone();
+        copy.exp = exp;
+        copy.iat = iat;
+        copy.iss = iss;
+        copy.products = (products == null) ? null : products.clone();
+        copy.provider = provider;
+        copy.sub = sub;
+        if (otherClaims != null) {
+            for (Map.Entry<String, Object> claim : otherClaims.entrySet()) {
+                copy.setOtherClaim(claim.getKey(), copyValue(claim.getValue()));
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Deep copy of a claim value as Jackson binds it: objects are Maps and arrays are Lists; everything else is
+     * immutable.
+     */
+    private static Object copyValue(Object value) {
+        if (value instanceof Map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(entry.getKey(), copyValue(entry.getValue()));
+            }
+            return copy;
+        }
+        if (value instanceof List) {
+            List<Object> copy = new ArrayList<>();
+            for (Object element : (List<?>) value) {
+                copy.add(copyValue(element));
+            }
+            return copy;
+        }
+        return value;
+    }
+
     public Map<String, Object> toMap() {
         Map result = new HashMap();
+        if (otherClaims != null) {
+            result.putAll(otherClaims);
+        }
         result.put("aud", getAud());
         result.put("address", getAddress());
         result.put("exp", getExp());
@@ -311,9 +266,8 @@ public class TokenClaims {
 
     public String toString() {
         // JSON
-        ObjectMapper mapper = new ObjectMapper();
         try {
-            return mapper.writeValueAsString(this);
+            return WRITER.writeValueAsString(this);
         } catch (Exception e) {
             throw new IllegalStateException(e.getMessage(), e);
         }
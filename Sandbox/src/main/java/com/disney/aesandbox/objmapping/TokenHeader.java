@@ -24,4 +24,14 @@ public class TokenHeader {
     public void setKid(String kid) {
         this.kid = kid;
     }
+
+    /**
+     * @return A copy that can be changed without affecting this header.
+     */
+    public TokenHeader copy() {
+        TokenHeader copy = new TokenHeader();
+        copy.alg = alg;
+        copy.kid = kid;
+        return copy;
+    }
 }
@@ -0,0 +1,27 @@
+package com.disney.aesandbox.objmapping;
+
+/**
+ * The kinds of token the sandbox issues and validates, with the audience each must carry.
+ */
+public enum TokenType {
+
+    ACTIVATION(new String[] { "activation.disneyplus.com" }, true),
+    GET_ENTITLEMENT(new String[] { "get.entitlement.disneyplus.com" }, false),
+    SET_ENTITLEMENT(new String[] { "set.entitlement.disneyplus.com" }, false);
+
+    private String[] expectedAud;
+    private boolean activation;
+
+    TokenType(String[] expectedAud, boolean activation) {
+        this.expectedAud = expectedAud;
+        this.activation = activation;
+    }
+
+    public String[] getExpectedAud() {
+        return expectedAud.clone();
+    }
+
+    public boolean isActivation() {
+        return activation;
+    }
+}
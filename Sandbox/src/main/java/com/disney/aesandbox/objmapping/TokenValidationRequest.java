@@ -0,0 +1,35 @@
+package com.disney.aesandbox.objmapping;
+
+/**
+ * Request body for validating a single token.  If jwksUrl is not set, the in-process key set is used.
+ */
+public class TokenValidationRequest {
+
+    private String token;
+    private TokenType type;
+    private String jwksUrl;
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public TokenType getType() {
+        return type;
+    }
+
+    public void setType(TokenType type) {
+        this.type = type;
+    }
+
+    public String getJwksUrl() {
+        return jwksUrl;
+    }
+
+    public void setJwksUrl(String jwksUrl) {
+        this.jwksUrl = jwksUrl;
+    }
+}
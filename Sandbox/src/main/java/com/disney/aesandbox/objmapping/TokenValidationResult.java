@@ -0,0 +1,56 @@
+package com.disney.aesandbox.objmapping;
+
+import java.util.List;
+
+/**
+ * The result of validating one token: the signature status (MALFORMED if the token could not be decoded), the
+ * kid from the header, one code and message per failed claim check, and the decoded claims.
+ */
+public class TokenValidationResult {
+
+    private boolean valid;
+    private String signature;
+    private String kid;
+    private List<ValidationResult.ClaimError> errors;
+    private TokenClaims claims;
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    public void setValid(boolean valid) {
+        this.valid = valid;
+    }
+
+    public String getSignature() {
+        return signature;
+    }
+
+    public void setSignature(String signature) {
+        this.signature = signature;
+    }
+
+    public String getKid() {
+        return kid;
+    }
+
+    public void setKid(String kid) {
+        this.kid = kid;
+    }
+
+    public List<ValidationResult.ClaimError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<ValidationResult.ClaimError> errors) {
+        this.errors = errors;
+    }
+
+    public TokenClaims getClaims() {
+        return claims;
+    }
+
+    public void setClaims(TokenClaims claims) {
+        this.claims = claims;
+    }
+}
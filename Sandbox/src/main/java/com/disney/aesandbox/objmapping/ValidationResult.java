@@ -0,0 +1,67 @@
+package com.disney.aesandbox.objmapping;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable outcome of ClaimsValidator.validate: the failed checks, each with a code and a human-readable
+ * message.  An empty result means the claims are valid.
+ */
+public final class ValidationResult {
+
+    public static final ValidationResult VALID = new ValidationResult(Collections.<ClaimError>emptyList());
+
+    private final List<ClaimError> errors;
+
+    private ValidationResult(List<ClaimError> errors) {
+        this.errors = errors;
+    }
+
+    static ValidationResult of(List<ClaimError> errors) {
+        return errors.isEmpty() ? VALID : new ValidationResult(Collections.unmodifiableList(new ArrayList<>(errors)));
+    }
+
+    public boolean isValid() {
+        return errors.isEmpty();
+    }
+
+    public List<ClaimError> getErrors() {
+        return errors;
+    }
+
+    public boolean hasError(ClaimErrorCode code) {
+        for (ClaimError error : errors) {
+            if (error.getCode() == code) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * One failed check.
+     */
+    public static final class ClaimError {
+
+        private final ClaimErrorCode code;
+        private final String message;
+
+        ClaimError(ClaimErrorCode code, String message) {
+            this.code = code;
+            this.message = message;
+        }
+
+        public ClaimErrorCode getCode() {
+            return code;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public String toString() {
+            return code + ": " + message;
+        }
+    }
+}
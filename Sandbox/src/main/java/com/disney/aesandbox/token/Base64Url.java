@@ -0,0 +1,126 @@
+package com.disney.aesandbox.token;
+
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Unpadded URL-safe Base64 encoding (RFC 4648 section 5, as required by RFC 7515 for JWS segments) written
+ * straight into a ReusableBuffer, and decoding from a slice of a byte array into one.  java.util.Base64 only
+ * works on whole arrays or Strings and returns new arrays, which costs two allocations per segment.
+ */
+final class Base64Url {
+
+    private static final byte[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".getBytes(US_ASCII);
+
+    // Value of each URL-safe Base64 character, -1 for anything else
+    private static final byte[] DECODE = new byte[128];
+
+    static {
+        Arrays.fill(DECODE, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DECODE[ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    private Base64Url() {
+    }
+
+    /**
+     * @return The number of characters needed to encode len bytes, without padding.
+     */
+    static int encodedLength(int len) {
+        return (len / 3) * 4 + ((len % 3 == 0) ? 0 : (len % 3) + 1);
+    }
+
+    /**
+     * Append the encoding of src[off, off+len) to dst.
+     */
+    static void encode(byte[] src, int off, int len, ReusableBuffer dst) {
+        int encLen = encodedLength(len);
+        dst.ensureCapacity(dst.size() + encLen);
+        byte[] out = dst.array();
+        int o = dst.size();
+        int end = off + len - (len % 3);
+        int i = off;
+        while (i < end) {
+            int bits = (src[i++] & 0xff) << 16 | (src[i++] & 0xff) << 8 | (src[i++] & 0xff);
+            out[o++] = ALPHABET[(bits >>> 18) & 0x3f];
+            out[o++] = ALPHABET[(bits >>> 12) & 0x3f];
+            out[o++] = ALPHABET[(bits >>> 6) & 0x3f];
+            out[o++] = ALPHABET[bits & 0x3f];
+        }
+        int remaining = off + len - end;
+        if (remaining == 1) {
+            int b0 = src[i] & 0xff;
+            out[o++] = ALPHABET[b0 >> 2];
+            out[o++] = ALPHABET[(b0 << 4) & 0x3f];
+        } else if (remaining == 2) {
+            int b0 = src[i] & 0xff;
+            int b1 = src[i + 1] & 0xff;
+            out[o++] = ALPHABET[b0 >> 2];
+            out[o++] = ALPHABET[(b0 << 4) & 0x3f | (b1 >> 4)];
+            out[o++] = ALPHABET[(b1 << 2) & 0x3f];
+        }
+        dst.advance(encLen);
+    }
+
+    /**
+     * @return Whether c is one of the 64 URL-safe Base64 characters.
+     */
+    static boolean isAlphabet(int c) {
+        return c < 128 && c >= 0 && DECODE[c] >= 0;
+    }
+
+    /**
+     * Append the decoding of src[off, off+len) to dst.  Trailing '=' padding is accepted and ignored, as
+     * java.util.Base64 does, although JWS segments should have none.
+     *
+     * @throws IllegalArgumentException If the input contains anything but URL-safe Base64 characters, or has an
+     * impossible length
+     */
+    static void decode(byte[] src, int off, int len, ReusableBuffer dst) {
+        int end = off + len;
+        int pad = 0;
+        while (end > off && src[end - 1] == '=' && pad < 2) {
+            end--;
+            pad++;
+        }
+        int n = end - off;
+        if (n % 4 == 1 || (pad > 0 && (n + pad) % 4 != 0)) {
+            throw new IllegalArgumentException("Invalid Base64 length");
+        }
+
+        int decLen = (n / 4) * 3 + ((n % 4 == 0) ? 0 : (n % 4) - 1);
+        dst.ensureCapacity(dst.size() + decLen);
+        byte[] out = dst.array();
+        int o = dst.size();
+        int whole = off + (n - n % 4);
+        int i = off;
+        while (i < whole) {
+            int bits = value(src[i++]) << 18 | value(src[i++]) << 12 | value(src[i++]) << 6 | value(src[i++]);
+            out[o++] = (byte) (bits >> 16);
+            out[o++] = (byte) (bits >> 8);
+            out[o++] = (byte) bits;
+        }
+        int remaining = end - whole;
+        if (remaining == 2) {
+            int bits = value(src[i]) << 18 | value(src[i + 1]) << 12;
+            out[o++] = (byte) (bits >> 16);
+        } else if (remaining == 3) {
+            int bits = value(src[i]) << 18 | value(src[i + 1]) << 12 | value(src[i + 2]) << 6;
+            out[o++] = (byte) (bits >> 16);
+            out[o++] = (byte) (bits >> 8);
+        }
+        dst.advance(decLen);
+    }
+
+    private static int value(byte c) {
+        int v = (c >= 0) ? DECODE[c] : -1;
+        if (v < 0) {
+            throw new IllegalArgumentException("Invalid Base64 character " + (char) (c & 0xff));
+        }
+        return v;
+    }
+}
@@ -0,0 +1,80 @@
+package com.disney.aesandbox.token;
+
+import com.disney.aesandbox.keymgmt.KeyDataHolder;
+import com.disney.aesandbox.objmapping.TokenClaims;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Signs a batch of claims in parallel on a ForkJoinPool.  The batch is split by index range until ranges are
+ * small enough to sign sequentially, and each token is written into its input slot, so results come back in
+ * input order.
+ *
+ * The signing key is passed in rather than looked up per token: the caller captures the primary key once, so
+ * every token in a batch carries the same kid even if a rotation happens while the batch is running.
+ */
+public class BatchTokenMinter {
+
+    // RSA signing dominates the cost of each token, so small leaves still amortize the fork overhead
+    private static final int SEQUENTIAL_THRESHOLD = 8;
+
+    private final ForkJoinPool pool;
+
+    public BatchTokenMinter(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @param claims The claims to sign, one token per entry
+     * @param holder The signing key used for every token in the batch
+     * @return The signed tokens in input order.  As with TokenUtils.newToken, an entry that could not be
+     * signed is the empty string.
+     */
+    public List<String> mint(List<TokenClaims> claims, KeyDataHolder holder) {
+        String[] tokens = new String[claims.size()];
+        if (tokens.length > 0) {
+            pool.invoke(new MintRange(claims, holder, tokens, 0, tokens.length));
+        }
+        return Arrays.asList(tokens);
+    }
+
+    // Never serialized; ForkJoinTask is Serializable only by inheritance
+    @SuppressWarnings("serial")
+    private static class MintRange extends RecursiveAction {
+
+        private final List<TokenClaims> claims;
+        private final KeyDataHolder holder;
+        private final String[] tokens;
+        private final int from;
+        private final int to;
+
+        MintRange(List<TokenClaims> claims, KeyDataHolder holder, String[] tokens, int from, int to) {
+            this.claims = claims;
+            this.holder = holder;
+            this.tokens = tokens;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    try {
+                        tokens[i] = TokenSigner.INSTANCE.newToken(claims.get(i), holder);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        tokens[i] = "";
+                    }
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new MintRange(claims, holder, tokens, from, mid),
+                        new MintRange(claims, holder, tokens, mid, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package com.disney.aesandbox.token;
+
+import com.disney.aesandbox.objmapping.TokenClaims;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Read-only view of a token's claims, backed by the claims JSON exactly as it was in the token.  Nothing is
+ * bound to TokenClaims unless toClaims() is called.  Instead the claims are scanned only as far as the claim
+ * asked for, recording where the value of each claim passed starts and ends, and that value alone is decoded
+ * and cached.  Later claims continue the scan where it stopped and claims already passed are read straight from
+ * their position, so the JSON is scanned at most once.  Deciding where to route a token or whether it has
+ * expired therefore costs a partial scan of a few hundred bytes instead of a reflective bind of every claim.
+ *
+ * The scan is a Jackson streaming parser, paused between calls and closed once it reaches the end, which skips
+ * the values it passes with skipChildren().  It checks everything it passes as strictly as binding would:
+ * literals, numbers, strings and their escapes, nesting, and that nothing follows the object.  A claim that
+ * appears twice makes the claims malformed, since which of the two counts is ambiguous.  Once the claims are
+ * found to be malformed, every later call that needs the scan throws the same error.
+ *
+ * Claims TokenClaims has no field for are kept: they are in getClaimNames(), readable with get(), and part of
+ * toJson().
+ *
+ * Instances are thread-safe and may be shared, e.g. through the verified-token cache, so the arrays and
+ * TokenClaims it returns are copies.
+ */
+public final class ClaimsView {
+
+    // Cached marker for a claim that is absent or JSON null, since the cache maps cannot hold null
+    private static final Object ABSENT = new Object();
+
+    private final byte[] json;
+
+    // Claims as returned by the typed getters, and as returned by get(), by name
+    private final Map<String, Object> typed = new ConcurrentHashMap<>();
+    private final Map<String, Object> values = new ConcurrentHashMap<>();
+
+    private volatile TokenClaims claims;
+
+    // Scan state, guarded by this: the names of the claims passed, in order, and the offsets in json of where
+    // each one's value starts and ends, as start, end pairs; the parser, null before the scan starts and after it
+    // ends; whether it has reached the end; and the error if the claims turned out to be malformed.
+    private final List<String> names = new ArrayList<>();
+    private int[] bounds = new int[2 * 16];
+    private JsonParser scanner;
+    private boolean scanned;
+    private IllegalArgumentException malformed;
+
+    /**
+     * @param json Claims JSON as UTF-8; the range is copied, so the array may be reused afterwards
+     */
+    ClaimsView(byte[] json, int off, int len) {
+        this.json = Arrays.copyOfRange(json, off, off + len);
+    }
+
+    /**
+     * @param json Claims JSON as UTF-8; copied, so the array may be reused afterwards
+     */
+    public static ClaimsView of(byte[] json) {
+        return new ClaimsView(json, 0, json.length);
+    }
+
+    /**
+     * @return exp in seconds since the epoch, or 0 if the token has none, as TokenClaims.getExp() returns.
+     * @throws IllegalArgumentException If the claims are malformed or exp is not a number
+     */
+    public long getExp() {
+        return getLong("exp");
+    }
+
+    /**
+     * @return iat in seconds since the epoch, or 0 if the token has none.
+     */
+    public long getIat() {
+        return getLong("iat");
+    }
+
+    public String getIss() {
+        return getString("iss");
+    }
+
+    public String getSub() {
+        return getString("sub");
+    }
+
+    public String getProvider() {
+        return getString("provider");
+    }
+
+    /**
+     * @return The audience; a single string, which RFC 7519 allows, is returned as a one-element array.
+     */
+    public String[] getAud() {
+        return copyOf(getStrings("aud"));
+    }
+
+    public String[] getProducts() {
+        return copyOf(getStrings("products"));
+    }
+
+    /**
+     * @return Whether the claim is present, even if its value is null.
+     */
+    public boolean hasClaim(String name) {
+        return getClaimNames().contains(name);
+    }
+
+    /**
+     * @return The names of all claims, in the order they appear in the token.  Scans the claims to the end, so
+     * also checks the structure of the object, though not the values of the claims that haven't been read.
+     * @throws IllegalArgumentException If the claims are not a well-formed JSON object
+     */
+    public synchronized Set<String> getClaimNames() {
+        scanTo(null);
+        return Collections.unmodifiableSet(new LinkedHashSet<>(names));
+    }
+
+    /**
+     * Any claim, including those TokenClaims has no field for.
+     *
+     * @return The claim as a String, Number, Boolean, List or Map, or null if it is absent or null.  Lists and
+     * Maps are decoded on each call, so each caller gets its own.
+     * @throws IllegalArgumentException If the claims are malformed
+     */
+    public Object get(String name) {
+        Object value = values.get(name);
+        if (value == null) {
+            value = read(name, (start, end) -> parse(name, start, end, parser -> TokenMapping.MAPPER.readValue(parser, Object.class)));
+            if (!(value instanceof List || value instanceof Map)) {
+                values.putIfAbsent(name, value);
+            }
+        }
+        return (value == ABSENT) ? null : value;
+    }
+
+    /**
+     * Check that the claims are a well-formed JSON object, and that each claim TokenClaims has a field for can be
+     * read by its getter here: exp and iat are integers, iss, sub and provider strings, aud and products strings
+     * or arrays of strings, and address an object of plain values, or any of them null.  Once this has passed,
+     * none of the getters and not toClaims() can fail.  Only those claims are decoded; nothing is bound.
+     *
+     * @throws IllegalArgumentException If the claims are malformed or a claim has the wrong type
+     */
+    void checkClaims() {
+        getClaimNames();
+        getExp();
+        getIat();
+        getIss();
+        getSub();
+        getProvider();
+        getStrings("aud");
+        getStrings("products");
+        Object address = get("address");
+        if (address != null) {
+            if (!(address instanceof Map)) {
+                throw new IllegalArgumentException("Claim address is not an object");
+            }
+            for (Object value : ((Map<?, ?>) address).values()) {
+                if (value instanceof Map || value instanceof List) {
+                    throw new IllegalArgumentException("Claim address has a value that is not a string");
+                }
+            }
+        }
+    }
+
+    /**
+     * Bind all the claims to TokenClaims, once; later calls return a copy of the same binding.  Claims TokenClaims
+     * has no field for are kept in its other claims.
+     *
+     * @return A copy of the claims, or null if the JSON is null
+     * @throws IllegalArgumentException If the claims cannot be bound, e.g. aud is a number.  Never the case once
+     * checkClaims() has passed, as it has for the claims of tokens from TokenVerifier.
+     */
+    public TokenClaims toClaims() {
+        TokenClaims result = claims;
+        if (result == null) {
+            try {
+                result = TokenMapping.CLAIMS_READER.readValue(json);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Claims cannot be decoded: " + e.getMessage(), e);
+            }
+            claims = result;
+        }
+        return (result == null) ? null : result.copy();
+    }
+
+    /**
+     * @return The claims JSON as it was in the token.
+     */
+    public String toJson() {
+        return new String(json, UTF_8);
+    }
+
+    public String toString() {
+        return toJson();
+    }
+
+    private long getLong(String name) {
+        Object value = claim(name, (start, end) -> {
+            // Plain integers, which exp and iat always are in practice, without a parser
+            int digits = end - start;
+            if (digits > 0 && digits <= 18) {
+                long result = 0;
+                int i = start;
+                while (i < end && json[i] >= '0' && json[i] <= '9') {
+                    result = result * 10 + (json[i++] - '0');
+                }
+                if (i == end) {
+                    return result;
+                }
+            }
+            return parse(name, start, end, parser -> {
+                if (!parser.currentToken().isNumeric() || parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER) {
+                    throw new IllegalArgumentException("Claim " + name + " is not a number in the range of a long");
+                }
+                return parser.getValueAsLong();
+            });
+        });
+        return (value != null) ? (Long) value : 0;
+    }
+
+    private String getString(String name) {
+        return (String) claim(name, (start, end) -> {
+            if (json[start] != '"') {
+                throw new IllegalArgumentException("Claim " + name + " is not a string");
+            }
+            // Strings without escapes are copied straight out
+            for (int i = start + 1; i < end - 1; i++) {
+                if (json[i] == '\\') {
+                    return parse(name, start, end, JsonParser::getText);
+                }
+            }
+            return new String(json, start + 1, end - start - 2, UTF_8);
+        });
+    }
+
+    private static String[] copyOf(String[] values) {
+        return (values == null) ? null : values.clone();
+    }
+
+    private String[] getStrings(String name) {
+        return (String[]) claim(name, (start, end) -> parse(name, start, end, parser -> {
+            if (parser.currentToken() == JsonToken.VALUE_STRING) {
+                return new String[] {parser.getText()};
+            }
+            if (parser.currentToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Claim " + name + " is not a string or an array of strings");
+            }
+            List<String> result = new ArrayList<>();
+            while (parser.nextToken() == JsonToken.VALUE_STRING) {
+                result.add(parser.getText());
+            }
+            if (parser.currentToken() != JsonToken.END_ARRAY) {
+                throw new IllegalArgumentException("Claim " + name + " is not an array of strings");
+            }
+            return result.toArray(new String[0]);
+        }));
+    }
+
+    private Object claim(String name, ValueReader reader) {
+        Object value = typed.get(name);
+        if (value == null) {
+            value = read(name, reader);
+            typed.putIfAbsent(name, value);
+        }
+        return (value == ABSENT) ? null : value;
+    }
+
+    /**
+     * Read the value of the named claim.
+     *
+     * @return The value, or ABSENT if the claim is missing or null
+     */
+    private Object read(String name, ValueReader reader) {
+        int start;
+        int end;
+        synchronized (this) {
+            int member = scanTo(name);
+            if (member < 0) {
+                return ABSENT;
+            }
+            start = bounds[2 * member];
+            end = bounds[2 * member + 1];
+        }
+        // The scan has checked the value, so a value starting with n is null
+        return (json[start] == 'n') ? ABSENT : reader.read(start, end);
+    }
+
+    /**
+     * Decode the value at [start, end) of json with a Jackson streaming parser.
+     */
+    private Object parse(String name, int start, int end, ParserReader reader) {
+        try (JsonParser parser = TokenMapping.MAPPER.getFactory().createParser(json, start, end - start)) {
+            parser.nextToken();
+            return reader.read(parser);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Claim " + name + " cannot be decoded: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Continue the scan until the named claim is found, or to the end of the claims if name is null.
+     *
+     * @return The index of the claim in names, or -1 if it is not there
+     * @throws IllegalArgumentException If the claims are malformed, as far as the scan has reached
+     */
+    private int scanTo(String name) {
+        if (malformed != null) {
+            throw malformed;
+        }
+        if (name != null) {
+            int index = names.indexOf(name);
+            if (index >= 0 || scanned) {
+                return index;
+            }
+        } else if (scanned) {
+            return -1;
+        }
+
+        try {
+            if (scanner == null) {
+                scanner = TokenMapping.MAPPER.getFactory().createParser(json);
+                scanner.enable(JsonParser.Feature.STRICT_DUPLICATE_DETECTION);
+                if (scanner.nextToken() != JsonToken.START_OBJECT) {
+                    throw new JsonParseException(scanner, "expected an object");
+                }
+            }
+            while (scanner.nextToken() == JsonToken.FIELD_NAME) {
+                String claim = scanner.getCurrentName();
+                JsonToken value = scanner.nextToken();
+                int start = (int) scanner.getTokenLocation().getByteOffset();
+                if (value.isStructStart()) {
+                    scanner.skipChildren();
+                } else if (value == JsonToken.VALUE_STRING) {
+                    // Strings are only read to their end, and checked, on demand
+                    scanner.finishToken();
+                }
+                int end = (int) scanner.getCurrentLocation().getByteOffset();
+
+                if (2 * names.size() == bounds.length) {
+                    bounds = Arrays.copyOf(bounds, 2 * bounds.length);
+                }
+                bounds[2 * names.size()] = start;
+                bounds[2 * names.size() + 1] = end;
+                names.add(claim);
+                if (claim.equals(name)) {
+                    return names.size() - 1;
+                }
+            }
+            // The loop ends at the END_OBJECT of the claims; the parser throws for anything else
+            if (scanner.nextToken() != null) {
+                throw new JsonParseException(scanner, "unexpected content after the claims object");
+            }
+            scanned = true;
+            closeScanner();
+            return -1;
+        } catch (JsonProcessingException e) {
+            JsonLocation at = e.getLocation();
+            malformed = new IllegalArgumentException("Claims are not a well-formed JSON object: " + e.getOriginalMessage()
+                    + ((at != null) ? " at offset " + at.getByteOffset() : ""), e);
+            closeScanner();
+            throw malformed;
+        } catch (IOException e) {
+            malformed = new IllegalArgumentException("Claims are not a well-formed JSON object: " + e.getMessage(), e);
+            closeScanner();
+            throw malformed;
+        }
+    }
+
+    private void closeScanner() {
+        try {
+            if (scanner != null) {
+                scanner.close();
+            }
+        } catch (IOException e) {
+            // Nothing to release for a byte array
+        }
+        scanner = null;
+    }
+
+    private interface ValueReader {
+
+        /**
+         * @return The value at [start, end) of json, which is not null
+         */
+        Object read(int start, int end);
+    }
+
+    private interface ParserReader {
+
+        /**
+         * @param parser Positioned on the first token of a value
+         */
+        Object read(JsonParser parser) throws IOException;
+    }
+}
@@ -0,0 +1,85 @@
+package com.disney.aesandbox.token;
+
+import com.disney.aesandbox.objmapping.TokenClaims;
+import com.disney.aesandbox.objmapping.TokenHeader;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+/**
+ * A token split into its decoded header and claims, together with the result of checking its signature.
+ *
+ * Tokens from TokenVerifier carry their claims as a ClaimsView over the claims JSON, and getClaims() binds them
+ * to TokenClaims only when first called.
+ *
+ * Instances may be shared between callers through the verified-token cache, so the header and claims are returned
+ * as copies: a caller that changes them, e.g. to mint a new token from a validated one, cannot affect another.
+ */
+public class DecodedToken {
+
+    private final TokenHeader header;
+    private final TokenClaims claims;
+    private volatile ClaimsView claimsView;
+    private final SignatureStatus signatureStatus;
+
+    public DecodedToken(TokenHeader header, TokenClaims claims, SignatureStatus signatureStatus) {
+        this.header = header;
+        this.claims = claims;
+        this.signatureStatus = signatureStatus;
+    }
+
+    DecodedToken(TokenHeader header, ClaimsView claimsView, SignatureStatus signatureStatus) {
+        this.header = header;
+        this.claims = null;
+        this.claimsView = claimsView;
+        this.signatureStatus = signatureStatus;
+    }
+
+    /**
+     * @return A copy of the header.
+     */
+    public TokenHeader getHeader() {
+        return header.copy();
+    }
+
+    /**
+     * @return A copy of the claims.  Claims from TokenVerifier have been checked to bind (see
+     * ClaimsView.checkClaims()), so binding them here does not fail.
+     */
+    public TokenClaims getClaims() {
+        return (claims != null) ? claims.copy() : claimsView.toClaims();
+    }
+
+    /**
+     * @return The kid of the key the token was signed with, without copying the header.
+     */
+    @JsonIgnore
+    public String getKid() {
+        return header.getKid();
+    }
+
+    /**
+     * @return The claims as a lazily decoded view, for reading a few claims without binding them all.
+     */
+    @JsonIgnore
+    public ClaimsView getClaimsView() {
+        ClaimsView view = claimsView;
+        if (view == null) {
+            // Built from TokenClaims; serialize them once so the view has JSON to read
+            try {
+                view = ClaimsView.of(TokenMapping.CLAIMS_WRITER.writeValueAsBytes(claims));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+            claimsView = view;
+        }
+        return view;
+    }
+
+    public SignatureStatus getSignatureStatus() {
+        return signatureStatus;
+    }
+
+    public boolean isSignatureValid() {
+        return signatureStatus == SignatureStatus.VALID;
+    }
+}
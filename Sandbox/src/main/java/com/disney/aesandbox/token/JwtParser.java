@@ -0,0 +1,116 @@
+package com.disney.aesandbox.token;
+
+/**
+ * Splits a compact JWS into its segments without copying them.  parse() makes one pass over the token, writing
+ * it as ASCII into a reused buffer while recording where the two periods are and checking that every other
+ * character is URL-safe Base64.  The segments are then decoded on request into reused buffers of their own, so
+ * Jackson and the JCA are handed slices of those arrays instead of substrings and freshly decoded copies.
+ *
+ * Instances hold per-token state and are confined to a thread: use get() for the current thread's parser.  The
+ * buffers are overwritten by the next parse() on the same thread, so nothing read from them may be kept.
+ */
+final class JwtParser {
+
+    private static final ThreadLocal<JwtParser> PARSERS = ThreadLocal.withInitial(JwtParser::new);
+
+    private final ReusableBuffer token = new ReusableBuffer(1024);
+    private final ReusableBuffer header = new ReusableBuffer(128);
+    private final ReusableBuffer claims = new ReusableBuffer(512);
+    private final ReusableBuffer signature = new ReusableBuffer(512);
+
+    private int firstDot;
+    private int secondDot;
+
+    private JwtParser() {
+    }
+
+    /**
+     * @return The current thread's parser.
+     */
+    static JwtParser get() {
+        return PARSERS.get();
+    }
+
+    /**
+     * Copy a token into the parser and locate its segments.
+     *
+     * @param jwt The compact serialization header.claims.signature
+     * @throws IllegalArgumentException If the token does not have exactly three segments, or contains a character
+     * that cannot appear in one
+     */
+    void parse(String jwt) {
+        int len = jwt.length();
+        token.reset();
+        token.ensureCapacity(len);
+        byte[] out = token.array();
+        int first = -1;
+        int second = -1;
+        for (int i = 0; i < len; i++) {
+            char c = jwt.charAt(i);
+            if (c == '.') {
+                if (first < 0) {
+                    first = i;
+                } else if (second < 0) {
+                    second = i;
+                } else {
+                    throw new IllegalArgumentException("Malformed token: expected three dot-separated segments");
+                }
+            } else if (c != '=' && !Base64Url.isAlphabet(c)) {
+                throw new IllegalArgumentException("Malformed token: invalid character at offset " + i);
+            }
+            out[i] = (byte) c;
+        }
+        if (second < 0) {
+            throw new IllegalArgumentException("Malformed token: expected three dot-separated segments");
+        }
+        token.advance(len);
+        firstDot = first;
+        secondDot = second;
+    }
+
+    /**
+     * @return The token as ASCII.  Only the first length() bytes are valid.
+     */
+    byte[] bytes() {
+        return token.array();
+    }
+
+    int length() {
+        return token.size();
+    }
+
+    /**
+     * @return The length of the signing input, the header and claims segments with the period between them,
+     * which starts at offset 0 of bytes().
+     */
+    int signingInputLength() {
+        return secondDot;
+    }
+
+    /**
+     * Decode the header segment.  Only the first size() bytes of the returned buffer are valid.
+     */
+    ReusableBuffer decodeHeader() {
+        return decode(0, firstDot, header);
+    }
+
+    /**
+     * Decode the claims segment.  Only the first size() bytes of the returned buffer are valid.
+     */
+    ReusableBuffer decodeClaims() {
+        return decode(firstDot + 1, secondDot, claims);
+    }
+
+    /**
+     * Decode the signature segment, in JWS form.  Only the first size() bytes of the returned buffer are valid.
+     */
+    ReusableBuffer decodeSignature() {
+        return decode(secondDot + 1, token.size(), signature);
+    }
+
+    private ReusableBuffer decode(int start, int end, ReusableBuffer dst) {
+        dst.reset();
+        Base64Url.decode(token.array(), start, end - start, dst);
+        return dst;
+    }
+}
@@ -0,0 +1,62 @@
+package com.disney.aesandbox.token;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * A ByteArrayOutputStream that exposes its backing array, so that a thread can serialize, encode and sign into
+ * the same storage call after call.  reset() keeps the array; only growth allocates.  Not thread-safe: instances
+ * are confined to a single thread.
+ */
+final class ReusableBuffer extends ByteArrayOutputStream {
+
+    ReusableBuffer(int initialSize) {
+        super(initialSize);
+    }
+
+    /**
+     * @return The backing array.  Only the first size() bytes are valid.
+     */
+    byte[] array() {
+        return buf;
+    }
+
+    // ByteArrayOutputStream synchronizes these; the buffer is thread-confined so the locking is pure overhead.
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(count + 1);
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(count + len);
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    @Override
+    public void reset() {
+        count = 0;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Mark len bytes, written directly into array() after ensureCapacity(), as part of the content.
+     */
+    void advance(int len) {
+        count += len;
+    }
+
+    void ensureCapacity(int minCapacity) {
+        if (minCapacity > buf.length) {
+            byte[] grown = new byte[Math.max(minCapacity, buf.length << 1)];
+            System.arraycopy(buf, 0, grown, 0, count);
+            buf = grown;
+        }
+    }
+}
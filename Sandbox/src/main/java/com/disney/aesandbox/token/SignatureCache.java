@@ -0,0 +1,88 @@
+package com.disney.aesandbox.token;
+
+import com.disney.aesandbox.keymgmt.SigningAlgorithm;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+
+/**
+ * A small, thread-confined cache of Signature objects that are already initialized for a particular key.  A
+ * Signature returns to its initialized state after sign() or verify(), so one instance can be reused for every
+ * token signed or verified with the same key, avoiding the provider lookup and key setup on each call.
+ *
+ * Entries are keyed by key and algorithm, since an RSA key can be used with both RS256 and PS256.  Keys are
+ * matched by identity, not equals(): RSA key equals() compares encoded forms, which costs more than the lookup
+ * saves.  Only a handful of keys are live at once (primary, standby and a few inactive ones), so entries are
+ * kept in a fixed-size array and replaced round-robin.
+ */
+final class SignatureCache {
+
+    private static final int SLOTS = 4;
+
+    private final Key[] keys = new Key[SLOTS];
+    private final SigningAlgorithm[] algorithms = new SigningAlgorithm[SLOTS];
+    private final Signature[] signatures = new Signature[SLOTS];
+    private int nextSlot;
+
+    /**
+     * @return A Signature initialized for signing with the given key.
+     */
+    Signature forSigning(PrivateKey key, SigningAlgorithm alg) throws GeneralSecurityException {
+        int slot = find(key, alg);
+        if (slot < 0) {
+            Signature sig = alg.newSignature();
+            sig.initSign(key);
+            slot = store(key, alg, sig);
+        }
+        return signatures[slot];
+    }
+
+    /**
+     * @return A Signature initialized for verifying with the given key.
+     */
+    Signature forVerifying(PublicKey key, SigningAlgorithm alg) throws GeneralSecurityException {
+        int slot = find(key, alg);
+        if (slot < 0) {
+            Signature sig = alg.newSignature();
+            sig.initVerify(key);
+            slot = store(key, alg, sig);
+        }
+        return signatures[slot];
+    }
+
+    /**
+     * Drop the cached Signature for a key, e.g. after an exception left it in an unknown state.
+     */
+    void evict(Key key, SigningAlgorithm alg) {
+        int slot = find(key, alg);
+        if (slot >= 0) {
+            keys[slot] = null;
+            algorithms[slot] = null;
+            signatures[slot] = null;
+        }
+    }
+
+    private int find(Key key, SigningAlgorithm alg) {
+        if (key == null) {
+            return -1;
+        }
+        for (int i = 0; i < SLOTS; i++) {
+            if (keys[i] == key && algorithms[i] == alg) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int store(Key key, SigningAlgorithm alg, Signature sig) {
+        int slot = nextSlot;
+        nextSlot = (nextSlot + 1) % SLOTS;
+        keys[slot] = key;
+        algorithms[slot] = alg;
+        signatures[slot] = sig;
+        return slot;
+    }
+}
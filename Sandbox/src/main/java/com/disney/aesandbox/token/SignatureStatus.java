@@ -0,0 +1,26 @@
+package com.disney.aesandbox.token;
+
+/**
+ * Outcome of checking a token's signature.  The last three mean the signature could not be checked at all; they
+ * are only reported in validation results (TokenValidationResult), never by DecodedToken.
+ */
+public enum SignatureStatus {
+
+    // Signature verified with the key named by the header kid
+    VALID,
+
+    // A key with the header kid exists, but the signature does not verify with it
+    INVALID,
+
+    // No key with the header kid is in the verification key set
+    UNKNOWN_KID,
+
+    // The token could not be decoded
+    MALFORMED,
+
+    // The token names no issuer, or one with no configured key set
+    UNKNOWN_ISSUER,
+
+    // The key set to check the token against could not be loaded, e.g. its JWKS endpoint is down
+    KEYS_UNAVAILABLE
+}
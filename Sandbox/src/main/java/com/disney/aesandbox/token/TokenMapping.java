@@ -0,0 +1,25 @@
+package com.disney.aesandbox.token;
+
+import com.disney.aesandbox.objmapping.TokenClaims;
+import com.disney.aesandbox.objmapping.TokenHeader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Shared Jackson readers and writers for token headers and claims.  ObjectReader and ObjectWriter are immutable
+ * and thread-safe, so one instance of each is built up front instead of constructing an ObjectMapper per token.
+ */
+final class TokenMapping {
+
+    static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static final ObjectWriter HEADER_WRITER = MAPPER.writerFor(TokenHeader.class);
+    static final ObjectWriter CLAIMS_WRITER = MAPPER.writerFor(TokenClaims.class);
+
+    static final ObjectReader HEADER_READER = MAPPER.readerFor(TokenHeader.class);
+    static final ObjectReader CLAIMS_READER = MAPPER.readerFor(TokenClaims.class);
+
+    private TokenMapping() {
+    }
+}
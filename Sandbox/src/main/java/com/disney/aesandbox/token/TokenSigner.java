@@ -0,0 +1,154 @@
+package com.disney.aesandbox.token;
+
+import com.disney.aesandbox.keymgmt.KeyDataHolder;
+import com.disney.aesandbox.keymgmt.SigningAlgorithm;
+import com.disney.aesandbox.metrics.SandboxMetrics;
+import com.disney.aesandbox.objmapping.TokenClaims;
+import com.disney.aesandbox.objmapping.TokenHeader;
+
+import java.security.PrivateKey;
+import java.security.Signature;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Signing engine behind TokenUtils.newToken and TokenUtils.sign.  Each thread keeps its own initialized Signature
+ * objects, encoded header and byte buffers, so producing a token allocates little beyond the signature bytes
+ * and the returned String.  All instance state is thread-confined, so a single instance is shared.
+ */
+public class TokenSigner {
+
+    public static final TokenSigner INSTANCE = new TokenSigner();
+
+    private final ThreadLocal<SignerState> state = ThreadLocal.withInitial(SignerState::new);
+
+    private TokenSigner() {
+    }
+
+    /**
+     * Create a signed JWT from the claims, signed with the private key held by the given holder using that key's
+     * algorithm, and carrying its kid and alg in the header.
+     *
+     * @param claims Claims to serialize as the token payload
+     * @param holder The signing key and its kid
+     * @return The compact serialization header.claims.signature
+     * @throws Exception If serialization or signing fails
+     */
+    public String newToken(TokenClaims claims, KeyDataHolder holder) throws Exception {
+        SignerState st = state.get();
+        ReusableBuffer json = st.json;
+        ReusableBuffer token = st.token;
+
+        json.reset();
+        TokenMapping.CLAIMS_WRITER.writeValue(json, claims);
+
+        // The signing input: encoded header, a period, encoded claims
+        token.reset();
+        SigningAlgorithm alg = holder.getAlgorithm();
+        token.write(st.encodedHeader(holder.getRsaKey().getKid(), alg));
+        token.write('.');
+        Base64Url.encode(json.array(), 0, json.size(), token);
+
+        PrivateKey key = holder.getPrivateKey();
+        byte[] signed = sign(st, key, alg, token.array(), 0, token.size());
+        token.write('.');
+        Base64Url.encode(signed, 0, signed.length, token);
+
+        SandboxMetrics.INSTANCE.getSignaturesByKid().increment(holder.getRsaKey().getKid());
+        return new String(token.array(), 0, token.size(), US_ASCII);
+    }
+
+    /**
+     * Return a URL-safe Base64-encoded signed text string (i.e. sign, then encode), using the default algorithm
+     * for the key type: RS256 for RSA keys, ES256 for EC keys.
+     *
+     * @param plainText The signing input, ASCII only
+     * @param privateKey The key to sign with
+     * @return The encoded signature
+     * @throws Exception If signing fails
+     */
+    public String sign(String plainText, PrivateKey privateKey) throws Exception {
+        return sign(plainText, privateKey, SigningAlgorithm.defaultFor(privateKey));
+    }
+
+    /**
+     * Return a URL-safe Base64-encoded signed text string (i.e. sign, then encode)
+     *
+     * @param plainText The signing input, ASCII only
+     * @param privateKey The key to sign with
+     * @param alg The algorithm to sign with, which must suit the key type
+     * @return The encoded signature in JWS form
+     * @throws Exception If signing fails
+     */
+    public String sign(String plainText, PrivateKey privateKey, SigningAlgorithm alg) throws Exception {
+        SignerState st = state.get();
+        ReusableBuffer input = st.json;
+        input.reset();
+        writeAscii(plainText, input);
+
+        byte[] signed = sign(st, privateKey, alg, input.array(), 0, input.size());
+        ReusableBuffer out = st.token;
+        out.reset();
+        Base64Url.encode(signed, 0, signed.length, out);
+        return new String(out.array(), 0, out.size(), US_ASCII);
+    }
+
+    private byte[] sign(SignerState st, PrivateKey key, SigningAlgorithm alg, byte[] data, int off, int len) throws Exception {
+        long start = System.nanoTime();
+        Signature sig = st.signatures.forSigning(key, alg);
+        try {
+            sig.update(data, off, len);
+            byte[] signature = sig.sign();
+            SandboxMetrics.INSTANCE.getSign().recordSince(start);
+            return alg.toJws(signature);
+        } catch (Exception e) {
+            // Don't hand a Signature in an unknown state to the next caller
+            st.signatures.evict(key, alg);
+            throw e;
+        }
+    }
+
+    /**
+     * Copy chars to bytes the way getBytes(US_ASCII) does, without allocating the intermediate array.
+     */
+    static void writeAscii(String s, ReusableBuffer dst) {
+        int len = s.length();
+        dst.ensureCapacity(dst.size() + len);
+        byte[] out = dst.array();
+        int o = dst.size();
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            out[o++] = (c < 0x80) ? (byte) c : (byte) '?';
+        }
+        dst.advance(len);
+    }
+
+    /**
+     * Per-thread signing state.
+     */
+    private static final class SignerState {
+
+        final SignatureCache signatures = new SignatureCache();
+        final ReusableBuffer json = new ReusableBuffer(512);
+        final ReusableBuffer token = new ReusableBuffer(1024);
+
+        // The header only varies by kid, which changes once per rotation, and alg, which is fixed per kid, so
+        // the encoded form of the most recently used one is kept.
+        private String headerKid;
+        private byte[] headerBytes;
+
+        byte[] encodedHeader(String kid, SigningAlgorithm alg) throws Exception {
+            if (!kid.equals(headerKid)) {
+                TokenHeader header = new TokenHeader();
+                header.setAlg(alg.getJwsName());
+                header.setKid(kid);
+                byte[] headerJson = TokenMapping.HEADER_WRITER.writeValueAsBytes(header);
+                ReusableBuffer encoded = new ReusableBuffer(Base64Url.encodedLength(headerJson.length));
+                Base64Url.encode(headerJson, 0, headerJson.length, encoded);
+                headerBytes = encoded.toByteArray();
+                headerKid = kid;
+            }
+            return headerBytes;
+        }
+    }
+}
@@ -1,18 +1,26 @@
 package com.disney.aesandbox.token;
 
+import com.disney.aesandbox.objmapping.ClaimsValidator;
 import com.disney.aesandbox.objmapping.TokenClaims;
-import com.disney.aesandbox.objmapping.TokenHeader;
+import com.disney.aesandbox.objmapping.TokenType;
+import com.disney.aesandbox.objmapping.TokenValidationResult;
+import com.disney.aesandbox.objmapping.ValidationResult;
 import com.disney.aesandbox.keymgmt.DemoOnlyTransientKeyManager;
 import com.disney.aesandbox.keymgmt.KeyDataHolder;
+import com.disney.aesandbox.keymgmt.SigningAlgorithm;
 import com.disney.aesandbox.keymgmt.VerificationKeys;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
+import java.io.Console;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.Signature;
-import java.util.Base64;
-
-import static java.nio.charset.StandardCharsets.US_ASCII;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * This token creation/validation service uses ordinary JDK objects to create and validate JWTs.  While there
@@ -21,6 +29,15 @@ import static java.nio.charset.StandardCharsets.US_ASCII;
  */
 public class TokenUtils {
 
+    private static final BatchTokenMinter BATCH_MINTER = new BatchTokenMinter(ForkJoinPool.commonPool());
+
+    // Size cap for the verified-token cache.  Overridable with -Daesandbox.tokenCacheSize=<entries>.
+    public static final String TOKEN_CACHE_SIZE_PROPERTY = "aesandbox.tokenCacheSize";
+    private static final int DEFAULT_TOKEN_CACHE_SIZE = 10000;
+
+    private static final VerifiedTokenCache VERIFIED_TOKENS =
+            new VerifiedTokenCache(Integer.getInteger(TOKEN_CACHE_SIZE_PROPERTY, DEFAULT_TOKEN_CACHE_SIZE));
+
     /**
      * This method takes a Java object representation of JSON claims (Jackson-compatible) and creates
      * a signed JWT.
@@ -31,24 +48,35 @@ public class TokenUtils {
     public static String newToken(TokenClaims claims) {
 
         try {
-            KeyDataHolder holder = getPrivateSigningKey();
-            TokenHeader header = new TokenHeader();
-            header.setKid(holder.getRsaKey().getKid());
-            ObjectMapper mapper = new ObjectMapper();
-            String headerJson = mapper.writeValueAsString(header);
-            String claimsJson = mapper.writeValueAsString(claims);
-
-            String encodedHeader = new String(Base64.getUrlEncoder().withoutPadding().encode(headerJson.getBytes(US_ASCII)));
-            String encodedClaims = new String(Base64.getUrlEncoder().withoutPadding().encode(claimsJson.getBytes(US_ASCII)));
-            String signedHash = sign(encodedHeader + "." + encodedClaims, holder.getPrivateKey());
-
-            return encodedHeader + "." + encodedClaims + "." + signedHash;
+            return TokenSigner.INSTANCE.newToken(claims, getPrivateSigningKey());
         } catch (Exception e) {
             e.printStackTrace();
             return "";
         }
     }
 
+    /**
+     * Create signed JWTs for a batch of claims, signing in parallel across all cores.  The primary signing key
+     * is read once for the whole batch, so every token has the same kid even if keys rotate mid-batch.
+     *
+     * @param claims
+     * @return The tokens in the same order as the input claims; an entry that could not be signed is empty.
+     */
+    public static List<String> newTokens(List<TokenClaims> claims) {
+        // Copy so the batch is unaffected by later changes to the caller's list, and gets indexed access
+        return BATCH_MINTER.mint(new ArrayList<>(claims), getPrivateSigningKey());
+    }
+
+    /**
+     * Stream form of newTokens(List).  The stream is consumed fully before signing starts, so it must be finite.
+     *
+     * @param claims
+     * @return The tokens in encounter order of the input stream.
+     */
+    public static List<String> newTokens(Stream<TokenClaims> claims) {
+        return BATCH_MINTER.mint(claims.collect(Collectors.toList()), getPrivateSigningKey());
+    }
+
     /**
      * Return a private signing key (only private keys should be used for signing).
      * @return
@@ -58,52 +86,211 @@ public class TokenUtils {
     }
 
     /**
-     * Decode a signed JWT into a Jackson-compatible Java object created from the claims JSON.  Validate the
-     * claims against an available JWKS, or flag as not validated if validation fails.
+     * Decode a signed JWT into a Jackson-compatible Java object created from the claims JSON.  The token is
+     * verified first (see verify), without any console output; claims are only returned for a token that is
+     * accepted.
      *
      * FIXME: Currently only the internally-generated JWKS is supported, TODO: enable external public key
      * JWKSs to be used.
      *
      * @param token
-     * @return
+     * @return The claims, or null if the token was rejected.
      */
     public static TokenClaims decodeToClaims(String token, VerificationKeys vKeys) {
+        VerificationOutcome outcome = verify(token, vKeys);
+        return outcome.isAccepted() ? outcome.getToken().getClaims() : null;
+    }
+
+    /**
+     * Verify a signed JWT (see verify) and print the outcome to the console: the kid it was verified with, or
+     * why it was rejected.  For the interactive tasks.
+     *
+     * @return The outcome
+     */
+    public static VerificationOutcome printVerification(Console cons, String token, VerificationKeys vKeys) {
+        VerificationOutcome outcome = verify(token, vKeys);
+        if (outcome.isAccepted()) {
+            cons.writer().println("The token signature was validated with key ID " + outcome.getKid() + ".");
+        } else {
+            cons.writer().println("The token was rejected (" + outcome.getReason() + "): " + outcome.getMessage());
+        }
+        return outcome;
+    }
+
+    /**
+     * Verify a signed JWT and check its claims for the given type, printing the outcome and any claim errors to
+     * the console.  The claims of a rejected token, e.g. an expired one or one whose signature doesn't verify,
+     * are still checked and their errors printed when they can be read, so that everything wrong with the token
+     * is shown at once.  For the interactive tasks.
+     *
+     * @return Whether the token was accepted and its claims are valid
+     */
+    public static boolean printValidation(Console cons, String token, TokenType type, VerificationKeys vKeys) {
+        VerificationOutcome outcome = printVerification(cons, token, vKeys);
+        TokenClaims claims = outcome.isAccepted() ? outcome.getToken().getClaims() : peekClaims(token);
+        if (claims == null) {
+            return false;
+        }
+        boolean claimsValid = claims.validateClaims(cons, type);
+        return outcome.isAccepted() && claimsValid;
+    }
+
+    /**
+     * Read the claims of a token without verifying it, e.g. to report what else is wrong with a token that was
+     * rejected.  The claims must not be trusted.
+     *
+     * @param token
+     * @return The claims, or null if the token is malformed.
+     */
+    public static TokenClaims peekClaims(String token) {
+        if (token == null) {
+            return null;
+        }
         try {
-            String[] parts = token.split("\\.");
-
-            // Three parts: part 0 is the header, part 1 is the claims, part 2 is the signature
-            ObjectMapper mapper = new ObjectMapper();
-            String headerJson = new String(Base64.getUrlDecoder().decode(parts[0]));
-            TokenHeader header = mapper.reader().readValue(headerJson, TokenHeader.class);
-            String claimsJson = new String(Base64.getUrlDecoder().decode(parts[1]));
-            TokenClaims claims = mapper.reader().readValue(claimsJson, TokenClaims.class);
-
-            int i = 0;
-            boolean isValid = false;
-            boolean validSig = false;
-
-            // Validate against the key with matching kid
-            PublicKey pk = vKeys.getVerificationKey(header.getKid());
-            isValid = (pk != null);
-            if (isValid) {
-                // To sign, we take the first two segments (dot-separated), get the bytes, and use that to
-                // feed the Signature object
-                validSig = isValid ? validateSig(parts[0] + "." + parts[1], parts[2], pk) : false;
-            }
+            JwtParser jwt = JwtParser.get();
+            jwt.parse(token);
+            ReusableBuffer claimsJson = jwt.decodeClaims();
+            return TokenMapping.CLAIMS_READER.readValue(claimsJson.array(), 0, claimsJson.size());
+        } catch (Exception e) {
+            return null;
+        }
+    }
 
-            if (validSig) {
-                System.out.println("The token signature vas validated with key ID " + header.getKid() + ".");
-            } else {
-                System.out.println("The token signature with key ID " + header.getKid() + " could not be validated with any known key.");
-            }
+    /**
+     * Verify a signed JWT in stages, cheapest first, without any console output: malformed, oversized and
+     * expired tokens, unknown kids and mismatched algorithms are rejected before the signature is checked, and
+     * the full claims are only decoded once it has been.  See TokenVerifier.verify.
+     *
+     * @param token
+     * @param vKeys
+     * @return ACCEPTED with the decoded token, or the reason the token was rejected.  Accepted tokens come from
+     * the verified-token cache when possible; their header and claims are returned as copies.  Read individual
+     * claims through DecodedToken.getClaimsView() to avoid binding them all.
+     */
+    public static VerificationOutcome verify(String token, VerificationKeys vKeys) {
+        return VERIFIED_TOKENS.verify(token, vKeys);
+    }
 
-            return claims;
+    /**
+     * Decode a signed JWT and check its signature, without any console output.
+     *
+     * @param token
+     * @param vKeys
+     * @return The decoded token with its signature status, or null if the token could not be decoded.  Results
+     * come from the verified-token cache when possible; their header and claims are returned as copies.
+     */
+    public static DecodedToken decode(String token, VerificationKeys vKeys) {
+        try {
+            return VERIFIED_TOKENS.decode(token, vKeys);
         } catch (Exception e) {
-            e.printStackTrace();
             return null;
         }
     }
 
+    /**
+     * Read the "iss" claim of a token without checking its signature, to pick the key set to check it with.
+     * Only the claims segment is decoded, and it is scanned with a streaming parser rather than bound to
+     * TokenClaims.  The value must not be trusted for anything else until the signature has been verified.
+     *
+     * @param token
+     * @return The issuer, or null if the token is malformed or has no string "iss" claim.
+     */
+    public static String peekIssuer(String token) {
+        if (token == null) {
+            return null;
+        }
+        ReusableBuffer claimsJson;
+        try {
+            JwtParser jwt = JwtParser.get();
+            jwt.parse(token);
+            claimsJson = jwt.decodeClaims();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        try (JsonParser parser = TokenMapping.MAPPER.getFactory().createParser(claimsJson.array(), 0, claimsJson.size())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("iss".equals(field)) {
+                    return (value == JsonToken.VALUE_STRING) ? parser.getText() : null;
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return The cache of decoded, signature-checked tokens used by decode, verify and decodeToClaims, e.g. to read its
+     * hit/miss counters.
+     */
+    public static VerifiedTokenCache getVerifiedTokenCache() {
+        return VERIFIED_TOKENS;
+    }
+
+    /**
+     * Fully validate a token of the given type: decode it, check the signature and check the claims.  Nothing is
+     * printed, so this is usable from server threads.
+     *
+     * @param token
+     * @param type
+     * @param vKeys
+     * @return The structured result; tokens that cannot be decoded have signature status MALFORMED.
+     */
+    public static TokenValidationResult validate(String token, TokenType type, VerificationKeys vKeys) {
+        return toResult((token == null) ? null : decode(token, vKeys), type);
+    }
+
+    /**
+     * As validate(String, TokenType, VerificationKeys), but bypassing the verified-token cache.  For tokens that
+     * are each seen once, e.g. read from a file, caching would only cost a digest per token and push out entries
+     * that are reused.
+     */
+    public static TokenValidationResult validateUncached(String token, TokenType type, VerificationKeys vKeys) {
+        DecodedToken decoded = null;
+        if (token != null) {
+            try {
+                decoded = TokenVerifier.INSTANCE.decode(token, vKeys);
+            } catch (Exception e) {
+                // Malformed
+            }
+        }
+        return toResult(decoded, type);
+    }
+
+    /**
+     * @return A result for a token that could not be checked at all, with the given signature status.
+     */
+    public static TokenValidationResult notChecked(SignatureStatus signatureStatus) {
+        TokenValidationResult result = new TokenValidationResult();
+        result.setSignature(signatureStatus.name());
+        result.setErrors(Collections.<ValidationResult.ClaimError>emptyList());
+        result.setValid(false);
+        return result;
+    }
+
+    private static TokenValidationResult toResult(DecodedToken decoded, TokenType type) {
+        if (decoded == null) {
+            return notChecked(SignatureStatus.MALFORMED);
+        }
+
+        TokenValidationResult result = new TokenValidationResult();
+        TokenClaims claims = decoded.getClaims();
+        ValidationResult claimsResult = ClaimsValidator.forType(type).validate(claims);
+        result.setSignature(decoded.getSignatureStatus().name());
+        result.setKid(decoded.getKid());
+        result.setErrors(claimsResult.getErrors());
+        result.setClaims(claims);
+        result.setValid(decoded.isSignatureValid() && claimsResult.isValid());
+        return result;
+    }
+
     /**
      * Return a URL-safe Base64-encoded signed text string (i.e. sign, then encode)
      *
@@ -113,10 +300,14 @@ public class TokenUtils {
      * @throws Exception
      */
     public static String sign(String plainText, PrivateKey privateKey) throws Exception {
-        Signature sig = Signature.getInstance("SHA256withRSA");
-        sig.initSign(privateKey);
-        sig.update(plainText.getBytes(US_ASCII));
-        return Base64.getUrlEncoder().withoutPadding().encodeToString(sig.sign());
+        return TokenSigner.INSTANCE.sign(plainText, privateKey);
+    }
+
+    /**
+     * As sign(String, PrivateKey), with an explicit algorithm, e.g. PS256 for an RSA key.
+     */
+    public static String sign(String plainText, PrivateKey privateKey, SigningAlgorithm alg) throws Exception {
+        return TokenSigner.INSTANCE.sign(plainText, privateKey, alg);
     }
 
     /**
@@ -131,12 +322,19 @@ public class TokenUtils {
         // bytes from that string, and use those bytes to feed the Signature instance
         // for verification
         try {
-            byte[] bytesFromSignedEncoded = Base64.getUrlDecoder().decode(signedEncoded);
-            Signature sig = Signature.getInstance("SHA256withRSA");
-            sig.initVerify(publicKey);
-            sig.update(toBeValidated.getBytes(US_ASCII));
+            return TokenVerifier.INSTANCE.verify(toBeValidated, signedEncoded, publicKey);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
 
-            return sig.verify(bytesFromSignedEncoded);
+    /**
+     * As validateSig(String, String, PublicKey), with an explicit algorithm, e.g. PS256 for an RSA key.
+     */
+    public static boolean validateSig(String toBeValidated, String signedEncoded, PublicKey publicKey, SigningAlgorithm alg) {
+        try {
+            return TokenVerifier.INSTANCE.verify(toBeValidated, signedEncoded, publicKey, alg);
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -0,0 +1,333 @@
+package com.disney.aesandbox.token;
+
+import com.disney.aesandbox.keymgmt.SigningAlgorithm;
+import com.disney.aesandbox.keymgmt.VerificationKeys;
+import com.disney.aesandbox.metrics.SandboxMetrics;
+import com.disney.aesandbox.objmapping.TokenHeader;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+
+/**
+ * Verification engine behind TokenUtils.validateSig and TokenUtils.decode.  Like TokenSigner, it keeps
+ * initialized Signature objects and byte buffers per thread and shares one Jackson reader per type, so a
+ * single instance is shared.  Tokens are split by JwtParser, and the signing input and signature are passed to
+ * the JCA as slices of its buffers.
+ */
+public class TokenVerifier {
+
+    public static final TokenVerifier INSTANCE = new TokenVerifier();
+
+    // Tokens longer than this are rejected by verify() before they are read.  Overridable with
+    // -Daesandbox.maxTokenLength=<characters>.
+    public static final String MAX_TOKEN_LENGTH_PROPERTY = "aesandbox.maxTokenLength";
+    private static final int DEFAULT_MAX_TOKEN_LENGTH = 8192;
+    private static final int MAX_TOKEN_LENGTH = Integer.getInteger(MAX_TOKEN_LENGTH_PROPERTY, DEFAULT_MAX_TOKEN_LENGTH);
+
+    private final ThreadLocal<VerifierState> state = ThreadLocal.withInitial(VerifierState::new);
+
+    private TokenVerifier() {
+    }
+
+    /**
+     * Validate that a signed, encoded string came from given source text, using the default algorithm for the
+     * key type: RS256 for RSA keys, ES256 for EC keys.
+     *
+     * @param toBeValidated The source text, ASCII only
+     * @param signedEncoded The URL-safe Base64-encoded signature
+     * @param publicKey The public key counterpart to the private key supposedly used to create the signature
+     * @return true if the signature is valid
+     * @throws Exception If the signature cannot be decoded or the key cannot be used
+     */
+    public boolean verify(String toBeValidated, String signedEncoded, PublicKey publicKey) throws Exception {
+        return verify(toBeValidated, signedEncoded, publicKey, SigningAlgorithm.defaultFor(publicKey));
+    }
+
+    /**
+     * Validate that a signed, encoded string came from given source text.
+     *
+     * @param toBeValidated The source text, ASCII only
+     * @param signedEncoded The URL-safe Base64-encoded signature, in JWS form
+     * @param publicKey The public key counterpart to the private key supposedly used to create the signature
+     * @param alg The algorithm the signature was made with
+     * @return true if the signature is valid
+     * @throws Exception If the signature cannot be decoded or the key cannot be used
+     */
+    public boolean verify(String toBeValidated, String signedEncoded, PublicKey publicKey, SigningAlgorithm alg) throws Exception {
+        VerifierState st = state.get();
+        st.input.reset();
+        TokenSigner.writeAscii(toBeValidated, st.input);
+        st.signature.reset();
+        TokenSigner.writeAscii(signedEncoded, st.signature);
+        // The decoded signature is appended after its encoded form in the same buffer
+        int encodedLen = st.signature.size();
+        Base64Url.decode(st.signature.array(), 0, encodedLen, st.signature);
+        return verify(st, st.input.array(), 0, st.input.size(),
+                st.signature.array(), encodedLen, st.signature.size() - encodedLen, publicKey, alg);
+    }
+
+    /**
+     * Decode a signed JWT and check its signature against the key with the matching kid, without any output.  A
+     * token whose header alg is not the algorithm of that key is INVALID without its signature being checked.
+     *
+     * @param token The compact serialization header.claims.signature
+     * @param vKeys Keys to verify against
+     * @return The decoded header and claims with the signature status
+     * @throws Exception If the token is malformed or cannot be decoded
+     */
+    public DecodedToken decode(String token, VerificationKeys vKeys) throws Exception {
+        JwtParser parser = JwtParser.get();
+        parser.parse(token);
+        return decode(parser, vKeys);
+    }
+
+    /**
+     * decode() for a token already in the current thread's parser, so that callers that need its bytes first,
+     * like VerifiedTokenCache, don't copy it twice.
+     */
+    DecodedToken decode(JwtParser parser, VerificationKeys vKeys) throws Exception {
+
+        ReusableBuffer headerJson = parser.decodeHeader();
+        TokenHeader header = TokenMapping.HEADER_READER.readValue(headerJson.array(), 0, headerJson.size());
+        ReusableBuffer claimsJson = parser.decodeClaims();
+        if (header == null) {
+            throw new IllegalArgumentException("Malformed token: the header must be a JSON object");
+        }
+        // Checked, but only bound to TokenClaims if DecodedToken.getClaims() is called
+        ClaimsView claims = new ClaimsView(claimsJson.array(), 0, claimsJson.size());
+        claims.checkClaims();
+
+        // Validate against the key with matching kid
+        SignatureStatus status = SignatureStatus.UNKNOWN_KID;
+        VerificationKeys.KeyEntry entry = vKeys.getEntry(header.getKid());
+        PublicKey pk = (entry != null) ? entry.getKey() : null;
+        SigningAlgorithm alg = (entry != null) ? entry.getAlgorithm() : null;
+        if (pk != null && !alg.getJwsName().equals(header.getAlg())) {
+            // Never let the token choose the algorithm for a key
+            status = SignatureStatus.INVALID;
+        } else if (pk != null) {
+            // The signing input is the first two segments, including the period between them
+            ReusableBuffer signature = parser.decodeSignature();
+            boolean validSig = verify(state.get(), parser.bytes(), 0, parser.signingInputLength(),
+                    signature.array(), 0, signature.size(), pk, alg);
+            status = validSig ? SignatureStatus.VALID : SignatureStatus.INVALID;
+        }
+
+        if (entry == null) {
+            SandboxMetrics.INSTANCE.getUnknownKids().increment();
+        } else if (status == SignatureStatus.VALID) {
+            SandboxMetrics.INSTANCE.getValidSignaturesByKid().increment(header.getKid());
+        } else {
+            SandboxMetrics.INSTANCE.getInvalidSignaturesByKid().increment(header.getKid());
+        }
+
+        return new DecodedToken(header, claims, status);
+    }
+
+    /**
+     * Verify a token in stages ordered cheapest first, stopping at the first that fails, so that garbage, tokens
+     * for unknown keys and expired tokens are rejected without a signature check or a full decode:
+     *
+     * 1. The token's length, then its segments and characters, in one pass
+     * 2. The header, and the kid looked up in vKeys
+     * 3. The header alg against the algorithm of that key
+     * 4. exp and iat, read from the claims with a streaming parser
+     * 5. The signature
+     * 6. The rest of the claims, checked only once the signature is valid, with ClaimsView.checkClaims(): well-formed
+     *    JSON, and the claims TokenClaims has fields for of the right types.  They are returned as a ClaimsView,
+     *    and bound to TokenClaims only if DecodedToken.getClaims() is called, which can then no longer fail.
+     *
+     * Nothing is printed and nothing is thrown; any failure is reported as a reason code.
+     *
+     * @param token The compact serialization header.claims.signature
+     * @param vKeys Keys to verify against
+     * @return ACCEPTED with the decoded token, or the reason the token was rejected
+     */
+    public VerificationOutcome verify(String token, VerificationKeys vKeys) {
+        return verify(token, vKeys, System.currentTimeMillis());
+    }
+
+    /**
+     * @param nowMillis The time to check exp and iat against
+     */
+    public VerificationOutcome verify(String token, VerificationKeys vKeys, long nowMillis) {
+        JwtParser parser = JwtParser.get();
+        VerificationOutcome rejected = parse(token, parser);
+        return (rejected != null) ? rejected : verify(parser, vKeys, nowMillis);
+    }
+
+    /**
+     * Stage 1 of verify(): load the token into the parser.
+     *
+     * @return null if the token was parsed, otherwise the rejection
+     */
+    static VerificationOutcome parse(String token, JwtParser parser) {
+        if (token == null) {
+            return reject(VerificationReason.MALFORMED, "No token", null);
+        }
+        if (token.length() > MAX_TOKEN_LENGTH) {
+            return reject(VerificationReason.TOO_LARGE,
+                    "Token is " + token.length() + " characters, longer than the limit of " + MAX_TOKEN_LENGTH, null);
+        }
+        try {
+            parser.parse(token);
+            return null;
+        } catch (IllegalArgumentException e) {
+            return reject(VerificationReason.MALFORMED, e.getMessage(), null);
+        }
+    }
+
+    /**
+     * Stages 2 to 6 of verify(), for a token already in the current thread's parser.
+     */
+    VerificationOutcome verify(JwtParser parser, VerificationKeys vKeys, long nowMillis) {
+
+        TokenHeader header;
+        try {
+            ReusableBuffer headerJson = parser.decodeHeader();
+            header = TokenMapping.HEADER_READER.readValue(headerJson.array(), 0, headerJson.size());
+        } catch (IllegalArgumentException | IOException e) {
+            header = null;
+        }
+        if (header == null || header.getKid() == null) {
+            return reject(VerificationReason.MALFORMED_HEADER, "The header is not a JSON object with a kid", null);
+        }
+
+        String kid = header.getKid();
+        VerificationKeys.KeyEntry entry = vKeys.getEntry(kid);
+        if (entry == null) {
+            SandboxMetrics.INSTANCE.getUnknownKids().increment();
+            return reject(VerificationReason.UNKNOWN_KID, "No key with kid " + kid + " in the key set", kid);
+        }
+
+        // Never let the token choose the algorithm for a key
+        SigningAlgorithm alg = entry.getAlgorithm();
+        if (!alg.getJwsName().equals(header.getAlg())) {
+            SandboxMetrics.INSTANCE.getInvalidSignaturesByKid().increment(kid);
+            return reject(VerificationReason.ALG_MISMATCH,
+                    "Header alg " + header.getAlg() + " is not " + alg.getJwsName() + ", the algorithm of key " + kid, kid);
+        }
+
+        VerifierState st = state.get();
+        ReusableBuffer claimsJson;
+        try {
+            claimsJson = parser.decodeClaims();
+            readTimes(claimsJson, st);
+        } catch (IllegalArgumentException | IOException e) {
+            return reject(VerificationReason.MALFORMED_CLAIMS, "The claims are not a JSON object with numeric exp and iat", kid);
+        }
+        // Compare in seconds, so that no exp or iat can overflow
+        long nowSeconds = nowMillis / 1000;
+        if (!st.hasExp) {
+            return reject(VerificationReason.EXPIRED, "The token has no exp claim", kid);
+        }
+        if (st.exp <= nowSeconds) {
+            return reject(VerificationReason.EXPIRED, "The token expired at " + st.exp, kid);
+        }
+        if (st.iat > nowSeconds) {
+            return reject(VerificationReason.ISSUED_IN_FUTURE, "The token's iat " + st.iat + " is in the future", kid);
+        }
+
+        // The signing input is the first two segments, including the period between them
+        boolean validSig;
+        try {
+            ReusableBuffer signature = parser.decodeSignature();
+            validSig = verify(st, parser.bytes(), 0, parser.signingInputLength(),
+                    signature.array(), 0, signature.size(), entry.getKey(), alg);
+        } catch (IllegalArgumentException | GeneralSecurityException e) {
+            // Undecodable, or the wrong length for the algorithm
+            validSig = false;
+        }
+        if (!validSig) {
+            SandboxMetrics.INSTANCE.getInvalidSignaturesByKid().increment(kid);
+            return reject(VerificationReason.BAD_SIGNATURE, "The signature does not verify with key " + kid, kid);
+        }
+        SandboxMetrics.INSTANCE.getValidSignaturesByKid().increment(kid);
+
+        // Check the rest of the claims, but leave binding them to whoever needs all of them
+        ClaimsView claims = new ClaimsView(claimsJson.array(), 0, claimsJson.size());
+        try {
+            claims.checkClaims();
+        } catch (IllegalArgumentException e) {
+            return reject(VerificationReason.MALFORMED_CLAIMS, e.getMessage(), kid);
+        }
+        return VerificationOutcome.accepted(new DecodedToken(header, claims, SignatureStatus.VALID));
+    }
+
+    private static VerificationOutcome reject(VerificationReason reason, String message, String kid) {
+        SandboxMetrics.INSTANCE.getRejectionsByReason().increment(reason.name());
+        return VerificationOutcome.rejected(reason, message, kid);
+    }
+
+    /**
+     * Read exp and iat into st, stopping as soon as both have been seen.  Everything else is skipped unparsed
+     * into objects, so this costs a fraction of binding TokenClaims.
+     *
+     * @throws IOException If the claims are not a JSON object, or exp or iat is not a number
+     */
+    private static void readTimes(ReusableBuffer claimsJson, VerifierState st) throws IOException {
+        st.hasExp = false;
+        st.iat = 0;
+        boolean hasIat = false;
+        try (JsonParser parser = TokenMapping.MAPPER.getFactory().createParser(claimsJson.array(), 0, claimsJson.size())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Claims are not a JSON object");
+            }
+            while (!(st.hasExp && hasIat) && parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                boolean isExp = "exp".equals(field);
+                if (isExp || "iat".equals(field)) {
+                    if (!value.isNumeric()) {
+                        throw new JsonParseException(parser, field + " is not a number");
+                    }
+                    if (isExp) {
+                        st.exp = parser.getValueAsLong();
+                        st.hasExp = true;
+                    } else {
+                        st.iat = parser.getValueAsLong();
+                        hasIat = true;
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private boolean verify(VerifierState st, byte[] data, int off, int len, byte[] signature, int signatureOff,
+                           int signatureLen, PublicKey key, SigningAlgorithm alg) throws GeneralSecurityException {
+        long start = System.nanoTime();
+        Signature sig = st.signatures.forVerifying(key, alg);
+        try {
+            sig.update(data, off, len);
+            boolean valid = alg.verifyJws(sig, signature, signatureOff, signatureLen);
+            SandboxMetrics.INSTANCE.getVerify().recordSince(start);
+            return valid;
+        } catch (GeneralSecurityException | RuntimeException e) {
+            // Don't hand a Signature in an unknown state to the next caller
+            st.signatures.evict(key, alg);
+            throw e;
+        }
+    }
+
+    /**
+     * Per-thread verification state.
+     */
+    private static final class VerifierState {
+
+        final SignatureCache signatures = new SignatureCache();
+        final ReusableBuffer input = new ReusableBuffer(1024);
+        final ReusableBuffer signature = new ReusableBuffer(1024);
+
+        // exp and iat as read by readTimes()
+        long exp;
+        long iat;
+        boolean hasExp;
+    }
+}
@@ -0,0 +1,63 @@
+package com.disney.aesandbox.token;
+
+/**
+ * Immutable result of TokenVerifier.verify: a reason code, a human-readable message for rejections, and the
+ * decoded token.  The claims are only decoded, and the token only present, once the token is ACCEPTED; the
+ * header kid is reported whenever the header could be read.
+ */
+public final class VerificationOutcome {
+
+    private final VerificationReason reason;
+    private final String message;
+    private final String kid;
+    private final DecodedToken token;
+
+    private VerificationOutcome(VerificationReason reason, String message, String kid, DecodedToken token) {
+        this.reason = reason;
+        this.message = message;
+        this.kid = kid;
+        this.token = token;
+    }
+
+    static VerificationOutcome accepted(DecodedToken token) {
+        return new VerificationOutcome(VerificationReason.ACCEPTED, null, token.getKid(), token);
+    }
+
+    static VerificationOutcome rejected(VerificationReason reason, String message, String kid) {
+        return new VerificationOutcome(reason, message, kid, null);
+    }
+
+    public boolean isAccepted() {
+        return reason == VerificationReason.ACCEPTED;
+    }
+
+    public VerificationReason getReason() {
+        return reason;
+    }
+
+    /**
+     * @return Why the token was rejected, or null if it was accepted.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return The header kid, or null if the header could not be read.
+     */
+    public String getKid() {
+        return kid;
+    }
+
+    /**
+     * @return The decoded header and claims, or null unless the token was accepted.  May come from the
+     * verified-token cache; DecodedToken returns copies of the header and claims.
+     */
+    public DecodedToken getToken() {
+        return token;
+    }
+
+    public String toString() {
+        return isAccepted() ? reason.name() : reason + ": " + message;
+    }
+}
@@ -0,0 +1,37 @@
+package com.disney.aesandbox.token;
+
+/**
+ * Machine-readable outcome of TokenVerifier.verify: ACCEPTED, or the stage at which the token was rejected.  The
+ * stages run in the order listed, cheapest first, and stop at the first failure.
+ */
+public enum VerificationReason {
+
+    ACCEPTED,
+
+    // Longer than the configured maximum; rejected before it is read
+    TOO_LARGE,
+
+    // Not three dot-separated segments of URL-safe Base64
+    MALFORMED,
+
+    // The header is not a JSON object with a kid
+    MALFORMED_HEADER,
+
+    // No key with the header kid is in the verification key set
+    UNKNOWN_KID,
+
+    // The header alg is not the algorithm of the key with that kid
+    ALG_MISMATCH,
+
+    // The claims are not a well-formed JSON object, or exp or iat are not numbers
+    MALFORMED_CLAIMS,
+
+    // exp is missing or has passed
+    EXPIRED,
+
+    // iat is later than the current time
+    ISSUED_IN_FUTURE,
+
+    // The signature does not verify with the key with the header kid
+    BAD_SIGNATURE
+}
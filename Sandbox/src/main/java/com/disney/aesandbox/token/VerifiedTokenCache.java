@@ -0,0 +1,268 @@
+package com.disney.aesandbox.token;
+
+import com.disney.aesandbox.keymgmt.VerificationKeys;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of decoded, signature-checked tokens, so that a token validated repeatedly is decoded and
+ * RSA-verified only once.
+ *
+ * - Entries are keyed by a SHA-256 digest of the token, so the cache does not hold the token strings.
+ * - An entry is dropped once the token's exp has passed, or when the key that verified it is no longer the key
+ *   with that kid in the caller's VerificationKeys (the kid was removed from the set, or reused for a different
+ *   key).  Both are checked on lookup.
+ * - Tokens whose kid is unknown are not cached, since the kid may appear after the next key set refresh.
+ * - The cache is split into segments, each an access-ordered LinkedHashMap with its own lock and an equal share
+ *   of the size cap, giving approximate LRU eviction without one global lock.
+ *
+ * Cached DecodedToken objects are shared between callers; DecodedToken and ClaimsView hand out copies of the
+ * header and claims, so a caller changing those cannot affect the cached entry.
+ */
+public class VerifiedTokenCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(VerifiedTokenCache::newDigest);
+
+    /**
+     * @param maxSize Maximum number of cached tokens, across all segments
+     */
+    public VerifiedTokenCache(int maxSize) {
+        int perSegment = Math.max(1, maxSize / SEGMENTS);
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * Return the decoded token from the cache, or decode and verify it and cache the result.
+     *
+     * @param token The compact serialization header.claims.signature
+     * @param vKeys Keys to verify against
+     * @return The decoded token with its signature status
+     * @throws Exception If the token is malformed or cannot be decoded
+     */
+    public DecodedToken decode(String token, VerificationKeys vKeys) throws Exception {
+        // Parse first so the digest and, on a miss, the verifier both work from the parser's copy of the token
+        JwtParser parser = JwtParser.get();
+        parser.parse(token);
+        Digest key = digest(parser);
+        Segment segment = segmentFor(key);
+        long now = System.currentTimeMillis();
+
+        CachedToken entry = lookup(segment, key, vKeys, now);
+        if (entry != null) {
+            hits.increment();
+            return entry.decoded;
+        }
+
+        misses.increment();
+        DecodedToken decoded = TokenVerifier.INSTANCE.decode(parser, vKeys);
+        String kid = decoded.getKid();
+        long expiresAt = decoded.getClaimsView().getExp() * 1000;
+        if (decoded.getSignatureStatus() != SignatureStatus.UNKNOWN_KID && expiresAt > now) {
+            segment.put(key, new CachedToken(decoded, kid, vKeys.getVerificationKey(kid), expiresAt));
+        }
+        return decoded;
+    }
+
+    /**
+     * Return the accepted outcome from the cache for a token that was accepted before, or run
+     * TokenVerifier.verify and cache the outcome if the token is accepted.  Only tokens with a valid signature
+     * are hits, and their iat is checked again on each hit; rejections are not cached, since all but a bad
+     * signature are found without a signature check.
+     *
+     * @param token The compact serialization header.claims.signature
+     * @param vKeys Keys to verify against
+     * @return ACCEPTED with the decoded token, or the reason the token was rejected
+     */
+    public VerificationOutcome verify(String token, VerificationKeys vKeys) {
+        JwtParser parser = JwtParser.get();
+        VerificationOutcome rejected = TokenVerifier.parse(token, parser);
+        if (rejected != null) {
+            return rejected;
+        }
+        Digest key = digest(parser);
+        Segment segment = segmentFor(key);
+        long now = System.currentTimeMillis();
+
+        CachedToken entry = lookup(segment, key, vKeys, now);
+        if (entry != null && entry.accepted != null && entry.decoded.getClaimsView().getIat() <= now / 1000) {
+            hits.increment();
+            return entry.accepted;
+        }
+
+        misses.increment();
+        VerificationOutcome outcome = TokenVerifier.INSTANCE.verify(parser, vKeys, now);
+        if (outcome.isAccepted()) {
+            DecodedToken decoded = outcome.getToken();
+            String kid = decoded.getKid();
+            segment.put(key, new CachedToken(decoded, kid, vKeys.getVerificationKey(kid), decoded.getClaimsView().getExp() * 1000));
+        }
+        return outcome;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Entries removed because they expired, their key changed, or the size cap was reached.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    private Digest digest(JwtParser parser) {
+        MessageDigest md = digests.get();
+        md.update(parser.bytes(), 0, parser.length());
+        return new Digest(md.digest());
+    }
+
+    /**
+     * @return The entry for a token if it has not expired and was verified with the key now in vKeys for its kid;
+     * otherwise null, after dropping any stale entry.
+     */
+    private CachedToken lookup(Segment segment, Digest key, VerificationKeys vKeys, long now) {
+        CachedToken entry = segment.get(key);
+        if (entry != null) {
+            if (entry.expiresAt > now && entry.isVerifiedBy(vKeys.getVerificationKey(entry.kid))) {
+                return entry;
+            }
+            segment.remove(key, entry);
+            evictions.increment();
+        }
+        return null;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsa) {
+            // SHA-256 is required to be present in every JDK
+            throw new IllegalStateException(nsa);
+        }
+    }
+
+    private Segment segmentFor(Digest key) {
+        return segments[(key.hash >>> 28) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * A SHA-256 digest used as a map key.  The digest is already uniformly distributed, so its leading bytes
+     * serve directly as the hash code.
+     */
+    private static final class Digest {
+
+        private final byte[] bytes;
+        private final int hash;
+
+        Digest(byte[] bytes) {
+            this.bytes = bytes;
+            this.hash = (bytes[0] & 0xff) << 24 | (bytes[1] & 0xff) << 16 | (bytes[2] & 0xff) << 8 | (bytes[3] & 0xff);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return (other instanceof Digest) && Arrays.equals(bytes, ((Digest) other).bytes);
+        }
+    }
+
+    private static final class CachedToken {
+
+        final DecodedToken decoded;
+        final String kid;
+        final PublicKey verifiedWith;
+        final long expiresAt;
+        // The outcome verify() returns for this token, if its signature is valid
+        final VerificationOutcome accepted;
+
+        CachedToken(DecodedToken decoded, String kid, PublicKey verifiedWith, long expiresAt) {
+            this.decoded = decoded;
+            this.accepted = decoded.isSignatureValid() ? VerificationOutcome.accepted(decoded) : null;
+            this.kid = kid;
+            this.verifiedWith = verifiedWith;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isVerifiedBy(PublicKey current) {
+            // Identity first: callers that keep their VerificationKeys hand back the same PublicKey objects
+            return verifiedWith == current || verifiedWith.equals(current);
+        }
+    }
+
+    private final class Segment {
+
+        private final LinkedHashMap<Digest, CachedToken> map;
+
+        Segment(int maxSize) {
+            map = new LinkedHashMap<Digest, CachedToken>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Digest, CachedToken> eldest) {
+                    boolean evict = size() > maxSize;
+                    if (evict) {
+                        evictions.increment();
+                    }
+                    return evict;
+                }
+            };
+        }
+
+        synchronized CachedToken get(Digest key) {
+            return map.get(key);
+        }
+
+        synchronized void put(Digest key, CachedToken entry) {
+            map.put(key, entry);
+        }
+
+        synchronized void remove(Digest key, CachedToken entry) {
+            map.remove(key, entry);
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+
+        synchronized void clear() {
+            map.clear();
+        }
+    }
+}
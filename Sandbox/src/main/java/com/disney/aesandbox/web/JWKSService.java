@@ -1,23 +1,97 @@
 package com.disney.aesandbox.web;
 
 import com.disney.aesandbox.keymgmt.DemoOnlyTransientKeyManager;
+import com.disney.aesandbox.keymgmt.JwksSnapshot;
+import com.disney.aesandbox.metrics.SandboxMetrics;
+import io.micronaut.http.HttpHeaders;
+import io.micronaut.http.HttpRequest;
+import io.micronaut.http.HttpResponse;
 import io.micronaut.http.MediaType;
+import io.micronaut.http.MutableHttpResponse;
 import io.micronaut.http.annotation.Controller;
 import io.micronaut.http.annotation.Get;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.scheduling.annotation.ExecuteOn;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 @Controller("/jwks")
 public class JWKSService {
 
-    // Publishes the public key (Base64 URL encoded) to the /pk endpoint, so that client apps can
-    // verify signed content from these services.
-    @Get(produces = MediaType.TEXT_PLAIN)
-    public String index() {
-        return DemoOnlyTransientKeyManager.INSTANCE.getJsonPublicKeySet();
+    // IMF-fixdate (RFC 7231), e.g. "Sun, 06 Nov 1994 08:49:37 GMT": two-digit day, English names, always GMT
+    private static final DateTimeFormatter HTTP_DATE =
+            DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+
+    // Publishes the public key set to the /jwks endpoint, so that client apps can verify signed content from
+    // these services.  The bytes come straight from the key manager's pre-serialized snapshot.  The time to
+    // build each response and the bytes sent are recorded for /metrics.
+    //
+    // Clients are told to cache the key set for a fraction of the rotation policy's standby period, so they
+    // always pick up a new key before it is used for signing.  Conditional GETs with a matching If-None-Match
+    // get a 304 with no body.
+    @Get(produces = MediaType.APPLICATION_JSON)
+    public HttpResponse<?> index(HttpRequest<?> request) {
+        long start = System.nanoTime();
+        JwksSnapshot snapshot = DemoOnlyTransientKeyManager.INSTANCE.getJwksSnapshot();
+        String etag = snapshot.getETag();
+
+        MutableHttpResponse<?> response;
+        if (matches(request.getHeaders().get(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response = HttpResponse.notModified();
+            SandboxMetrics.INSTANCE.getJwksNotModified().increment();
+        } else {
+            response = HttpResponse.ok(snapshot.getCompact()).contentType(MediaType.APPLICATION_JSON_TYPE);
+            SandboxMetrics.INSTANCE.getJwksBytes().add(snapshot.getCompact().length);
+        }
+
+        long maxAgeSeconds = TimeUnit.MILLISECONDS.toSeconds(
+                DemoOnlyTransientKeyManager.INSTANCE.getRotationPolicy().getMaxKeySetCacheAge());
+        response.header(HttpHeaders.ETAG, etag)
+                .header(HttpHeaders.LAST_MODIFIED, httpDate(snapshot.getCreatedAt()))
+                .header(HttpHeaders.CACHE_CONTROL, "public, max-age=" + maxAgeSeconds);
+        SandboxMetrics.INSTANCE.getJwksServe().recordSince(start);
+        return response;
     }
 
-    @Get(uri = "/rotate", produces = MediaType.TEXT_PLAIN)
-    public String rotate() {
+    // Rotation may generate a key and writes the key store, so it must not run on the event loop serving /jwks
+    @Get(uri = "/rotate", produces = MediaType.APPLICATION_JSON)
+    @ExecuteOn(TaskExecutors.IO)
+    public HttpResponse<?> rotate() {
         DemoOnlyTransientKeyManager.INSTANCE.rotateKeys();
-        return index();
+        JwksSnapshot snapshot = DemoOnlyTransientKeyManager.INSTANCE.getJwksSnapshot();
+
+        // A side-effecting request, so the response must not be reused
+        return HttpResponse.ok(snapshot.getCompact())
+                .contentType(MediaType.APPLICATION_JSON_TYPE)
+                .header(HttpHeaders.ETAG, snapshot.getETag())
+                .header(HttpHeaders.CACHE_CONTROL, "no-store");
+    }
+
+    /**
+     * If-None-Match uses weak comparison (RFC 7232 section 3.2): W/ prefixes are ignored, and the header may be
+     * "*" or a comma-separated list of tags.
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String httpDate(long epochMillis) {
+        return HTTP_DATE.format(Instant.ofEpochMilli(epochMillis));
     }
 }
@@ -0,0 +1,139 @@
+package com.disney.aesandbox.web;
+
+import com.disney.aesandbox.jwks.IssuerRegistry;
+import com.disney.aesandbox.jwks.KeySetSource;
+import com.disney.aesandbox.jwks.external.CachingJwksProvider;
+import com.disney.aesandbox.keymgmt.DemoOnlyTransientKeyManager;
+import com.disney.aesandbox.keymgmt.KeyPairPool;
+import com.disney.aesandbox.keymgmt.VerificationKeys;
+import com.disney.aesandbox.metrics.MetricsReport;
+import com.disney.aesandbox.metrics.SandboxMetrics;
+import com.disney.aesandbox.metrics.Timer;
+import com.disney.aesandbox.token.TokenUtils;
+import com.disney.aesandbox.token.VerifiedTokenCache;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.MediaType;
+import io.micronaut.http.annotation.Controller;
+import io.micronaut.http.annotation.Get;
+import io.micronaut.http.annotation.QueryValue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Publishes the sandbox's metrics at /metrics, in the Prometheus text format by default or as JSON with
+ * ?format=json: signing and verification timers and counts by kid, JWKS serving, key generation and rotation
+ * lag, and the sizes and hit counts of the key sets and caches.
+ *
+ * Timers and counters are recorded in place by the code they measure (see SandboxMetrics); the sizes and the
+ * counters the components keep themselves are read here, when the endpoint is scraped.
+ */
+@Controller("/metrics")
+public class MetricsService {
+
+    private final IssuerRegistry issuers;
+
+    public MetricsService(IssuerRegistry issuers) {
+        this.issuers = issuers;
+    }
+
+    @Get(produces = {MetricsReport.PROMETHEUS_CONTENT_TYPE, MediaType.APPLICATION_JSON})
+    public HttpResponse<?> index(@QueryValue(defaultValue = "prometheus") String format) {
+        MetricsReport report = collect();
+        if ("json".equalsIgnoreCase(format)) {
+            return HttpResponse.ok(report.toMap()).contentType(MediaType.APPLICATION_JSON_TYPE);
+        }
+        return HttpResponse.ok(report.toPrometheus()).contentType(MetricsReport.PROMETHEUS_CONTENT_TYPE);
+    }
+
+    private MetricsReport collect() {
+        SandboxMetrics metrics = SandboxMetrics.INSTANCE;
+        DemoOnlyTransientKeyManager keyManager = DemoOnlyTransientKeyManager.INSTANCE;
+        MetricsReport report = new MetricsReport();
+
+        report.timer("aesandbox_sign_seconds", "Time to compute a token signature", metrics.getSign())
+                .timer("aesandbox_verify_seconds", "Time to check a token signature", metrics.getVerify())
+                .counters("aesandbox_tokens_signed_total", "Tokens signed, by kid", "kid",
+                        metrics.getSignaturesByKid().getCounts())
+                .counters("aesandbox_signatures_valid_total", "Token signatures checked and found valid, by kid", "kid",
+                        metrics.getValidSignaturesByKid().getCounts())
+                .counters("aesandbox_signatures_invalid_total", "Token signatures checked and found invalid, by kid", "kid",
+                        metrics.getInvalidSignaturesByKid().getCounts())
+                .counter("aesandbox_signatures_unknown_kid_total", "Tokens whose kid was not in the key set checked against",
+                        metrics.getUnknownKids().sum())
+                .counters("aesandbox_tokens_rejected_total", "Tokens rejected by staged verification, by reason", "reason",
+                        metrics.getRejectionsByReason().getCounts());
+
+        report.timer("aesandbox_jwks_serve_seconds", "Time to build a /jwks response", metrics.getJwksServe())
+                .counter("aesandbox_jwks_sent_bytes_total", "Key set bytes sent by /jwks", metrics.getJwksBytes().sum())
+                .counter("aesandbox_jwks_not_modified_total", "/jwks requests answered 304 Not Modified",
+                        metrics.getJwksNotModified().sum());
+
+        KeyPairPool pool = keyManager.getKeyPairPool();
+        Map<String, Timer> lags = new LinkedHashMap<>();
+        lags.put("intro", metrics.getIntroLag());
+        lags.put("promote", metrics.getPromoteLag());
+        report.timer("aesandbox_key_generation_seconds", "Time to produce a new signing key, including waiting on the key pool",
+                        metrics.getKeyGeneration())
+                .counter("aesandbox_key_pairs_generated_total", "Key pairs generated", pool.getGeneratedCount())
+                .counter("aesandbox_key_pair_generation_seconds_total", "Time spent generating key pairs",
+                        pool.getTotalGenerationNanos() / 1e9)
+                .counter("aesandbox_key_pool_inline_fallbacks_total", "Keys generated on the caller's thread because the pool was empty",
+                        pool.getInlineFallbackCount())
+                .gauge("aesandbox_key_pool_depth", "Key pairs ready in the pool", pool.getDepth())
+                .timers("aesandbox_rotation_lag_seconds", "How long after its scheduled time each rotation event ran", "event", lags)
+                .gauge("aesandbox_rotation_events_pending", "Rotation events in the queue", keyManager.getPendingRotationEventCount())
+                .gauge("aesandbox_key_ring_keys", "Keys in the published key set", keyManager.getKeyRing().getVerificationKeys().size());
+
+        try {
+            VerificationKeys vKeys = keyManager.getVerificationKeys();
+            report.gauge("aesandbox_verification_keys", "Decoded keys in the in-process verification key set", vKeys.size())
+                    .counter("aesandbox_verification_keys_decoded_total", "Keys decoded by the in-process verification key set",
+                            vKeys.getKeysDecoded())
+                    .counter("aesandbox_verification_keys_reused_total", "Keys reused across updates of the in-process verification key set",
+                            vKeys.getKeysReused());
+        } catch (Exception e) {
+            // Leave them out of this scrape; the rest is still useful
+            e.printStackTrace();
+        }
+
+        VerifiedTokenCache cache = TokenUtils.getVerifiedTokenCache();
+        report.gauge("aesandbox_token_cache_entries", "Tokens in the verified-token cache", cache.size())
+                .counter("aesandbox_token_cache_hits_total", "Verified-token cache hits", cache.getHits())
+                .counter("aesandbox_token_cache_misses_total", "Verified-token cache misses", cache.getMisses())
+                .counter("aesandbox_token_cache_evictions_total", "Verified-token cache evictions", cache.getEvictions());
+
+        addProviders(report);
+        return report;
+    }
+
+    /**
+     * Cache counters of the remote key sets of configured issuers, by issuer.
+     */
+    private void addProviders(MetricsReport report) {
+        Map<String, Long> hits = new TreeMap<>();
+        Map<String, Long> staleServed = new TreeMap<>();
+        Map<String, Long> fetches = new TreeMap<>();
+        Map<String, Long> fetchFailures = new TreeMap<>();
+        for (String issuer : issuers.getIssuers()) {
+            KeySetSource source = issuers.sourceFor(issuer);
+            if (source instanceof CachingJwksProvider) {
+                CachingJwksProvider provider = (CachingJwksProvider) source;
+                hits.put(issuer, provider.getHits());
+                staleServed.put(issuer, provider.getStaleServed());
+                fetches.put(issuer, provider.getFetches());
+                fetchFailures.put(issuer, provider.getFetchFailures());
+            }
+        }
+        report.gauge("aesandbox_jwks_url_providers", "Remote key sets kept for JWKS URLs named at validation time",
+                        issuers.getProviders().size())
+                .counter("aesandbox_jwks_url_provider_evictions_total", "Remote key sets for JWKS URLs dropped to stay within the limit",
+                        issuers.getProviders().getEvictions());
+        report.counters("aesandbox_jwks_provider_hits_total", "Remote key set requests served from cache, by issuer", "issuer", hits)
+                .counters("aesandbox_jwks_provider_stale_served_total", "Expired remote key sets served while the endpoint was failing, by issuer",
+                        "issuer", staleServed)
+                .counters("aesandbox_jwks_provider_fetches_total", "Remote key set fetches, by issuer", "issuer", fetches)
+                .counters("aesandbox_jwks_provider_fetch_failures_total", "Failed remote key set fetches, by issuer", "issuer", fetchFailures);
+    }
+}
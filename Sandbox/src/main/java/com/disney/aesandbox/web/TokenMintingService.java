@@ -0,0 +1,158 @@
+package com.disney.aesandbox.web;
+
+import com.disney.aesandbox.objmapping.ClaimsValidator;
+import com.disney.aesandbox.objmapping.TokenClaims;
+import com.disney.aesandbox.objmapping.TokenType;
+import com.disney.aesandbox.objmapping.ValidationResult;
+import com.disney.aesandbox.token.TokenUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.MediaType;
+import io.micronaut.http.annotation.Body;
+import io.micronaut.http.annotation.Controller;
+import io.micronaut.http.annotation.Post;
+import io.micronaut.http.annotation.QueryValue;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.scheduling.annotation.ExecuteOn;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * HTTP equivalent of the sample token tasks: mints tokens signed with the current primary key from posted claims.
+ *
+ * - POST /tokens/activation and POST /tokens/entitlement take one claims object as JSON and return the token as
+ *   text.  A missing "aud" defaults to the audience of the token type (for /entitlement, GET_ENTITLEMENT unless
+ *   ?type=SET_ENTITLEMENT), and missing iat/exp to now and now plus the lifespan.  The claims are then checked
+ *   with the type's ClaimsValidator, and a 400 listing the failed checks is returned instead of a token that
+ *   the validate tasks would reject.
+ * - POST /tokens/bulk takes a stream of claims objects (application/x-json-stream, one object per line) and
+ *   returns newline-delimited JSON, one {"token": ...} line per input in input order.  Every object gets the same
+ *   defaults and checks as a single mint of ?type= (ACTIVATION unless given); one that fails the checks gets an
+ *   {"error": ...} line listing them instead.  Claims are pulled from the request only as fast as tokens are
+ *   signed, so arbitrarily large fixture sets can be minted without being held in memory.
+ *
+ * RSA signing is CPU-bound and must not run on the Netty event loop, which also serves /jwks: single mints run
+ * on the I/O executor, bulk mints on the RxJava computation scheduler.
+ *
+ * The posted claims are never modified; defaults are applied to a copy.
+ */
+@Controller("/tokens")
+public class TokenMintingService {
+
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    // Used when the posted claims have no exp; match the shortest-lived sample activation token, and the
+    // validity of an entitlement token minted for a test run
+    private static final long DEFAULT_ACTIVATION_LIFESPAN_SECONDS = TimeUnit.HOURS.toSeconds(1);
+    private static final long DEFAULT_ENTITLEMENT_LIFESPAN_SECONDS = TimeUnit.DAYS.toSeconds(1);
+
+    // Tokens signed concurrently per bulk request; also bounds how far ahead of the client the request is read
+    private static final int BULK_CONCURRENCY = Runtime.getRuntime().availableProcessors();
+
+    private static final ObjectWriter LINE_WRITER = new ObjectMapper().writer();
+
+    @Post(uri = "/activation", consumes = MediaType.APPLICATION_JSON, produces = MediaType.TEXT_PLAIN)
+    @ExecuteOn(TaskExecutors.IO)
+    public HttpResponse<String> mintActivation(@Body TokenClaims claims,
+                                               @QueryValue(defaultValue = "0") long lifespanSeconds) {
+        return mint(claims, TokenType.ACTIVATION, lifespanSeconds);
+    }
+
+    @Post(uri = "/entitlement", consumes = MediaType.APPLICATION_JSON, produces = MediaType.TEXT_PLAIN)
+    @ExecuteOn(TaskExecutors.IO)
+    public HttpResponse<String> mintEntitlement(@Body TokenClaims claims,
+                                                @QueryValue(defaultValue = "GET_ENTITLEMENT") TokenType type,
+                                                @QueryValue(defaultValue = "0") long lifespanSeconds) {
+        if (type.isActivation()) {
+            return HttpResponse.badRequest("Use /tokens/activation for activation tokens");
+        }
+        return mint(claims, type, lifespanSeconds);
+    }
+
+    @Post(uri = "/bulk", consumes = MediaType.APPLICATION_JSON_STREAM, produces = APPLICATION_NDJSON)
+    public Flowable<String> mintBulk(@Body Flowable<TokenClaims> claims,
+                                     @QueryValue(defaultValue = "ACTIVATION") TokenType type,
+                                     @QueryValue(defaultValue = "0") long lifespanSeconds) {
+        // concatMapEager signs up to BULK_CONCURRENCY tokens at once but emits them in input order, and only
+        // requests more claims from upstream as results are consumed downstream.
+        return claims.concatMapEager(
+                c -> Flowable.fromCallable(() -> mintLine(c, type, lifespanSeconds))
+                        .subscribeOn(Schedulers.computation()),
+                BULK_CONCURRENCY, BULK_CONCURRENCY);
+    }
+
+    /**
+     * Apply the defaults for the token type to a copy of the posted claims, check the copy with the type's
+     * validator, and sign it if it passes.
+     */
+    private HttpResponse<String> mint(TokenClaims posted, TokenType type, long lifespanSeconds) {
+        TokenClaims claims = withDefaults(posted, type, lifespanSeconds);
+        ValidationResult result = ClaimsValidator.forType(type).validate(claims);
+        if (!result.isValid()) {
+            return HttpResponse.badRequest(describe(result));
+        }
+        return toResponse(TokenUtils.newToken(claims));
+    }
+
+    /**
+     * The bulk equivalent of mint: the same defaults and checks, reported as one output line.
+     */
+    private String mintLine(TokenClaims posted, TokenType type, long lifespanSeconds) throws Exception {
+        TokenClaims claims = withDefaults(posted, type, lifespanSeconds);
+        ValidationResult result = ClaimsValidator.forType(type).validate(claims);
+        if (!result.isValid()) {
+            return LINE_WRITER.writeValueAsString(Collections.singletonMap("error", describe(result))) + "\n";
+        }
+        return toLine(TokenUtils.newToken(claims));
+    }
+
+    /**
+     * @return A copy of the claims with aud defaulted to the type's audience, and iat/exp filled in the same way
+     * the sample tasks do when the caller omits them.  A lifespan of 0 or less means the type's default.
+     */
+    private static TokenClaims withDefaults(TokenClaims posted, TokenType type, long lifespanSeconds) {
+        TokenClaims claims = posted.copy();
+        if (claims.getAud() == null || claims.getAud().length == 0) {
+            claims.setAud(type.getExpectedAud());
+        }
+
+        long nowInSeconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        if (claims.getIat() == 0) {
+            claims.setIat(nowInSeconds);
+        }
+        if (claims.getExp() == 0) {
+            if (lifespanSeconds <= 0) {
+                lifespanSeconds = type.isActivation()
+                        ? DEFAULT_ACTIVATION_LIFESPAN_SECONDS : DEFAULT_ENTITLEMENT_LIFESPAN_SECONDS;
+            }
+            claims.setExp(claims.getIat() + lifespanSeconds);
+        }
+        return claims;
+    }
+
+    private static String describe(ValidationResult result) {
+        return result.getErrors().stream()
+                .map(ValidationResult.ClaimError::toString)
+                .collect(Collectors.joining("\n"));
+    }
+
+    private HttpResponse<String> toResponse(String token) {
+        // TokenUtils.newToken reports signing failures as an empty token
+        if (token.isEmpty()) {
+            return HttpResponse.serverError("Token could not be signed");
+        }
+        return HttpResponse.ok(token);
+    }
+
+    private String toLine(String token) throws Exception {
+        if (token.isEmpty()) {
+            return LINE_WRITER.writeValueAsString(Collections.singletonMap("error", "Token could not be signed")) + "\n";
+        }
+        return LINE_WRITER.writeValueAsString(Collections.singletonMap("token", token)) + "\n";
+    }
+}
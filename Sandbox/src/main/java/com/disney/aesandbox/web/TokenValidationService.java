@@ -0,0 +1,158 @@
+package com.disney.aesandbox.web;
+
+import com.disney.aesandbox.jwks.IssuerRegistry;
+import com.disney.aesandbox.jwks.KeySetSource;
+import com.disney.aesandbox.keymgmt.VerificationKeys;
+import com.disney.aesandbox.objmapping.BatchTokenValidationRequest;
+import com.disney.aesandbox.objmapping.TokenType;
+import com.disney.aesandbox.objmapping.TokenValidationRequest;
+import com.disney.aesandbox.objmapping.TokenValidationResult;
+import com.disney.aesandbox.token.SignatureStatus;
+import com.disney.aesandbox.token.TokenUtils;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.MediaType;
+import io.micronaut.http.annotation.Body;
+import io.micronaut.http.annotation.Controller;
+import io.micronaut.http.annotation.Post;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.scheduling.annotation.ExecuteOn;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * HTTP equivalent of the validate tasks, returning JSON results instead of printing to the console.
+ *
+ * - POST /tokens/validate takes {"token": ..., "type": ..., "jwksUrl": ...} and returns one result.
+ * - POST /tokens/validate/batch takes {"tokens": [...], "type": ..., "jwksUrl": ...} and returns a result per
+ *   token, in input order.  The tokens are validated in parallel.
+ *
+ * type is one of ACTIVATION, GET_ENTITLEMENT or SET_ENTITLEMENT.  With a jwksUrl every token is checked against
+ * that key set; the URL must be the jwks-url of a configured issuer or listed in aesandbox.jwks.allowed-urls, and
+ * any other is refused with a 400 without being fetched.  Without one, each token is routed by its "iss" claim
+ * to the key set of that issuer in the IssuerRegistry; a token with no issuer, or one that isn't configured, gets
+ * signature status UNKNOWN_ISSUER.  If no issuers are configured, the in-process key set is used as before.
+ *
+ * A key set that can't be loaded (its endpoint is down and no cached copy can be served) is reported the same
+ * way by both endpoints and with or without a jwksUrl: as a 200 whose result for each affected token has
+ * signature status KEYS_UNAVAILABLE and is not valid.  In a batch only the tokens needing that key set are
+ * affected.  4xx responses are kept for requests that are wrong in themselves.
+ *
+ * Remote key sets are cached, so they are only fetched when the cached copy is due for a refresh, or when a token
+ * names a kid the cached copy doesn't have.
+ * Validation does RSA work and may fetch a remote JWKS, so it runs on the I/O executor, not the event loop.
+ */
+@Controller("/tokens/validate")
+public class TokenValidationService {
+
+    private final IssuerRegistry issuers;
+
+    public TokenValidationService(IssuerRegistry issuers) {
+        this.issuers = issuers;
+    }
+
+    @Post(consumes = MediaType.APPLICATION_JSON, produces = MediaType.APPLICATION_JSON)
+    @ExecuteOn(TaskExecutors.IO)
+    public HttpResponse<?> validate(@Body TokenValidationRequest request) {
+        if (request.getToken() == null || request.getType() == null) {
+            return HttpResponse.badRequest("\"token\" and \"type\" are required");
+        }
+
+        KeySetSource source;
+        try {
+            source = sourceFor(request.getToken(), request.getJwksUrl());
+        } catch (IllegalArgumentException e) {
+            return HttpResponse.badRequest(e.getMessage());
+        }
+        if (source == null) {
+            return HttpResponse.ok(TokenUtils.notChecked(SignatureStatus.UNKNOWN_ISSUER));
+        }
+        VerificationKeys vKeys = loadKeys(source);
+        if (vKeys == null) {
+            return HttpResponse.ok(TokenUtils.notChecked(SignatureStatus.KEYS_UNAVAILABLE));
+        }
+
+        return HttpResponse.ok(validate(request.getToken(), request.getType(), source, vKeys));
+    }
+
+    @Post(uri = "/batch", consumes = MediaType.APPLICATION_JSON, produces = MediaType.APPLICATION_JSON)
+    @ExecuteOn(TaskExecutors.IO)
+    public HttpResponse<?> validateBatch(@Body BatchTokenValidationRequest request) {
+        if (request.getTokens() == null || request.getType() == null) {
+            return HttpResponse.badRequest("\"tokens\" and \"type\" are required");
+        }
+
+        TokenType type = request.getType();
+        String jwksUrl = request.getJwksUrl();
+        if (!isBlank(jwksUrl)) {
+            // One key set for the whole batch, loaded once
+            KeySetSource source;
+            try {
+                source = sourceFor(null, jwksUrl);
+            } catch (IllegalArgumentException e) {
+                return HttpResponse.badRequest(e.getMessage());
+            }
+            VerificationKeys vKeys = loadKeys(source);
+            return HttpResponse.ok(Arrays.stream(request.getTokens())
+                    .parallel()
+                    .map(token -> (vKeys != null) ? validate(token, type, source, vKeys) :
+                            TokenUtils.notChecked(SignatureStatus.KEYS_UNAVAILABLE))
+                    .collect(Collectors.toList()));
+        }
+
+        // Routed per token; each issuer's key set is cached by its source, so this doesn't reload it per token
+        List<TokenValidationResult> results = Arrays.stream(request.getTokens())
+                .parallel()
+                .map(token -> {
+                    KeySetSource source = sourceFor(token, null);
+                    if (source == null) {
+                        return TokenUtils.notChecked(SignatureStatus.UNKNOWN_ISSUER);
+                    }
+                    VerificationKeys vKeys = loadKeys(source);
+                    return (vKeys != null) ? validate(token, type, source, vKeys) :
+                            TokenUtils.notChecked(SignatureStatus.KEYS_UNAVAILABLE);
+                })
+                .collect(Collectors.toList());
+
+        return HttpResponse.ok(results);
+    }
+
+    /**
+     * @return The source of keys for the token: the given JWKS URL if there is one, otherwise the source for
+     * the token's issuer, or the in-process key set if no issuers are configured.  Null if the token's issuer
+     * is not configured.
+     * @throws IllegalArgumentException If the JWKS URL is not one the registry allows; see
+     * IssuerRegistry.sourceForUrl
+     */
+    private KeySetSource sourceFor(String token, String jwksUrl) {
+        if (!isBlank(jwksUrl)) {
+            return issuers.sourceForUrl(jwksUrl);
+        }
+        return issuers.isEmpty() ? IssuerRegistry.IN_PROCESS : issuers.route(token);
+    }
+
+    /**
+     * @return The source's keys, or null if they could not be loaded.
+     */
+    private static VerificationKeys loadKeys(KeySetSource source) {
+        try {
+            return source.getKeys();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Validate, and if the token's kid isn't in the key set, validate again against a refreshed one; see
+     * IssuerRegistry.validate.
+     */
+    private TokenValidationResult validate(String token, TokenType type, KeySetSource source, VerificationKeys vKeys) {
+        return issuers.validate(token, type, source, vKeys, true);
+    }
+
+    private static boolean isBlank(String jwksUrl) {
+        return jwksUrl == null || jwksUrl.trim().length() == 0;
+    }
+}
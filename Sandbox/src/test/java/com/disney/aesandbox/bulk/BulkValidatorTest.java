@@ -0,0 +1,143 @@
+package com.disney.aesandbox.bulk;
+
+import com.disney.aesandbox.jwks.IssuerRegistry;
+import com.disney.aesandbox.jwks.JwksUrlConfiguration;
+import com.disney.aesandbox.objmapping.TokenType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class BulkValidatorTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Small enough that a few hundred bytes of input cross many segment boundaries
+    private static final int SEGMENT_SIZE = 64;
+    private static final int MAX_LINE_LENGTH = 40;
+
+    /**
+     * @return A validator with no issuers, so every token is checked against the in-process key set.
+     */
+    private static BulkValidator validator(int threads, int segmentSize, int maxLineLength) {
+        IssuerRegistry issuers = new IssuerRegistry(Collections.emptyList(), new JwksUrlConfiguration(), null);
+        return new BulkValidator(issuers, null, TokenType.ACTIVATION, threads, segmentSize, maxLineLength);
+    }
+
+    private static String repeat(char c, int n) {
+        char[] chars = new char[n];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    /**
+     * @return The offset and expected outcome of every line the validator should report: all lines except blank
+     * ones and comments, with those too long reported as LINE_TOO_LONG whatever they contain.
+     */
+    private static List<String> expected(byte[] input, int maxLineLength) {
+        List<String> reported = new ArrayList<>();
+        int start = 0;
+        while (start < input.length) {
+            int end = start;
+            while (end < input.length && input[end] != '\n') {
+                end++;
+            }
+            String text = new String(input, start, end - start, UTF_8).trim();
+            if (end - start > maxLineLength) {
+                reported.add(start + " " + LineOutcome.LINE_TOO_LONG);
+            } else if (!text.isEmpty() && !text.startsWith("#")) {
+                reported.add(start + " checked");
+            }
+            start = end + 1;
+        }
+        return reported;
+    }
+
+    /**
+     * @return The offset and outcome of each result line, in output order; outcomes other than LINE_TOO_LONG are
+     * reported as "checked", since the test lines aren't real tokens.
+     */
+    private static List<String> actual(BulkValidator validator, byte[] input) throws Exception {
+        Path dir = Files.createTempDirectory("bulk-validator-test");
+        Path in = dir.resolve("in.txt");
+        Path out = dir.resolve("out.ndjson");
+        Files.write(in, input);
+        validator.run(in, out);
+
+        List<String> reported = new ArrayList<>();
+        for (String line : Files.readAllLines(out, UTF_8)) {
+            JsonNode result = MAPPER.readTree(line);
+            String outcome = result.get("outcome").asText();
+            reported.add(result.get("offset").asLong() + " " +
+                    (outcome.equals(LineOutcome.LINE_TOO_LONG.name()) ? outcome : "checked"));
+        }
+        return reported;
+    }
+
+    @Test
+    public void reportsEveryLineOnceAcrossSegmentBoundaries() throws Exception {
+        Random random = new Random(42);
+        ByteArrayOutputStream input = new ByteArrayOutputStream();
+        for (int i = 0; i < 200; i++) {
+            int kind = random.nextInt(10);
+            String line;
+            if (kind == 0) {
+                line = "";
+            } else if (kind == 1) {
+                line = "# comment " + i;
+            } else if (kind == 2) {
+                // Too long, and long enough to cover whole segments
+                line = repeat('x', MAX_LINE_LENGTH + 1 + random.nextInt(3 * SEGMENT_SIZE));
+            } else {
+                line = "tok" + i + repeat('a', random.nextInt(MAX_LINE_LENGTH - 8));
+            }
+            input.write(line.getBytes(UTF_8));
+            input.write('\n');
+        }
+        byte[] bytes = input.toByteArray();
+
+        assertEquals(expected(bytes, MAX_LINE_LENGTH), actual(validator(3, SEGMENT_SIZE, MAX_LINE_LENGTH), bytes));
+    }
+
+    @Test
+    public void reportsEveryLineOnceWhateverTheSegmentSize() throws Exception {
+        byte[] bytes = ("first\nsecond\n\n# skipped\n" + repeat('y', 50) + "\nthird\n" + repeat('z', 41) +
+                "\nfourth\nlast without newline").getBytes(UTF_8);
+        List<String> expected = expected(bytes, MAX_LINE_LENGTH);
+
+        // Every boundary position, including one right before and right after each newline
+        for (int segmentSize = 1; segmentSize <= bytes.length + 1; segmentSize++) {
+            assertEquals(expected, actual(validator(2, segmentSize, MAX_LINE_LENGTH), bytes),
+                    "segment size " + segmentSize);
+        }
+    }
+
+    @Test
+    public void reportsALongLineCrossingABoundaryOnceFromWhereItStarts() throws Exception {
+        // Starts 10 bytes before the first boundary and runs through the second segment into the third, so
+        // neither the first segment's read-ahead nor the second segment finds its end
+        String first = repeat('h', 20);
+        String second = repeat('i', SEGMENT_SIZE - 10 - first.length() - 2);
+        String longLine = repeat('L', 2 * SEGMENT_SIZE + 20);
+        byte[] bytes = (first + "\n" + second + "\n" + longLine + "\nafter\n").getBytes(UTF_8);
+
+        int longStart = SEGMENT_SIZE - 10;
+        List<String> reported = actual(validator(4, SEGMENT_SIZE, MAX_LINE_LENGTH), bytes);
+        assertEquals(Arrays.asList(
+                "0 checked",
+                first.length() + 1 + " checked",
+                longStart + " " + LineOutcome.LINE_TOO_LONG,
+                longStart + longLine.length() + 1 + " checked"), reported);
+    }
+}
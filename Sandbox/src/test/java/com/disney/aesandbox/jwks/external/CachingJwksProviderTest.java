@@ -0,0 +1,274 @@
+package com.disney.aesandbox.jwks.external;
+
+import com.disney.aesandbox.keymgmt.VerificationKeys;
+import com.disney.aesandbox.objmapping.Keys;
+import com.disney.aesandbox.objmapping.RSAKey;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CachingJwksProviderTest {
+
+    private static final long LONG = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Stands in for the endpoint: each fetch gets the next queued response, or one completed later by the test
+     * if none is queued.  Records the ETag each fetch was conditional on.
+     */
+    private static final class StubReader extends AsyncJWKSEndpointReader {
+
+        private final List<CompletableFuture<Result>> queued = new ArrayList<>();
+        final List<CompletableFuture<Result>> fetched = Collections.synchronizedList(new ArrayList<>());
+        final List<String> etags = Collections.synchronizedList(new ArrayList<>());
+
+        StubReader() throws MalformedURLException {
+            super(null, "https://issuer.example/jwks", 1000, 64 * 1024);
+        }
+
+        StubReader respond(int status, String etag, RSAKey... keys) {
+            queued.add(CompletableFuture.completedFuture(result(status, etag, keys)));
+            return this;
+        }
+
+        StubReader fail() {
+            CompletableFuture<Result> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IOException("endpoint down"));
+            queued.add(failed);
+            return this;
+        }
+
+        @Override
+        public synchronized CompletableFuture<Result> fetch(String etag) {
+            etags.add(etag);
+            CompletableFuture<Result> response = queued.isEmpty() ? new CompletableFuture<>() : queued.remove(0);
+            fetched.add(response);
+            return response;
+        }
+    }
+
+    private static AsyncJWKSEndpointReader.Result result(int status, String etag, RSAKey... keys) {
+        Keys keySet = null;
+        if (status == HttpURLConnection.HTTP_OK) {
+            keySet = new Keys();
+            keySet.setKeys(keys);
+        }
+        return new AsyncJWKSEndpointReader.Result(status, keySet, etag, null);
+    }
+
+    private static RSAKey jwk(String kid) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        RSAPublicKey pub = (RSAPublicKey) generator.generateKeyPair().getPublic();
+        RSAKey key = new RSAKey();
+        key.setKty("RSA");
+        key.setAlg("RS256");
+        key.setKid(kid);
+        key.setN(base64url(pub.getModulus()));
+        key.setE(base64url(pub.getPublicExponent()));
+        return key;
+    }
+
+    private static String base64url(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        // Drop the sign byte; JWK integers are unsigned
+        if (bytes.length > 1 && bytes[0] == 0) {
+            byte[] unsigned = new byte[bytes.length - 1];
+            System.arraycopy(bytes, 1, unsigned, 0, unsigned.length);
+            bytes = unsigned;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * @param maxAge How long a key set is fresh; the stub sends no Cache-Control, so this is used as is
+     */
+    private static JwksCachePolicy policy(long maxAge, long maxStale, long errorRetryInterval,
+                                          long kidMissRefreshInterval, long negativeTtl) {
+        return new JwksCachePolicy(maxAge, 0, LONG, maxStale, errorRetryInterval, kidMissRefreshInterval,
+                negativeTtl);
+    }
+
+    @Test
+    public void servesCachedKeysAndRefreshesAhead() throws Exception {
+        StubReader reader = new StubReader().respond(HttpURLConnection.HTTP_OK, "\"v1\"", jwk("k1"));
+        CachingJwksProvider provider = new CachingJwksProvider(reader, policy(1000, LONG, LONG, LONG, LONG));
+
+        VerificationKeys keys = provider.getKeys();
+        assertNotNull(keys.getVerificationKey("k1"));
+        assertSame(keys, provider.getKeys());
+        assertEquals(1, provider.getFetches());
+
+        // Past three quarters of the max-age: the caller gets the cached keys at once, while a conditional
+        // refresh runs in the background
+        Thread.sleep(800);
+        assertSame(keys, provider.getKeys());
+        assertEquals(2, provider.getFetches());
+        assertEquals("\"v1\"", reader.etags.get(1));
+
+        // Only one refresh, however many callers come by while it runs
+        provider.getKeys();
+        assertEquals(2, provider.getFetches());
+
+        // Unchanged: the 304 extends the cached copy without refetching it
+        reader.fetched.get(1).complete(result(HttpURLConnection.HTTP_NOT_MODIFIED, null));
+        assertEquals(1, provider.getNotModified());
+        Thread.sleep(500);
+        assertSame(keys, provider.getKeys());
+        assertEquals(2, provider.getFetches());
+    }
+
+    @Test
+    public void startsTheNextFetchFromThePublishedETag() throws Exception {
+        StubReader reader = new StubReader()
+                .respond(HttpURLConnection.HTTP_OK, "\"v1\"", jwk("k1"))
+                .respond(HttpURLConnection.HTTP_OK, "\"v2\"", jwk("k2"))
+                .respond(HttpURLConnection.HTTP_NOT_MODIFIED, null);
+        CachingJwksProvider provider = new CachingJwksProvider(reader, policy(0, LONG, LONG, LONG, LONG));
+
+        // A max-age of 0 makes every call refetch, each one conditional on the previous fetch's ETag
+        provider.getKeys();
+        provider.getKeys();
+        VerificationKeys keys = provider.getKeys();
+        assertEquals(Arrays.asList(null, "\"v1\"", "\"v2\""), reader.etags);
+        assertNotNull(keys.getVerificationKey("k2"));
+    }
+
+    @Test
+    public void servesStaleKeysWhileTheEndpointFails() throws Exception {
+        StubReader reader = new StubReader().respond(HttpURLConnection.HTTP_OK, "\"v1\"", jwk("k1")).fail();
+        CachingJwksProvider provider = new CachingJwksProvider(reader, policy(100, 400, LONG, LONG, LONG));
+
+        VerificationKeys keys = provider.getKeys();
+        Thread.sleep(150);
+
+        // Expired, and the refetch fails: the expired copy is served
+        assertSame(keys, provider.getKeys());
+        assertEquals(2, provider.getFetches());
+        assertEquals(1, provider.getFetchFailures());
+        assertEquals(1, provider.getStaleServed());
+
+        // Within the retry interval the endpoint isn't tried again
+        assertSame(keys, provider.getKeys());
+        assertEquals(2, provider.getFetches());
+        assertEquals(2, provider.getStaleServed());
+
+        // Beyond max-stale the expired copy is no longer served
+        Thread.sleep(400);
+        assertThrows(IOException.class, provider::getKeys);
+        assertEquals(2, provider.getFetches());
+    }
+
+    @Test
+    public void failsFastBeforeTheFirstSuccessfulFetch() throws Exception {
+        StubReader reader = new StubReader().fail();
+        CachingJwksProvider provider = new CachingJwksProvider(reader, policy(LONG, LONG, LONG, LONG, LONG));
+
+        assertThrows(IOException.class, provider::getKeys);
+        // Within the retry interval callers fail without waiting on the endpoint
+        assertThrows(IOException.class, provider::getKeys);
+        assertEquals(1, provider.getFetches());
+    }
+
+    @Test
+    public void refetchesForAnUnknownKidAndRemembersOnesStillUnknown() throws Exception {
+        RSAKey k1 = jwk("k1");
+        StubReader reader = new StubReader()
+                .respond(HttpURLConnection.HTTP_OK, "\"v1\"", k1)
+                .respond(HttpURLConnection.HTTP_OK, "\"v2\"", k1, jwk("k2"))
+                .respond(HttpURLConnection.HTTP_NOT_MODIFIED, null);
+        CachingJwksProvider provider = new CachingJwksProvider(reader, policy(LONG, LONG, LONG, 0, LONG));
+
+        // The issuer rotated since the key set was cached: the kid is found by refetching
+        assertNull(provider.getKeys().getVerificationKey("k2"));
+        assertNotNull(provider.keysFor("k2").getVerificationKey("k2"));
+        assertEquals(2, provider.getFetches());
+        assertEquals(1, provider.getKidMissRefreshes());
+
+        // A bogus kid costs one refetch, and is then answered from the negative cache
+        assertNull(provider.keysFor("bogus").getVerificationKey("bogus"));
+        assertEquals(3, provider.getFetches());
+        for (int i = 0; i < 5; i++) {
+            assertNull(provider.keysFor("bogus").getVerificationKey("bogus"));
+        }
+        assertEquals(3, provider.getFetches());
+        assertEquals(5, provider.getNegativeHits());
+
+        // Known kids never refetch
+        provider.keysFor("k1");
+        assertEquals(3, provider.getFetches());
+    }
+
+    @Test
+    public void limitsRefetchesForUnknownKids() throws Exception {
+        StubReader reader = new StubReader()
+                .respond(HttpURLConnection.HTTP_OK, "\"v1\"", jwk("k1"))
+                .respond(HttpURLConnection.HTTP_NOT_MODIFIED, null);
+        CachingJwksProvider provider = new CachingJwksProvider(reader, policy(LONG, LONG, LONG, LONG, 0));
+
+        // Different unknown kids: only the first refetches within the kid-miss interval
+        for (int i = 0; i < 5; i++) {
+            provider.keysFor("unknown-" + i);
+        }
+        assertEquals(2, provider.getFetches());
+        assertEquals(1, provider.getKidMissRefreshes());
+    }
+
+    @Test
+    public void mergesConcurrentFetchesIntoOne() throws Exception {
+        StubReader reader = new StubReader();
+        CachingJwksProvider provider = new CachingJwksProvider(reader, policy(LONG, LONG, LONG, LONG, LONG));
+
+        int callers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<VerificationKeys>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(provider::getKeys));
+            }
+
+            // Everyone is waiting for the same fetch, which the endpoint hasn't answered yet
+            long deadline = System.currentTimeMillis() + 500;
+            while (reader.fetched.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(100);
+            assertEquals(1, reader.fetched.size());
+            for (Future<VerificationKeys> result : results) {
+                assertFalse(result.isDone());
+            }
+
+            reader.fetched.get(0).complete(result(HttpURLConnection.HTTP_OK, "\"v1\"", jwk("k1")));
+            VerificationKeys first = results.get(0).get(1, TimeUnit.SECONDS);
+            assertNotNull(first.getVerificationKey("k1"));
+            for (Future<VerificationKeys> result : results) {
+                assertSame(first, result.get(1, TimeUnit.SECONDS));
+            }
+            assertEquals(1, provider.getFetches());
+            assertEquals(0, provider.getHits());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
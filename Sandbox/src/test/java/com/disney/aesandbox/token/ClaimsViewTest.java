@@ -0,0 +1,199 @@
+package com.disney.aesandbox.token;
+
+import com.disney.aesandbox.objmapping.TokenClaims;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ClaimsViewTest {
+
+    private static ClaimsView view(String json) {
+        return ClaimsView.of(json.getBytes(UTF_8));
+    }
+
+    @Test
+    public void readsClaimsWithoutBinding() {
+        ClaimsView claims = view("{\"exp\":1792276343,\"iat\":1792272743,\"iss\":\"me\",\"sub\":\"s\\u00e9\","
+                + "\"aud\":[\"a\",\"b\"],\"provider\":\"p\",\"tenant\":{\"id\":[1,2,{\"x\":null}]}}");
+
+        assertEquals(1792276343L, claims.getExp());
+        assertEquals(1792272743L, claims.getIat());
+        assertEquals("me", claims.getIss());
+        assertEquals("s\u00e9", claims.getSub());
+        assertEquals("p", claims.getProvider());
+        assertArrayEquals(new String[] {"a", "b"}, claims.getAud());
+        assertNull(claims.getProducts());
+        assertEquals(Arrays.asList("exp", "iat", "iss", "sub", "aud", "provider", "tenant"),
+                Arrays.asList(claims.getClaimNames().toArray()));
+        assertEquals(Collections.singletonMap("id", Arrays.asList(1, 2, Collections.singletonMap("x", null))),
+                claims.get("tenant"));
+    }
+
+    @Test
+    public void readsClaimsOutOfOrder() {
+        ClaimsView claims = view("{\"a\":1,\"b\":\"two\",\"c\":[3]}");
+
+        // c scans past a and b, which are then read from where the scan recorded them
+        assertEquals(Collections.singletonList(3), claims.get("c"));
+        assertEquals("two", claims.get("b"));
+        assertEquals(1, claims.get("a"));
+        assertNull(claims.get("d"));
+        assertTrue(claims.hasClaim("a"));
+        assertFalse(claims.hasClaim("d"));
+    }
+
+    @Test
+    public void treatsNullAsAbsent() {
+        ClaimsView claims = view("{\"iss\":null,\"exp\":null,\"aud\":null}");
+
+        assertNull(claims.getIss());
+        assertEquals(0L, claims.getExp());
+        assertNull(claims.getAud());
+        assertTrue(claims.hasClaim("iss"));
+        claims.checkClaims();
+    }
+
+    @Test
+    public void readsSingleAudienceAsArray() {
+        ClaimsView claims = view("{\"aud\":\"one\",\"products\":\"p\"}");
+
+        assertArrayEquals(new String[] {"one"}, claims.getAud());
+        claims.checkClaims();
+        TokenClaims bound = claims.toClaims();
+        assertArrayEquals(new String[] {"one"}, bound.getAud());
+        assertArrayEquals(new String[] {"p"}, bound.getProducts());
+    }
+
+    @Test
+    public void readsNumbersThatNeedAParser() {
+        assertEquals(-5L, view("{\"exp\":-5}").getExp());
+        assertEquals(1500L, view("{\"exp\":1.5e3}").getExp());
+        assertEquals(1234567890123456789L, view("{\"exp\":1234567890123456789}").getExp());
+    }
+
+    @Test
+    public void keepsClaimsTokenClaimsHasNoFieldFor() {
+        TokenClaims bound = view("{\"iss\":\"me\",\"tenant\":\"t1\"}").toClaims();
+
+        assertEquals("me", bound.getIss());
+        assertEquals(Collections.singletonMap("tenant", "t1"), bound.getOtherClaims());
+    }
+
+    @Test
+    public void returnsCopies() {
+        ClaimsView claims = view("{\"aud\":[\"a\"],\"x\":{\"y\":1}}");
+
+        claims.getAud()[0] = "changed";
+        assertArrayEquals(new String[] {"a"}, claims.getAud());
+        assertNotSame(claims.get("x"), claims.get("x"));
+        assertNotSame(claims.toClaims(), claims.toClaims());
+    }
+
+    @Test
+    public void copiesItsInput() {
+        byte[] json = "{\"iss\":\"me\"}".getBytes(UTF_8);
+        ClaimsView claims = ClaimsView.of(json);
+        Arrays.fill(json, (byte) ' ');
+
+        assertEquals("me", claims.getIss());
+        assertEquals("{\"iss\":\"me\"}", claims.toJson());
+    }
+
+    @Test
+    public void rejectsMalformedJson() {
+        String[] malformed = {
+                "",
+                "null",
+                "[1]",
+                "\"claims\"",
+                "{\"a\":nope}",
+                "{\"a\":truex}",
+                "{\"a\":[}}",
+                "{\"a\":{]}",
+                "{\"a\":[1,]}",
+                "{\"a\":1,}",
+                "{\"a\" 1}",
+                "{a:1}",
+                "{'a':1}",
+                "{\"a\":01}",
+                "{\"a\":1.}",
+                "{\"a\":-}",
+                "{\"a\":NaN}",
+                "{\"a\":\"bad \\q escape\"}",
+                "{\"a\":\"bad \\u12 escape\"}",
+                "{\"a\":\"unterminated",
+                "{\"a\":1",
+                "{\"a\":[1,2",
+                "{\"a\":1} x",
+                "{\"a\":1}{}",
+                "{\"a\":1,\"a\":2}",
+        };
+        for (String json : malformed) {
+            ClaimsView claims = view(json);
+            assertThrows(IllegalArgumentException.class, claims::getClaimNames, json);
+            assertThrows(IllegalArgumentException.class, claims::checkClaims, json);
+        }
+    }
+
+    @Test
+    public void rejectsMalformedJsonAfterTheClaimAskedFor() {
+        ClaimsView claims = view("{\"iss\":\"me\",\"a\":nope}");
+
+        // The scan stops at iss, so the error is only found by a scan to the end
+        assertEquals("me", claims.getIss());
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, claims::getClaimNames);
+        // And every later scan reports the same error
+        assertSame(error, assertThrows(IllegalArgumentException.class, () -> claims.get("b")));
+    }
+
+    @Test
+    public void rejectsClaimsOfTheWrongType() {
+        String[] wrong = {
+                "{\"exp\":\"soon\"}",
+                "{\"iat\":true}",
+                "{\"exp\":123456789012345678901234}",
+                "{\"iss\":5}",
+                "{\"sub\":[\"s\"]}",
+                "{\"provider\":{}}",
+                "{\"aud\":5}",
+                "{\"aud\":[\"a\",{}]}",
+                "{\"products\":[[\"p\"]]}",
+                "{\"address\":\"here\"}",
+                "{\"address\":{\"city\":{}}}",
+        };
+        for (String json : wrong) {
+            assertThrows(IllegalArgumentException.class, view(json)::checkClaims, json);
+        }
+    }
+
+    @Test
+    public void bindsWhateverPassesTheCheck() {
+        String[] good = {
+                "{}",
+                " { } ",
+                "{\"exp\":1,\"iat\":0,\"iss\":\"i\",\"sub\":\"s\",\"provider\":\"p\",\"aud\":[],\"products\":[\"x\"],"
+                        + "\"address\":{\"city\":\"c\",\"zip\":12345,\"unit\":null}}",
+                "{\"other\":[true,false,null,1.5e-3,{\"deep\":[[[]]]}]}",
+                "{\"iss\":\"tab\\tnewline\\n\\\"quote\\\" \\u00e9\"}",
+        };
+        for (String json : good) {
+            ClaimsView claims = view(json);
+            claims.checkClaims();
+            claims.toClaims();
+        }
+        Map<String, String> address = view(good[2]).toClaims().getAddress();
+        assertEquals("12345", address.get("zip"));
+    }
+}
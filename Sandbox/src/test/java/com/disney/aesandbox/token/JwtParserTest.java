@@ -0,0 +1,161 @@
+package com.disney.aesandbox.token;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class JwtParserTest {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static String encode(byte[] bytes) {
+        return ENCODER.encodeToString(bytes);
+    }
+
+    private static String token(String header, String claims, byte[] signature) {
+        return encode(header.getBytes(UTF_8)) + "." + encode(claims.getBytes(UTF_8)) + "." + encode(signature);
+    }
+
+    private static byte[] contents(ReusableBuffer buffer) {
+        return Arrays.copyOf(buffer.array(), buffer.size());
+    }
+
+    @Test
+    public void splitsAndDecodesSegments() {
+        byte[] signature = {0, 1, 2, (byte) 0xfe, (byte) 0xff};
+        String jwt = token("{\"alg\":\"RS256\",\"kid\":\"k\"}", "{\"iss\":\"me\"}", signature);
+
+        JwtParser parser = JwtParser.get();
+        parser.parse(jwt);
+
+        assertEquals(jwt.length(), parser.length());
+        assertEquals(jwt, new String(parser.bytes(), 0, parser.length(), US_ASCII));
+        assertEquals(jwt.lastIndexOf('.'), parser.signingInputLength());
+        assertEquals("{\"alg\":\"RS256\",\"kid\":\"k\"}", new String(contents(parser.decodeHeader()), UTF_8));
+        assertEquals("{\"iss\":\"me\"}", new String(contents(parser.decodeClaims()), UTF_8));
+        assertArrayEquals(signature, contents(parser.decodeSignature()));
+    }
+
+    @Test
+    public void acceptsEmptySegments() {
+        JwtParser parser = JwtParser.get();
+        parser.parse("..");
+
+        assertEquals(0, parser.decodeHeader().size());
+        assertEquals(0, parser.decodeClaims().size());
+        assertEquals(0, parser.decodeSignature().size());
+    }
+
+    @Test
+    public void rejectsTheWrongNumberOfSegments() {
+        JwtParser parser = JwtParser.get();
+        for (String jwt : new String[] {"", "abc", "abc.def", "a.b.c.d", "a.b.c."}) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> parser.parse(jwt), jwt);
+            assertEquals("Malformed token: expected three dot-separated segments", e.getMessage());
+        }
+    }
+
+    @Test
+    public void rejectsCharactersOutsideUrlSafeBase64() {
+        JwtParser parser = JwtParser.get();
+        String[] malformed = {"a+b.c.d", "a/b.c.d", "ab.c d.e", "ab.cd.e\n", "ab.cé.e", "ab.cd.e\u0000"};
+        for (String jwt : malformed) {
+            assertThrows(IllegalArgumentException.class, () -> parser.parse(jwt), jwt);
+        }
+    }
+
+    @Test
+    public void rejectsUndecodableSegments() {
+        JwtParser parser = JwtParser.get();
+
+        // One character left over can't encode anything
+        parser.parse("abcde.YQ.YQ");
+        assertThrows(IllegalArgumentException.class, parser::decodeHeader);
+
+        // Padding only at the end of a segment, and only as much as makes a whole group
+        parser.parse("YQ.Y=Q.YQ");
+        assertThrows(IllegalArgumentException.class, parser::decodeClaims);
+        parser.parse("YQ.YQ.YQ=");
+        assertThrows(IllegalArgumentException.class, parser::decodeSignature);
+        parser.parse("YQ==.YWI=.YQ");
+        assertArrayEquals("a".getBytes(US_ASCII), contents(parser.decodeHeader()));
+        assertArrayEquals("ab".getBytes(US_ASCII), contents(parser.decodeClaims()));
+    }
+
+    @Test
+    public void decodesLikeJavaUtilBase64() {
+        Random random = new Random(42);
+        JwtParser parser = JwtParser.get();
+        for (int len = 0; len < 200; len++) {
+            byte[] bytes = new byte[len];
+            random.nextBytes(bytes);
+            parser.parse("." + encode(bytes) + ".");
+            assertArrayEquals(bytes, contents(parser.decodeClaims()), "length " + len);
+        }
+    }
+
+    @Test
+    public void reusesItsBuffersForLongerAndShorterTokens() {
+        JwtParser parser = JwtParser.get();
+        char[] big = new char[20000];
+        Arrays.fill(big, 'x');
+        String longClaims = "{\"x\":\"" + new String(big) + "\"}";
+
+        parser.parse(token("{}", longClaims, new byte[600]));
+        assertEquals(longClaims, new String(contents(parser.decodeClaims()), UTF_8));
+        assertEquals(600, parser.decodeSignature().size());
+
+        String jwt = token("{}", "{\"a\":1}", new byte[] {7});
+        parser.parse(jwt);
+        assertEquals(jwt.length(), parser.length());
+        assertEquals("{\"a\":1}", new String(contents(parser.decodeClaims()), UTF_8));
+        assertArrayEquals(new byte[] {7}, contents(parser.decodeSignature()));
+    }
+
+    @Test
+    public void keepsEachThreadsTokenSeparate() throws Exception {
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                results.add(pool.submit((Callable<Void>) () -> {
+                    JwtParser parser = JwtParser.get();
+                    for (int i = 0; i < 2000; i++) {
+                        // Sizes vary, so the buffers grow while other threads use theirs
+                        String claims = "{\"thread\":" + thread + ",\"i\":" + i + ",\"pad\":\""
+                                + new String(new char[(i * 7 + thread) % 3000]).replace('\0', 'p') + "\"}";
+                        byte[] signature = new byte[(i + thread) % 300];
+                        Arrays.fill(signature, (byte) thread);
+                        parser.parse(token("{\"kid\":\"" + thread + "\"}", claims, signature));
+
+                        assertEquals("{\"kid\":\"" + thread + "\"}", new String(contents(parser.decodeHeader()), UTF_8));
+                        assertEquals(claims, new String(contents(parser.decodeClaims()), UTF_8));
+                        assertArrayEquals(signature, contents(parser.decodeSignature()));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.disney.aesandbox.token;
+
+import com.disney.aesandbox.keymgmt.DemoOnlyTransientKeyManager;
+import com.disney.aesandbox.keymgmt.VerificationKeys;
+import com.disney.aesandbox.objmapping.TokenClaims;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TokenVerifierTest {
+
+    private static final long NOW_SECONDS = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+
+    private static VerificationKeys keys() throws Exception {
+        return DemoOnlyTransientKeyManager.INSTANCE.getVerificationKeys();
+    }
+
+    private static String newToken(long iat, long exp) {
+        TokenClaims claims = TokenClaims.newActivationClaimsFromJson();
+        claims.setIat(iat);
+        claims.setExp(exp);
+        return TokenUtils.newToken(claims);
+    }
+
+    /**
+     * @return The token with its claims segment replaced, keeping the original header and signature.
+     */
+    private static String withClaims(String token, String claimsJson) {
+        String[] segments = token.split("\\.");
+        return segments[0] + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(claimsJson.getBytes(UTF_8))
+                + "." + segments[2];
+    }
+
+    private static VerificationReason verify(String token) throws Exception {
+        return TokenVerifier.INSTANCE.verify(token, keys()).getReason();
+    }
+
+    @Test
+    public void acceptsAValidToken() throws Exception {
+        String token = newToken(NOW_SECONDS, NOW_SECONDS + 600);
+
+        VerificationOutcome outcome = TokenVerifier.INSTANCE.verify(token, keys());
+        assertEquals(VerificationReason.ACCEPTED, outcome.getReason());
+        assertEquals(NOW_SECONDS + 600, outcome.getToken().getClaimsView().getExp());
+        assertEquals(NOW_SECONDS + 600, outcome.getToken().getClaims().getExp());
+    }
+
+    @Test
+    public void rejectsOversizedTokensBeforeReadingThem() throws Exception {
+        char[] big = new char[9000];
+        Arrays.fill(big, '.');
+        VerificationOutcome outcome = TokenVerifier.INSTANCE.verify(new String(big), keys());
+
+        // Too large, not malformed: the length is checked before the characters
+        assertEquals(VerificationReason.TOO_LARGE, outcome.getReason());
+        assertNull(outcome.getKid());
+    }
+
+    @Test
+    public void rejectsMalformedTokens() throws Exception {
+        for (String token : new String[] {null, "", "abc", "a.b", "a.b.c.d", "a b.c.d", "a+b.c.d"}) {
+            assertEquals(VerificationReason.MALFORMED, verify(token), String.valueOf(token));
+        }
+        assertEquals(VerificationReason.MALFORMED_HEADER, verify("abcde.YQ.YQ"));
+        assertEquals(VerificationReason.MALFORMED_HEADER, verify("e30.e30.YQ"));
+    }
+
+    @Test
+    public void rejectsUnknownKids() throws Exception {
+        String header = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("{\"alg\":\"RS256\",\"kid\":\"nobody\"}".getBytes(UTF_8));
+        String token = newToken(NOW_SECONDS, NOW_SECONDS + 600);
+
+        VerificationOutcome outcome = TokenVerifier.INSTANCE.verify(header + token.substring(token.indexOf('.')), keys());
+        assertEquals(VerificationReason.UNKNOWN_KID, outcome.getReason());
+        assertEquals("nobody", outcome.getKid());
+    }
+
+    @Test
+    public void rejectsExpiredTokensAndTokensFromTheFuture() throws Exception {
+        assertEquals(VerificationReason.EXPIRED, verify(newToken(NOW_SECONDS - 600, NOW_SECONDS - 1)));
+        assertEquals(VerificationReason.ISSUED_IN_FUTURE, verify(newToken(NOW_SECONDS + 600, NOW_SECONDS + 1200)));
+    }
+
+    @Test
+    public void rejectsChangedClaimsAsABadSignature() throws Exception {
+        String token = newToken(NOW_SECONDS, NOW_SECONDS + 600);
+        String changed = withClaims(token, "{\"iat\":" + NOW_SECONDS + ",\"exp\":" + (NOW_SECONDS + 6000) + "}");
+
+        assertEquals(VerificationReason.BAD_SIGNATURE, verify(changed));
+    }
+
+    @Test
+    public void rejectsMalformedClaimsBeforeTheSignature() throws Exception {
+        String token = newToken(NOW_SECONDS, NOW_SECONDS + 600);
+
+        assertEquals(VerificationReason.MALFORMED_CLAIMS, verify(withClaims(token, "[]")));
+        assertEquals(VerificationReason.MALFORMED_CLAIMS, verify(withClaims(token, "{\"exp\":\"soon\"}")));
+    }
+
+    @Test
+    public void decodesWithoutBindingTheClaims() throws Exception {
+        String token = newToken(NOW_SECONDS, NOW_SECONDS + 600);
+
+        DecodedToken decoded = TokenVerifier.INSTANCE.decode(token, keys());
+        assertTrue(decoded.isSignatureValid());
+        assertEquals(NOW_SECONDS + 600, decoded.getClaimsView().getExp());
+        assertEquals(decoded.getClaimsView().getIss(), decoded.getClaims().getIss());
+    }
+}